@@ -0,0 +1,40 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.client.EventLoggerClient;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks selected by the command line (every benchmark by default), takes the same arguments as JMH's
+ * own main class.
+ * <p>
+ * Unless a result format is given (JMH's {@code -rf} argument), results are written as JSON to
+ * {@code jmh-result-<version>.json}, so results of different releases can be compared.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Options options = commandLine;
+        if (!commandLine.getResultFormat().hasValue()) {
+            options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(commandLine.getResult().orElse("jmh-result-" + EventLoggerClient.VERSION + ".json"))
+                    .build();
+        }
+        new Runner(options).run();
+    }
+
+}
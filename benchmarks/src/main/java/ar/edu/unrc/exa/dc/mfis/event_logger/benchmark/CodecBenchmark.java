@@ -0,0 +1,71 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a {@link Request} and its {@link Response} carrying {@code payload} characters of data, with
+ * {@link BinaryCodec} (used by the NIO and SHM transports) and with Java serialization (used by the RMI transport,
+ * compact by default).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"0", "1024", "65536"})
+    public int payload;
+
+    private Request request;
+    private Response response;
+
+    @Setup
+    public void setup() {
+        StringBuilder data = new StringBuilder();
+        while (data.length() < payload) {
+            data.append("line of program state with some values 12345\n");
+        }
+        String text = payload == 0 ? null : data.substring(0, payload);
+        request = Request.startEvent("benchmark.event", text).withClientTimestamp(System.nanoTime());
+        response = text == null ? Response.eventStartedStopped(request) : Response.eventQuery(text, Request.queryEventInformation("benchmark.event"));
+    }
+
+    @Benchmark
+    public Request codecRequest() {
+        return BinaryCodec.decodeRequest(BinaryCodec.encode(request));
+    }
+
+    @Benchmark
+    public Response codecResponse() {
+        return BinaryCodec.decodeResponse(BinaryCodec.encode(response));
+    }
+
+    @Benchmark
+    public Object javaSerializationRequest() throws IOException, ClassNotFoundException {
+        return roundTrip(request);
+    }
+
+    @Benchmark
+    public Object javaSerializationResponse() throws IOException, ClassNotFoundException {
+        return roundTrip(response);
+    }
+
+    private static Object roundTrip(Object value) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starting, stopping and reading the elapsed time of a single {@link Event}, without any index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBenchmark {
+
+    private static final String STARTING_DATA = "x = 1, y = \"two\"\n";
+    private static final String ENDING_DATA = "x = 2, y = \"three\"\n";
+
+    private Event recurring;
+    private Event running;
+
+    @Setup
+    public void setup() {
+        recurring = new Event("benchmark.recurring", 0, System.currentTimeMillis() * 1_000_000L, true);
+        running = new Event("benchmark.running");
+        running.starEvent(STARTING_DATA);
+    }
+
+    /**
+     * Creates, starts and stops an event.
+     */
+    @Benchmark
+    public Event startStop() {
+        Event event = new Event("benchmark.event");
+        event.starEvent(STARTING_DATA);
+        event.stopEvent(ENDING_DATA, false);
+        return event;
+    }
+
+    /**
+     * A start/stop cycle of an existing recurring event.
+     */
+    @Benchmark
+    public Event recurringCycle() {
+        recurring.starEvent(STARTING_DATA);
+        recurring.stopEvent(ENDING_DATA);
+        return recurring;
+    }
+
+    @Benchmark
+    public double elapsedSeconds() {
+        return running.elapsedSeconds();
+    }
+
+}
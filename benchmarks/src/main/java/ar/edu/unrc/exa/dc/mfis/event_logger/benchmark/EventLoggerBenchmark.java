@@ -0,0 +1,58 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding and finding events on an {@link EventLogger} already holding {@code size} events.
+ * <p>
+ * {@link EventLogger} is a single instance per process, each size runs on its own fork. Inserted events are kept, so
+ * the logger grows by the number of insertions measured (a small fraction of the largest sizes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class EventLoggerBenchmark {
+
+    private static final String PREFIX = "benchmark.event.";
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private EventLogger eventLogger;
+    private int[] handles;
+    private long inserted;
+
+    @Setup
+    public void setup() {
+        eventLogger = EventLogger.instance();
+        handles = new int[size];
+        for (int i = 0; i < size; i++) {
+            handles[i] = eventLogger.startInstantEvent(PREFIX + i, null, null, false);
+        }
+    }
+
+    @Benchmark
+    public int insert() {
+        return eventLogger.startEvent("benchmark.inserted." + inserted++, null);
+    }
+
+    @Benchmark
+    public Optional<Event> lookupByName() {
+        return eventLogger.getEvent(PREFIX + ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    public Optional<Event> lookupByHandle() {
+        return eventLogger.getEvent(handles[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+}
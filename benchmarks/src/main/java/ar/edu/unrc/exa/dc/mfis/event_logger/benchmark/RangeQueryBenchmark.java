@@ -0,0 +1,60 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.NanoClock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the events overlapping a time window on an {@link EventLogger} holding {@code size} short stopped events
+ * and a stopped event lasting the whole timeline (like a main event).
+ * <p>
+ * Every window overlaps the same number of events (the long one and {@link #WINDOW_EVENTS} short ones), so the time
+ * per query should stay about the same as {@code size} grows: the long event must not make queries read the whole
+ * timeline. {@link EventLogger} is a single instance per process, each size runs on its own fork.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RangeQueryBenchmark {
+
+    private static final long STEP = 1000;
+    private static final int WINDOW_EVENTS = 10;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private EventLogger eventLogger;
+    private long windowStart;
+    private int windows;
+    private int window;
+
+    @Setup
+    public void setup() {
+        eventLogger = EventLogger.instance();
+        long origin = NanoClock.toEpochNanos(System.nanoTime()) - (size + 1) * STEP;
+        eventLogger.importEvent("benchmark.long", null, null, false, origin, origin + (size + 1) * STEP, EventLogger.NO_HANDLE);
+        for (int i = 0; i < size; i++) {
+            long start = origin + (i + 1) * STEP;
+            eventLogger.importEvent("benchmark.event." + i, null, null, false, start, start + STEP / 2, EventLogger.NO_HANDLE);
+        }
+        windowStart = STEP;
+        windows = Math.max(1, size / WINDOW_EVENTS - 1);
+        List<Event> found = eventLogger.getEventsInRange(windowStart, windowStart + WINDOW_EVENTS * STEP - 1);
+        if (found.size() != WINDOW_EVENTS + 1)
+            throw new IllegalStateException("Expected " + (WINDOW_EVENTS + 1) + " events on the window, found " + found.size());
+    }
+
+    @Benchmark
+    public List<Event> eventsInRange() {
+        long from = windowStart + (window++ % windows) * WINDOW_EVENTS * STEP;
+        return eventLogger.getEventsInRange(from, from + WINDOW_EVENTS * STEP - 1);
+    }
+
+}
@@ -0,0 +1,66 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServerImpl;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport.ClientTransport;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport.ServerTransport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests sent through a {@link ClientTransport} to an {@link EventLoggerServerImpl} running in the benchmark's
+ * process: with the {@link EventLoggerProperties.Transport#EMBEDDED} transport requests are plain method calls, with
+ * the {@link EventLoggerProperties.Transport#NIO} transport they go through the loopback interface (on the configured
+ * port, which must be free).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerRoundTripBenchmark {
+
+    @Param({"EMBEDDED", "NIO"})
+    public EventLoggerProperties.Transport transport;
+
+    private ServerTransport serverTransport;
+    private ClientTransport client;
+    private long started;
+
+    @Setup
+    public void setup() throws IOException {
+        if (transport != EventLoggerProperties.Transport.EMBEDDED) {
+            serverTransport = ServerTransport.create(transport);
+            serverTransport.start(new EventLoggerServerImpl(serverTransport));
+        }
+        client = ClientTransport.connect(transport, "localhost");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        if (serverTransport != null)
+            serverTransport.stop();
+    }
+
+    /**
+     * Starts and stops a new event, two round trips.
+     */
+    @Benchmark
+    public Response startStop() throws IOException {
+        String name = "benchmark.event." + started++;
+        client.send(Request.startEvent(name, null));
+        return client.send(Request.stopEvent(name, null));
+    }
+
+    @Benchmark
+    public Response query() throws IOException {
+        return client.send(Request.checkEventName("benchmark.event.0"));
+    }
+
+}
@@ -0,0 +1,46 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.text_diff.TextDiffUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TextDiffUtils#diff(String, String)} between two texts of {@code lines} lines, one of every ten lines changed.
+ * Large texts go through the hashed line comparison (see
+ * {@link ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties#diffLargeInputThreshold()}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextDiffBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int lines;
+
+    private String original;
+    private String revised;
+
+    @Setup
+    public void setup() {
+        StringBuilder originalText = new StringBuilder();
+        StringBuilder revisedText = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            String line = "line " + i + " of program state with some values 12345\n";
+            originalText.append(line);
+            revisedText.append(i % 10 == 5 ? "changed " + line : line);
+        }
+        original = originalText.toString();
+        revised = revisedText.toString();
+    }
+
+    @Benchmark
+    public List<String> diff() {
+        return TextDiffUtils.diff(original, revised);
+    }
+
+}
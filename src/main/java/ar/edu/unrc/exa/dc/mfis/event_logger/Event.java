@@ -1,72 +1,184 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger;
 
 import ar.edu.unrc.exa.dc.mfis.event_logger.text_diff.TextDiffUtils;
-import ar.edu.unrc.exa.dc.mfis.event_logger.timing.TimeCounter;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.DurationStatistics;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.NanoClock;
 import org.json.simple.JSONObject;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+/**
+ * An event with a duration and optional associated data.
+ * <p>
+ * The lifecycle of an event is kept in a single atomic state word, each transition is a compare-and-set, so an event
+ * can only be stopped once even if several threads try to stop it at the same time. Valid transitions are:
+ * NOT_STARTED to RUNNING to STOPPED, and NOT_STARTED to INSTANT. Querying an event never blocks starting or stopping it.
+ * <p>
+ * Once an event has both starting and ending data, that data no longer changes. The difference between them is then
+ * calculated only once, on a background thread, and kept for later queries; queries made while it is being calculated
+ * report it as {@link DifferenceStatus#PENDING} instead of waiting for it.
+ * <p>
+ * A recurring event can be started again once stopped (STOPPED to RUNNING), its elapsed time accumulates every
+ * start/stop cycle and each cycle's duration is recorded in the event's {@link DurationStatistics}. Cycles of a
+ * recurring event are serialized on the event, its data is the data of its last cycle and no difference is calculated.
+ * <p>
+ * Starting and stopping an event allocates nothing: times are kept as primitive nanoseconds, the elapsed time is kept
+ * in the event itself (published through a sequence counter that is odd while it's being updated, so reading it never
+ * blocks) and data is stored as given. Data is escaped when the event is serialized, or on the background thread
+ * calculating the difference, which is calculated on escaped data.
+ */
 public class Event {
 
+    public enum State {
+        NOT_STARTED,
+        RUNNING,
+        STOPPED,
+        INSTANT
+    }
+
+    public enum DifferenceStatus {
+        NONE,
+        PENDING,
+        DONE,
+        FAILED
+    }
+
+    private static final State[] STATES = State.values();
+    private static final int NOT_STARTED = State.NOT_STARTED.ordinal();
+    private static final int RUNNING = State.RUNNING.ordinal();
+    private static final int STOPPED = State.STOPPED.ordinal();
+    private static final int INSTANT = State.INSTANT.ordinal();
+    private static final AtomicIntegerFieldUpdater<Event> STATE = AtomicIntegerFieldUpdater.newUpdater(Event.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Event, CompletableFuture> DATA_DIFFERENCE =
+            AtomicReferenceFieldUpdater.newUpdater(Event.class, CompletableFuture.class, "dataDifference");
+
     private final String name;
-    private final Instant timestamp;
-    private final TimeCounter timeCounter;
+    private final long timestamp;
     private final double initialTimeInSeconds;
-    private String associatedStartingData = null;
-    private String associatedEndingData = null;
-    private boolean calculateDifference = false;
-    private boolean isInstantEvent = false;
-    private boolean started = false;
-    private boolean running = false;
+    private final DurationStatistics statistics;
+    /*
+     * Only written by the thread that moved the event to RUNNING or STOPPED (or that holds the event's lock, for
+     * recurring events), so updates need no lock.
+     */
+    private volatile long timingVersion = 0;
+    private volatile long lastStart = 0;
+    private volatile long accumulatedTime = 0;
+    private volatile boolean clockRunning = false;
+    private volatile Payload associatedStartingData = null;
+    private volatile Payload associatedEndingData = null;
+    private volatile boolean calculateDifference = false;
+    private volatile int state = NOT_STARTED;
+    private volatile CompletableFuture<List<String>> dataDifference = null;
 
     public Event(String name) {
         this(name, 0);
     }
 
     public Event(String name, double initialTimeInSeconds) {
+        this(name, initialTimeInSeconds, NanoClock.toEpochNanos(System.nanoTime()), false);
+    }
+
+    /**
+     * @param timestamp : when the event was created, used when restoring an event created earlier.
+     */
+    public Event(String name, double initialTimeInSeconds, Instant timestamp) {
+        this(name, initialTimeInSeconds, timestamp, false);
+    }
+
+    /**
+     * @param recurring : if the event can be started again once stopped, recording the duration of each cycle.
+     */
+    public Event(String name, double initialTimeInSeconds, Instant timestamp, boolean recurring) {
+        this(name, initialTimeInSeconds, timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano(), recurring);
+    }
+
+    /**
+     * @param timestamp : when the event was created, in nanoseconds since the epoch (see {@link NanoClock}).
+     * @param recurring : if the event can be started again once stopped, recording the duration of each cycle.
+     */
+    public Event(String name, double initialTimeInSeconds, long timestamp, boolean recurring) {
         if (name == null || name.isEmpty())
             throw new IllegalArgumentException("Event's name cannot be either null or empty");
         this.name = name;
-        this.timeCounter = new TimeCounter(name);
         this.initialTimeInSeconds = initialTimeInSeconds;
-        timestamp = Instant.now();
+        this.timestamp = timestamp;
+        this.statistics = recurring ? new DurationStatistics() : null;
     }
 
     public void instantEvent() {
-        if (started) throw new IllegalStateException("Event " + name + " is already started");
-        isInstantEvent = true;
+        if (statistics != null)
+            throw new IllegalStateException("Event " + name + " is a recurring event");
+        if (!STATE.compareAndSet(this, NOT_STARTED, INSTANT) && state != INSTANT)
+            throw new IllegalStateException("Event " + name + " is already started");
     }
 
     public void instantEvent(String associatedStartingData) {
         instantEvent();
-        setInitialData(associatedStartingData);
+        setInitialData(Payload.of(associatedStartingData));
     }
 
     public void instantEvent(String associatedStartingData, String associatedEndingData) {
+        instantEventWithPayload(Payload.of(associatedStartingData), Payload.of(associatedEndingData));
+    }
+
+    /**
+     * Same as {@link #instantEvent(String, String)}, with data that may already be compressed.
+     */
+    public void instantEventWithPayload(Payload associatedStartingData, Payload associatedEndingData) {
         instantEvent();
         setInitialData(associatedStartingData);
         setFinalData(associatedEndingData);
+        differenceStatus();
     }
 
     public void startEvent() {
-        if (started) throw new IllegalStateException("Event " + name + " is already started");
-        if (isInstantEvent) throw new IllegalStateException("Event " + name + " is an instant event");
-        started = true;
-        running = true;
-        timeCounter.clockStart();
+        startEvent(System.nanoTime());
+    }
+
+    /**
+     * Starts the event at a given time.
+     * @param currentTime : a {@link System#nanoTime()} value.
+     */
+    public void startEvent(long currentTime) {
+        if (statistics != null) {
+            startCycle(currentTime);
+            return;
+        }
+        if (!STATE.compareAndSet(this, NOT_STARTED, RUNNING)) {
+            if (state == INSTANT) throw new IllegalStateException("Event " + name + " is an instant event");
+            throw new IllegalStateException("Event " + name + " is already started");
+        }
+        clockStart(currentTime);
     }
 
     public void starEvent(String associatedStartingData) {
-        startEvent();
+        starEvent(associatedStartingData, System.nanoTime());
+    }
+
+    public void starEvent(String associatedStartingData, long currentTime) {
+        startEventWithPayload(Payload.of(associatedStartingData), currentTime);
+    }
+
+    /**
+     * Same as {@link #starEvent(String, long)}, with data that may already be compressed.
+     */
+    public void startEventWithPayload(Payload associatedStartingData, long currentTime) {
+        startEvent(currentTime);
         setInitialData(associatedStartingData);
     }
 
     public void stopEvent() {
-        if (!started) throw new IllegalStateException("Event " + name + " is not yet started");
-        if (!running) throw new IllegalStateException("Event " + name + " is not running");
-        running = false;
-        timeCounter.clockEnd();
+        if (statistics != null) {
+            stopCycle(null, System.nanoTime());
+            return;
+        }
+        clockEnd(stop(System.nanoTime()));
     }
 
     public void stopEvent(String associatedEndingData) {
@@ -74,54 +186,238 @@ public class Event {
     }
 
     public void stopEvent(String associatedEndingData, boolean calculateDifference) {
+        stopEvent(associatedEndingData, calculateDifference, System.nanoTime());
+    }
+
+    /**
+     * Stops the event at a given time.
+     * @param currentTime : a {@link System#nanoTime()} value.
+     */
+    public void stopEvent(String associatedEndingData, boolean calculateDifference, long currentTime) {
+        stopEventWithPayload(Payload.of(associatedEndingData), calculateDifference, currentTime);
+    }
+
+    /**
+     * Same as {@link #stopEvent(String, boolean, long)}, with data that may already be compressed.
+     */
+    public void stopEventWithPayload(Payload associatedEndingData, boolean calculateDifference, long currentTime) {
+        if (statistics != null) {
+            stopCycle(associatedEndingData, currentTime);
+            return;
+        }
+        stop(currentTime);
         calculateDifference(calculateDifference);
         setFinalData(associatedEndingData);
-        stopEvent();
+        clockEnd(currentTime);
+        differenceStatus();
+    }
+
+    /*
+     * Moves the event from RUNNING to STOPPED, only one thread can succeed. The clock is ended by the caller, after
+     * any final data is set.
+     */
+    private long stop(long currentTime) {
+        if (!STATE.compareAndSet(this, RUNNING, STOPPED)) {
+            if (state == STOPPED) throw new IllegalStateException("Event " + name + " is not running");
+            throw new IllegalStateException("Event " + name + " is not yet started");
+        }
+        return currentTime;
+    }
+
+    private synchronized void startCycle(long currentTime) {
+        if (state == RUNNING)
+            throw new IllegalStateException("Event " + name + " is already running");
+        clockStart(currentTime);
+        state = RUNNING;
+    }
+
+    private synchronized void stopCycle(Payload associatedEndingData, long currentTime) {
+        if (state != RUNNING) {
+            if (state == STOPPED) throw new IllegalStateException("Event " + name + " is not running");
+            throw new IllegalStateException("Event " + name + " is not yet started");
+        }
+        state = STOPPED;
+        long cycleStart = lastStart;
+        setFinalData(associatedEndingData);
+        clockEnd(currentTime);
+        statistics.record(currentTime - cycleStart);
+    }
+
+    private void clockStart(long currentTime) {
+        timingVersion++;
+        lastStart = currentTime;
+        clockRunning = true;
+        timingVersion++;
+    }
+
+    /*
+     * A time before the clock was started counts as no time.
+     */
+    private void clockEnd(long currentTime) {
+        timingVersion++;
+        accumulatedTime += Math.max(0, currentTime - lastStart);
+        clockRunning = false;
+        timingVersion++;
     }
 
     public double elapsedSeconds() {
-        if (running)
-            timeCounter.updateTotalTime();
-        return timeCounter.toSecondsExtended();
+        return elapsedSeconds(System.nanoTime());
+    }
+
+    /**
+     * The elapsed time at a given time.
+     * @param currentTime : a {@link System#nanoTime()} value.
+     */
+    public double elapsedSeconds(long currentTime) {
+        if (state == INSTANT)
+            return 0;
+        return NanoClock.toSecondsExtended(elapsedNanos(currentTime));
+    }
+
+    /**
+     * The elapsed time, in nanoseconds, at a given time.
+     * @param currentTime : a {@link System#nanoTime()} value.
+     */
+    public long elapsedNanos(long currentTime) {
+        if (state == INSTANT)
+            return 0;
+        while (true) {
+            long startVersion = timingVersion;
+            if ((startVersion & 1) == 0) {
+                boolean running = clockRunning;
+                long start = lastStart;
+                long accumulated = accumulatedTime;
+                if (startVersion == timingVersion)
+                    return running ? accumulated + (currentTime - start) : accumulated;
+            }
+            Thread.yield();
+        }
     }
 
     public void calculateDifference(boolean calculateDifference) {
-        this.calculateDifference = calculateDifference;
+        this.calculateDifference = calculateDifference && statistics == null;
+    }
+
+    public boolean calculatesDifference() {
+        return calculateDifference;
+    }
+
+    public boolean isRecurring() {
+        return statistics != null;
+    }
+
+    /**
+     * @return the statistics of the durations of each start/stop cycle, if this is a recurring event.
+     */
+    public Optional<DurationStatistics> statistics() {
+        return Optional.ofNullable(statistics);
     }
 
     public Instant timestamp() {
+        return Instant.ofEpochSecond(Math.floorDiv(timestamp, 1_000_000_000L), Math.floorMod(timestamp, 1_000_000_000L));
+    }
+
+    /**
+     * @return when the event was created, in nanoseconds since the epoch (see {@link NanoClock}).
+     */
+    public long timestampNanos() {
         return timestamp;
     }
 
+    /**
+     * @return the starting data, as given (not escaped), inflating it if it's compressed.
+     */
     public Optional<String> associatedStartingData() {
-        return Optional.ofNullable(associatedStartingData);
+        return Optional.ofNullable(Payload.text(associatedStartingData));
     }
 
+    /**
+     * @return the ending data, as given (not escaped), inflating it if it's compressed.
+     */
     public Optional<String> associatedEndingData() {
-        return Optional.ofNullable(associatedEndingData);
+        return Optional.ofNullable(Payload.text(associatedEndingData));
     }
 
     public String name() {
         return name;
     }
 
+    /**
+     * @return the combined length, in characters, of the starting and ending data.
+     */
+    public long dataLength() {
+        Payload startingData = associatedStartingData;
+        Payload endingData = associatedEndingData;
+        return (startingData == null ? 0 : startingData.length()) + (endingData == null ? 0 : endingData.length());
+    }
+
+    /**
+     * The status of the difference between starting and ending data, calling this method will schedule the
+     * calculation of the difference if required and not yet scheduled.
+     * @return {@link DifferenceStatus#NONE} if no difference is required (either it's disabled or the event lacks
+     * starting or ending data), otherwise the status of the difference's calculation.
+     */
+    public DifferenceStatus differenceStatus() {
+        if (!calculateDifference || associatedStartingData == null || associatedEndingData == null)
+            return DifferenceStatus.NONE;
+        CompletableFuture<List<String>> difference = scheduleDifference();
+        if (!difference.isDone())
+            return DifferenceStatus.PENDING;
+        return difference.isCompletedExceptionally() ? DifferenceStatus.FAILED : DifferenceStatus.DONE;
+    }
+
+    /**
+     * @return the difference between starting and ending data if it has already been calculated.
+     */
+    public Optional<List<String>> dataDifference() {
+        if (differenceStatus() != DifferenceStatus.DONE)
+            return Optional.empty();
+        return Optional.of(dataDifference.join());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<String>> scheduleDifference() {
+        CompletableFuture<List<String>> difference = dataDifference;
+        if (difference != null)
+            return difference;
+        CompletableFuture<List<String>> scheduled = new CompletableFuture<>();
+        if (!DATA_DIFFERENCE.compareAndSet(this, null, scheduled))
+            return dataDifference;
+        Payload startingData = associatedStartingData;
+        Payload endingData = associatedEndingData;
+        // on escaped data, the difference is reported as is. Inflating and escaping large data is left to the
+        // background thread too
+        TextDiffUtils.diffAsync(() -> escape(Payload.text(startingData)), () -> escape(Payload.text(endingData))).whenComplete((result, error) -> {
+            if (error != null)
+                scheduled.completeExceptionally(error);
+            else
+                scheduled.complete(result);
+        });
+        return scheduled;
+    }
+
+    public State state() {
+        return STATES[state];
+    }
+
     public boolean hasBeenStarted() {
-        return started;
+        int currentState = state;
+        return currentState == RUNNING || currentState == STOPPED;
     }
 
     public boolean isRunning() {
-        return running;
+        return state == RUNNING;
     }
 
-    private void setInitialData(String rawData) {
-        this.associatedStartingData = cleanStringData(rawData);
+    private void setInitialData(Payload rawData) {
+        this.associatedStartingData = rawData;
     }
 
-    private void setFinalData(String rawData) {
-        this.associatedEndingData = cleanStringData(rawData);
+    private void setFinalData(Payload rawData) {
+        this.associatedEndingData = rawData;
     }
 
-    private String cleanStringData(String rawData) {
+    private static String escape(String rawData) {
         if (rawData == null) return null;
         return JSONObject.escape(rawData);
     }
@@ -130,53 +426,61 @@ public class Event {
     public String toString() {
          StringBuilder sb = new StringBuilder("{\n");
          sb.append("\t\"name\":").append("\"").append(name).append("\"").append(",\n");
-         sb.append("\t\"timestamp\":").append("\"").append(timestamp.toString()).append("\"").append(",\n");
+         sb.append("\t\"timestamp\":").append("\"").append(timestamp().toString()).append("\"").append(",\n");
          sb.append("\t\"startingTime(s)\":").append("\"").append(initialTimeInSeconds).append("\"").append(",\n");
+         State currentState = state();
+         if (statistics != null)
+             sb.append("\t\"cycles\":").append("\"").append(statistics.count()).append("\"").append(",\n");
          sb.append("\t\"status\":").append("\"");
-         if (isInstantEvent) {
-             sb.append("INSTANT");
-         } else if (started && running) {
-             sb.append("RUNNING");
-         } else if (!running) {
-             sb.append("STOPPED");
-         } else {
-             sb.append("NOT YET STARTED");
+         switch (currentState) {
+             case INSTANT: sb.append("INSTANT"); break;
+             case RUNNING: sb.append("RUNNING"); break;
+             case STOPPED: sb.append("STOPPED"); break;
+             default: sb.append("NOT YET STARTED");
          }
          sb.append("\"").append(",\n");
          sb.append("\t\"elapsedTime(s)\":").append("\"");
-         if (isInstantEvent)
+         if (currentState == State.INSTANT)
              sb.append("INSTANT").append("\"");
          else
              sb.append(elapsedSeconds()).append("\"");
          sb.append(",\n");
-         sb.append("\t\"hasStartingData\":").append("\"").append(associatedStartingData().isPresent()).append("\"").append(",\n");
-         sb.append("\t\"hasEndingData\":").append("\"").append(associatedEndingData().isPresent()).append("\"");
-         if (associatedStartingData().isPresent() || associatedEndingData().isPresent())
+         String startingData = Payload.text(associatedStartingData);
+         String endingData = Payload.text(associatedEndingData);
+         DifferenceStatus differenceStatus = endingData == null ? DifferenceStatus.NONE : differenceStatus();
+         sb.append("\t\"hasStartingData\":").append("\"").append(startingData != null).append("\"").append(",\n");
+         sb.append("\t\"hasEndingData\":").append("\"").append(endingData != null).append("\"");
+         if (startingData != null || endingData != null)
              sb.append(",");
          sb.append("\n");
-         if (associatedStartingData().isPresent()) {
+         if (startingData != null) {
              sb.append("\t\"startingData\":")
                      .append("\"")
-                     .append(associatedStartingData)
+                     .append(escape(startingData))
                      .append("\"");
-             if (associatedEndingData().isPresent())
+             if (endingData != null)
                  sb.append(",");
              sb.append("\n");
          }
-         if (associatedEndingData().isPresent()) {
+         if (endingData != null) {
              sb.append("\t\"endingData\":")
                      .append("\"")
-                     .append(associatedEndingData)
+                     .append(escape(endingData))
                      .append("\"");
-             if (calculateDifference && associatedStartingData().isPresent())
+             if (differenceStatus != DifferenceStatus.NONE)
                  sb.append(",");
              sb.append("\n");
          }
-         if (calculateDifference && associatedStartingData().isPresent() && associatedEndingData().isPresent()) {
-             sb.append("\t\"dataDifference\":")
-                     .append("\"")
-                     .append(TextDiffUtils.diff(associatedStartingData, associatedEndingData))
-                     .append("\"").append("\n");
+         if (differenceStatus != DifferenceStatus.NONE) {
+             sb.append("\t\"dataDifferenceStatus\":").append("\"").append(differenceStatus).append("\"");
+             if (differenceStatus == DifferenceStatus.DONE) {
+                 sb.append(",\n");
+                 sb.append("\t\"dataDifference\":")
+                         .append("\"")
+                         .append(dataDifference.join())
+                         .append("\"");
+             }
+             sb.append("\n");
          }
          sb.append("}");
          return sb.toString();
@@ -0,0 +1,85 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Events indexed by a numeric handle, so they can be found without their names.
+ * <p>
+ * Handles are consecutive positive numbers, events are kept in fixed size chunks that are allocated as handles are
+ * given, so reading an event is two array reads. Events are never removed. This class is thread safe, reading an event
+ * never blocks, only allocating a new chunk does.
+ */
+final class EventHandles {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final AtomicInteger lastHandle = new AtomicInteger(EventLogger.NO_HANDLE);
+    private volatile AtomicReferenceArray<Event>[] chunks = newChunks(16);
+
+    /**
+     * Gives an event the next handle.
+     * @return the event's handle.
+     */
+    int add(Event event) {
+        int handle = lastHandle.incrementAndGet();
+        if (handle <= 0)
+            throw new IllegalStateException("No more event handles available");
+        chunk(handle).set(handle & CHUNK_MASK, event);
+        return handle;
+    }
+
+    /**
+     * Gives an event a specific handle, later events get handles after it.
+     * @throws IllegalStateException if the handle is already used.
+     */
+    void put(int handle, Event event) {
+        if (handle <= 0)
+            throw new IllegalArgumentException("Invalid event handle " + handle);
+        if (!chunk(handle).compareAndSet(handle & CHUNK_MASK, null, event))
+            throw new IllegalStateException("Event handle " + handle + " is already used");
+        lastHandle.accumulateAndGet(handle, Math::max);
+    }
+
+    /**
+     * @return the event with the given handle, {@code null} if there is none.
+     */
+    Event get(int handle) {
+        if (handle <= 0)
+            return null;
+        AtomicReferenceArray<Event>[] current = chunks;
+        int index = handle >>> CHUNK_BITS;
+        if (index >= current.length || current[index] == null)
+            return null;
+        return current[index].get(handle & CHUNK_MASK);
+    }
+
+    private AtomicReferenceArray<Event> chunk(int handle) {
+        int index = handle >>> CHUNK_BITS;
+        AtomicReferenceArray<Event>[] current = chunks;
+        if (index < current.length && current[index] != null)
+            return current[index];
+        return allocateChunk(index);
+    }
+
+    private synchronized AtomicReferenceArray<Event> allocateChunk(int index) {
+        AtomicReferenceArray<Event>[] current = chunks;
+        if (index >= current.length) {
+            AtomicReferenceArray<Event>[] grown = newChunks(Math.max(index + 1, current.length * 2));
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        if (current[index] == null)
+            current[index] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        chunks = current;
+        return current[index];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<Event>[] newChunks(int length) {
+        return (AtomicReferenceArray<Event>[]) new AtomicReferenceArray[length];
+    }
+
+}
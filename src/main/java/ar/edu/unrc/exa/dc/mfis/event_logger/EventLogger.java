@@ -1,90 +1,773 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger;
 
 import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.NanoClock;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+/**
+ * Stores all events by name, this class is thread safe.
+ * <p>
+ * Events are kept in a concurrent skip list ordered by name, starting an event is an atomic insert-if-absent, so two
+ * concurrent requests starting an event with the same name will result in only one of them succeeding.
+ * <p>
+ * Events can also be started (and stopped, see {@link Event#stopEvent(String, boolean, long)}) at a given
+ * {@link System#nanoTime()} value, so they can be restored with their original times.
+ * <p>
+ * Events are also indexed by timestamp (ties are ordered by insertion), so they can be read in pages: each page ends
+ * with an opaque token identifying the position of its last event, and the next page starts right after it. Since
+ * events are never removed, a page token stays valid even when events are added between pages, but the walk only sees
+ * events added after the token's position: an event added with a timestamp at or before it (e.g.: an imported event, an
+ * event timed by a client whose request arrived late, or one started concurrently with reading the page) is not read by
+ * the following pages.
+ * <p>
+ * The timeline also answers which events overlap a time window. Stopped events are also indexed by timestamp in buckets
+ * of durations between consecutive powers of two: an event in a bucket can't have started before the window minus the
+ * bucket's longest duration, so only that part of each bucket is read, and a read event that doesn't overlap the window
+ * ended less than half that duration before it. Running and recurring events are indexed by timestamp on their own,
+ * every one of them that started before the window ends overlaps it. Events that stopped since they were indexed as
+ * running are moved to their bucket when a time window reads them.
+ * <p>
+ * Event names can be hierarchical, with levels separated by {@link #NAME_SEPARATOR} (e.g.: {@code build.module.compile}).
+ * Since events are ordered by name, the events under a name are read as a range of the name index.
+ * <p>
+ * Each event is also given a numeric handle when started, so it can later be found without its name.
+ * <p>
+ * Starting a recurring event that already exists starts a new cycle of it instead of adding another event, so timing
+ * each iteration of a loop uses a single event.
+ * <p>
+ * Events can be nested as spans: an event linked to a parent event is one of its children, so the time of an event can
+ * be split between its children and itself. Links are kept by name and don't require the parent to exist when linked.
+ */
 public class EventLogger {
 
+    /**
+     * Separates the levels of hierarchical event names.
+     */
+    public static final char NAME_SEPARATOR = '.';
+
+    /**
+     * Not a handle, events are given handles starting from {@code NO_HANDLE + 1}.
+     */
+    public static final int NO_HANDLE = 0;
+
+    /**
+     * The stop time of an imported event that is still running, see {@link #importEvent}.
+     */
+    public static final long STILL_RUNNING = Long.MAX_VALUE;
+
+    // a bucket for durations of 0 and one for each bit length of a positive duration
+    private static final int DURATION_BUCKETS = Long.SIZE;
+
     private final String MAIN_EVENT_DEFAULT_NAME = EventLoggerProperties.defaultMainEventName();
-    private final Map<String, Event> events;
-    private Event mainEvent;
+    private final ConcurrentNavigableMap<String, Event> events;
+    private final ConcurrentNavigableMap<TimelineKey, Event> timeline;
+    private final EventHandles handles;
+    private final AtomicLong insertions;
+    private final ConcurrentNavigableMap<TimelineKey, Event> runningEvents;
+    private final ConcurrentNavigableMap<TimelineKey, Event> recurringEvents;
+    private final List<ConcurrentNavigableMap<TimelineKey, Event>> stoppedEventsByDuration;
+    private final AtomicReference<Event> mainEvent;
+    private final ConcurrentMap<String, String> parents;
+    private final Object parentsLock = new Object();
+    private final ConcurrentMap<String, Queue<String>> children;
+
+    private static class InstanceHolder {
+        private static final EventLogger INSTANCE = new EventLogger();
+    }
 
-    private static EventLogger instance;
     public static EventLogger instance() {
-        if (instance == null) {
-            instance = new EventLogger();
-        }
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     private EventLogger() {
-        events = new TreeMap<>();
+        events = new ConcurrentSkipListMap<>();
+        timeline = new ConcurrentSkipListMap<>();
+        handles = new EventHandles();
+        insertions = new AtomicLong();
+        runningEvents = new ConcurrentSkipListMap<>();
+        recurringEvents = new ConcurrentSkipListMap<>();
+        stoppedEventsByDuration = new ArrayList<>(DURATION_BUCKETS);
+        for (int bucket = 0; bucket < DURATION_BUCKETS; bucket++)
+            stoppedEventsByDuration.add(new ConcurrentSkipListMap<>());
+        mainEvent = new AtomicReference<>();
+        parents = new ConcurrentHashMap<>();
+        children = new ConcurrentHashMap<>();
+    }
+
+    public int startMainEvent(String data) {
+        return startNamedMainEvent(MAIN_EVENT_DEFAULT_NAME, data);
+    }
+
+    public int startMainEvent(String data, long startTime) {
+        return startNamedMainEvent(MAIN_EVENT_DEFAULT_NAME, data, startTime);
     }
 
-    public void startMainEvent(String data) {
-        startNamedMainEvent(MAIN_EVENT_DEFAULT_NAME, data);
+    public int startNamedMainEvent(String name, String startingData) {
+        return startNamedMainEvent(name, startingData, System.nanoTime());
     }
 
-    public void startNamedMainEvent(String name, String startingData) {
-        if (mainEvent != null)
+    public int startNamedMainEvent(String name, String startingData, long startTime) {
+        return startNamedMainEvent(name, startingData, startTime, NO_HANDLE);
+    }
+
+    /**
+     * Starts the main event at a given time.
+     * @param handle : the handle to give the event, used when restoring events, or {@link #NO_HANDLE} to give it the
+     * next handle.
+     * @return the event's handle.
+     */
+    public int startNamedMainEvent(String name, String startingData, long startTime, int handle) {
+        return startNamedMainEventWithPayload(name, Payload.of(startingData), startTime, handle);
+    }
+
+    /**
+     * Same as {@link #startNamedMainEvent(String, String, long, int)}, with data that may already be compressed (see {@link Payload}).
+     */
+    public int startNamedMainEventWithPayload(String name, Payload startingData, long startTime, int handle) {
+        if (mainEvent.get() != null)
             throw new IllegalStateException("There is already a main event");
-        if (events.containsKey(name))
-            throw new IllegalStateException("There is already an event with name " + name);
-        if (name == null)
-            mainEvent = new Event(MAIN_EVENT_DEFAULT_NAME);
-        else
-            mainEvent = new Event(name);
-        events.put(name, mainEvent);
-        mainEvent.starEvent(startingData);
+        checkHandle(handle);
+        String eventName = name == null ? MAIN_EVENT_DEFAULT_NAME : name;
+        Event event = new Event(eventName, 0, NanoClock.toEpochNanos(startTime), false);
+        event.startEventWithPayload(startingData, startTime);
+        if (!mainEvent.compareAndSet(null, event))
+            throw new IllegalStateException("There is already a main event");
+        if (events.putIfAbsent(eventName, event) != null) {
+            mainEvent.set(null);
+            throw new IllegalStateException("There is already an event with name " + eventName);
+        }
+        return addToIndexes(event, handle);
+    }
+
+    public int startEvent(String name, String startingData) {
+        return startEvent(name, startingData, System.nanoTime());
+    }
+
+    public int startEvent(String name, String startingData, long startTime) {
+        return startEvent(name, startingData, startTime, NO_HANDLE);
     }
 
-    public void startEvent(String name, String startingData) {
+    /**
+     * Starts an event at a given time.
+     * @param handle : the handle to give the event, used when restoring events, or {@link #NO_HANDLE} to give it the
+     * next handle.
+     * @return the event's handle.
+     */
+    public int startEvent(String name, String startingData, long startTime, int handle) {
+        return startEventWithPayload(name, Payload.of(startingData), startTime, handle);
+    }
+
+    /**
+     * Same as {@link #startEvent(String, String, long, int)}, with data that may already be compressed (see {@link Payload}).
+     */
+    public int startEventWithPayload(String name, Payload startingData, long startTime, int handle) {
         if (events.containsKey(name))
             throw new IllegalStateException("There is already an event with name " + name);
-        double startingTime = 0;
-        if (mainEvent != null) {
-            startingTime = mainEvent.elapsedSeconds();
+        checkHandle(handle);
+        Event event = new Event(name, mainEventElapsedSeconds(startTime), NanoClock.toEpochNanos(startTime), false);
+        event.startEventWithPayload(startingData, startTime);
+        return addEvent(event, handle);
+    }
+
+    public int startRecurringEvent(String name, String startingData) {
+        return startRecurringEvent(name, startingData, System.nanoTime());
+    }
+
+    public int startRecurringEvent(String name, String startingData, long startTime) {
+        return startRecurringEvent(name, startingData, startTime, NO_HANDLE);
+    }
+
+    /**
+     * Starts a cycle of a recurring event at a given time, creating the event on its first cycle (see {@link Event}).
+     * @param handle : the handle to give the event if it's created, used when restoring events, or {@link #NO_HANDLE}
+     * to give it the next handle.
+     * @return the event's handle if it was created, {@link #NO_HANDLE} if it already existed.
+     * @throws IllegalStateException if there is an event with that name which is not recurring or is running.
+     */
+    public int startRecurringEvent(String name, String startingData, long startTime, int handle) {
+        return startRecurringEventWithPayload(name, Payload.of(startingData), startTime, handle);
+    }
+
+    /**
+     * Same as {@link #startRecurringEvent(String, String, long, int)}, with data that may already be compressed (see {@link Payload}).
+     */
+    public int startRecurringEventWithPayload(String name, Payload startingData, long startTime, int handle) {
+        Event existing = events.get(name);
+        if (existing == null) {
+            checkHandle(handle);
+            Event event = new Event(name, mainEventElapsedSeconds(startTime), NanoClock.toEpochNanos(startTime), true);
+            event.startEventWithPayload(startingData, startTime);
+            if (events.putIfAbsent(name, event) == null)
+                return addToIndexes(event, handle);
+            existing = events.get(name);
         }
-        Event event = new Event(name, startingTime);
-        event.starEvent(startingData);
-        events.put(name, event);
+        if (!existing.isRecurring())
+            throw new IllegalStateException("There is already an event with name " + name);
+        existing.startEventWithPayload(startingData, startTime);
+        return NO_HANDLE;
+    }
+
+    public int startInstantEvent(String name, String initialData, String finalData) {
+        return startInstantEvent(name, initialData, finalData, true);
     }
 
-    public void startInstantEvent(String name, String initialData, String finalData) {
-        startInstantEvent(name, initialData, finalData, true);
+    public int startInstantEvent(String name, String initialData, String finalData, boolean calculateDifference) {
+        return startInstantEvent(name, initialData, finalData, calculateDifference, System.nanoTime());
     }
 
-    public void startInstantEvent(String name, String initialData, String finalData, boolean calculateDifference) {
+    public int startInstantEvent(String name, String initialData, String finalData, boolean calculateDifference, long time) {
+        return startInstantEvent(name, initialData, finalData, calculateDifference, time, NO_HANDLE);
+    }
+
+    /**
+     * Creates an instant event at a given time.
+     * @param handle : the handle to give the event, used when restoring events, or {@link #NO_HANDLE} to give it the
+     * next handle.
+     * @return the event's handle.
+     */
+    public int startInstantEvent(String name, String initialData, String finalData, boolean calculateDifference, long time, int handle) {
+        return startInstantEventWithPayload(name, Payload.of(initialData), Payload.of(finalData), calculateDifference, time, handle);
+    }
+
+    /**
+     * Same as {@link #startInstantEvent(String, String, String, boolean, long, int)}, with data that may already be compressed (see {@link Payload}).
+     */
+    public int startInstantEventWithPayload(String name, Payload initialData, Payload finalData, boolean calculateDifference, long time, int handle) {
         if (events.containsKey(name))
             throw new IllegalStateException("There is already an event with name " + name);
-        double startingTime = 0;
-        if (mainEvent != null) {
-            startingTime = mainEvent.elapsedSeconds();
-        }
-        Event event = new Event(name, startingTime);
+        checkHandle(handle);
+        Event event = new Event(name, mainEventElapsedSeconds(time), NanoClock.toEpochNanos(time), false);
         event.calculateDifference(calculateDifference);
-        if (initialData == null) {
+        if (initialData == null)
             event.instantEvent();
-        } else if (finalData == null) {
-            event.instantEvent(initialData);
-        } else {
-            event.instantEvent(initialData, finalData);
-        }
-        events.put(name, event);
+        else
+            event.instantEventWithPayload(initialData, finalData);
+        return addEvent(event, handle);
+    }
+
+    /**
+     * Adds an event recorded elsewhere (e.g.: by another process), with its original times.
+     * <p>
+     * Times are nanoseconds since the epoch (see {@link NanoClock}), an event stopped at the same time it started is
+     * added as an instant event.
+     * @param startTime : when the event started.
+     * @param stopTime : when the event stopped, or {@link #STILL_RUNNING}.
+     * @param handle : the handle to give the event, used when restoring events, or {@link #NO_HANDLE} to give it the
+     * next handle.
+     * @return the event's handle.
+     * @throws IllegalArgumentException if the event stopped before it started.
+     */
+    public int importEvent(String name, String initialData, String finalData, boolean calculateDifference, long startTime, long stopTime, int handle) {
+        return importEventWithPayload(name, Payload.of(initialData), Payload.of(finalData), calculateDifference, startTime, stopTime, handle);
+    }
+
+    /**
+     * Same as {@link #importEvent(String, String, String, boolean, long, long, int)}, with data that may already be compressed (see {@link Payload}).
+     */
+    public int importEventWithPayload(String name, Payload initialData, Payload finalData, boolean calculateDifference, long startTime, long stopTime, int handle) {
+        if (stopTime < startTime)
+            throw new IllegalArgumentException("Event " + name + " stops (" + stopTime + ") before it starts (" + startTime + ")");
+        long start = NanoClock.fromEpochNanos(startTime);
+        if (stopTime == startTime)
+            return startInstantEventWithPayload(name, initialData, finalData, calculateDifference, start, handle);
+        if (events.containsKey(name))
+            throw new IllegalStateException("There is already an event with name " + name);
+        checkHandle(handle);
+        Event event = new Event(name, mainEventElapsedSeconds(start), startTime, false);
+        event.startEventWithPayload(initialData, start);
+        if (stopTime != STILL_RUNNING)
+            event.stopEventWithPayload(finalData, calculateDifference, start + (stopTime - startTime));
+        return addEvent(event, handle);
     }
 
     public Optional<Event> getEvent(String name) {
         return Optional.ofNullable(events.get(name));
     }
 
+    /**
+     * @param handle : the handle given to the event when it was started.
+     */
+    public Optional<Event> getEvent(int handle) {
+        return Optional.ofNullable(handles.get(handle));
+    }
+
+    /**
+     * @return how many events have been added, events are never removed.
+     */
+    public long eventCount() {
+        return insertions.get();
+    }
+
+    /**
+     * The combined length of the data of every event (see {@link Event#dataLength()}), this reads every event.
+     */
+    public long payloadSize() {
+        long size = 0;
+        for (Event event : events.values())
+            size += event.dataLength();
+        return size;
+    }
+
     public Optional<Event> getMainEvent() {
-        return Optional.ofNullable(mainEvent);
+        return Optional.ofNullable(mainEvent.get());
     }
 
+    /**
+     * @return every event, ordered by timestamp.
+     */
     public List<Event> getEvents() {
-        return events.values().stream().sorted(Comparator.comparing(Event::timestamp)).collect(Collectors.toList());
+        return new ArrayList<>(timeline.values());
+    }
+
+    /**
+     * Reads a page of events, ordered by timestamp. Events added with a timestamp at or before {@code pageToken}'s
+     * position after that page was read are not on this page nor on any page after it.
+     * @param pageToken : the continuation token of the previous page, or {@code null} for the first page.
+     * @param pageSize : the maximum number of events on the page.
+     * @throws IllegalArgumentException if {@code pageToken} is not a valid token.
+     */
+    public EventsPage getEventsPage(String pageToken, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Page size must be positive (" + pageSize + ")");
+        Iterator<Map.Entry<TimelineKey, Event>> entries = (pageToken == null ? timeline : timeline.tailMap(TimelineKey.fromToken(pageToken), false))
+                .entrySet().iterator();
+        List<Event> page = new ArrayList<>(Math.min(pageSize, 1024));
+        TimelineKey last = null;
+        while (page.size() < pageSize && entries.hasNext()) {
+            Map.Entry<TimelineKey, Event> entry = entries.next();
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new EventsPage(page, entries.hasNext() ? last.toToken() : null);
+    }
+
+    /**
+     * Reads the events whose duration overlaps a time window, ordered by timestamp. Instant events last no time,
+     * running events last until now and recurring events last from their first cycle until now.
+     * <p>
+     * The window is relative to the timeline's origin: the main event's timestamp, or the first event's timestamp if
+     * there is no main event.
+     * @param from : the window's start, in nanoseconds since the timeline's origin.
+     * @param to : the window's end (inclusive), in nanoseconds since the timeline's origin.
+     * @throws IllegalArgumentException if {@code from} is after {@code to}.
+     */
+    public List<Event> getEventsInRange(long from, long to) {
+        if (from > to)
+            throw new IllegalArgumentException("Invalid time window, it starts (" + from + ") after it ends (" + to + ")");
+        Event origin = timelineOrigin();
+        if (origin == null)
+            return new ArrayList<>();
+        long now = System.nanoTime();
+        long windowStart = saturatedAdd(origin.timestampNanos(), from);
+        long windowEnd = saturatedAdd(origin.timestampNanos(), to);
+        // keyed by position, an event moved to its bucket while reading the window may be read twice
+        SortedMap<TimelineKey, Event> found = new TreeMap<>();
+        found.putAll(recurringEvents.headMap(TimelineKey.last(windowEnd), true));
+        // running events end now, so they can only overlap windows that start before now
+        if (windowStart <= NanoClock.toEpochNanos(now)) {
+            for (Map.Entry<TimelineKey, Event> entry : runningEvents.headMap(TimelineKey.last(windowEnd), true).entrySet()) {
+                Event event = entry.getValue();
+                if (!event.isRunning()) {
+                    // added to its bucket before being removed, so a concurrent read finds it in either of them. Its clock
+                    // may not have ended yet, timing it until now can only put it in a bucket of longer durations
+                    stoppedEventsByDuration.get(durationBucket(event.elapsedNanos(System.nanoTime()))).put(entry.getKey(), event);
+                    runningEvents.remove(entry.getKey(), event);
+                }
+                if (overlaps(event, windowStart, windowEnd, now))
+                    found.put(entry.getKey(), event);
+            }
+        }
+        for (int bucket = 0; bucket < DURATION_BUCKETS; bucket++) {
+            ConcurrentNavigableMap<TimelineKey, Event> stopped = stoppedEventsByDuration.get(bucket);
+            if (stopped.isEmpty())
+                continue;
+            long lookbackStart = saturatedAdd(windowStart, -longestDuration(bucket));
+            for (Map.Entry<TimelineKey, Event> entry : stopped.subMap(TimelineKey.first(lookbackStart), true, TimelineKey.last(windowEnd), true).entrySet()) {
+                if (overlaps(entry.getValue(), windowStart, windowEnd, now))
+                    found.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Reads the events under a name: the event with that name, if any, and every event whose name starts with that
+     * name followed by {@link #NAME_SEPARATOR}, ordered by name.
+     */
+    public List<Event> getEventsUnder(String prefix) {
+        List<Event> subtree = new ArrayList<>();
+        forEachEventUnder(prefix, subtree::add);
+        return subtree;
+    }
+
+    /**
+     * Aggregates the events under a name (see {@link #getEventsUnder(String)}).
+     */
+    public SubtreeSummary summarizeEventsUnder(String prefix) {
+        SubtreeSummary summary = new SubtreeSummary(prefix);
+        long now = System.nanoTime();
+        forEachEventUnder(prefix, event -> summary.add(event, now));
+        return summary;
+    }
+
+    /**
+     * Makes an event a child of another one.
+     * @param name : the child event's name.
+     * @param parentName : the parent event's name.
+     * @throws IllegalArgumentException if the event is the parent or an ancestor of the parent event.
+     * @throws IllegalStateException if the event already has a parent.
+     */
+    public void linkToParent(String name, String parentName) {
+        // two links checked concurrently could each close half of a cycle, links are checked and added one at a time
+        synchronized (parentsLock) {
+            for (String ancestor = parentName; ancestor != null; ancestor = parents.get(ancestor)) {
+                if (ancestor.equals(name))
+                    throw new IllegalArgumentException("Event " + name + " cannot be an ancestor of itself");
+            }
+            if (parents.putIfAbsent(name, parentName) != null)
+                throw new IllegalStateException("Event " + name + " already has a parent");
+        }
+        children.computeIfAbsent(parentName, parent -> new ConcurrentLinkedQueue<>()).add(name);
+    }
+
+    public Optional<String> getParent(String name) {
+        return Optional.ofNullable(parents.get(name));
+    }
+
+    /**
+     * Reads the tree of spans rooted at an event, with the total and self time of each span (see {@link SpanTree}).
+     * @return an empty value if there is no event with that name.
+     */
+    public Optional<SpanTree> getSpanTree(String name) {
+        Event event = events.get(name);
+        return event == null ? Optional.empty() : Optional.of(spanTree(event, System.nanoTime()));
+    }
+
+    private SpanTree spanTree(Event event, long now) {
+        List<SpanTree> nodes = new ArrayList<>();
+        Queue<String> names = children.get(event.name());
+        if (names != null) {
+            for (String name : names) {
+                Event child = events.get(name);
+                if (child != null)
+                    nodes.add(spanTree(child, now));
+            }
+        }
+        long start = event.timestampNanos();
+        long total = event.elapsedNanos(now);
+        // time covered by at least one child, children running in parallel are only counted once
+        nodes.sort(Comparator.comparingLong(node -> node.start));
+        long covered = 0;
+        long coveredUntil = start;
+        for (SpanTree node : nodes) {
+            long from = Math.max(node.start, coveredUntil);
+            long to = Math.min(node.start + node.total, start + total);
+            if (to > from) {
+                covered += to - from;
+                coveredUntil = to;
+            }
+        }
+        return new SpanTree(event.name(), start, total, total - covered, nodes);
+    }
+
+    /**
+     * An event and its children. The total time of a span is the event's elapsed time, its self time is the part of
+     * that time not covered by any of its children.
+     */
+    public static final class SpanTree {
+
+        private final String name;
+        private final long start;
+        private final long total;
+        private final long self;
+        private final List<SpanTree> children;
+
+        private SpanTree(String name, long start, long total, long self, List<SpanTree> children) {
+            this.name = name;
+            this.start = start;
+            this.total = total;
+            this.self = self;
+            this.children = children;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long totalNanos() {
+            return total;
+        }
+
+        public long selfNanos() {
+            return self;
+        }
+
+        public List<SpanTree> children() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            appendTo(sb, "");
+            return sb.toString();
+        }
+
+        private void appendTo(StringBuilder sb, String indentation) {
+            sb.append("{\n");
+            sb.append(indentation).append("\t\"name\":").append("\"").append(name).append("\"").append(",\n");
+            sb.append(indentation).append("\t\"totalTime(s)\":").append("\"").append(NanoClock.toSecondsExtended(total)).append("\"").append(",\n");
+            sb.append(indentation).append("\t\"selfTime(s)\":").append("\"").append(NanoClock.toSecondsExtended(self)).append("\"").append(",\n");
+            sb.append(indentation).append("\t\"children\":[");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0)
+                    sb.append(",");
+                children.get(i).appendTo(sb, indentation + "\t");
+            }
+            sb.append("]\n");
+            sb.append(indentation).append("}");
+        }
+
+    }
+
+    /**
+     * A page of events and, if there are more events, the token to read the next page.
+     */
+    public static final class EventsPage {
+
+        private final List<Event> events;
+        private final String continuationToken;
+
+        private EventsPage(List<Event> events, String continuationToken) {
+            this.events = events;
+            this.continuationToken = continuationToken;
+        }
+
+        public List<Event> events() {
+            return events;
+        }
+
+        public Optional<String> continuationToken() {
+            return Optional.ofNullable(continuationToken);
+        }
+
+    }
+
+    /**
+     * Totals of the events under a name, running events count their elapsed time so far.
+     */
+    public static final class SubtreeSummary {
+
+        private final String prefix;
+        private int count = 0;
+        private int running = 0;
+        private int instant = 0;
+        private long elapsedNanos = 0;
+
+        private SubtreeSummary(String prefix) {
+            this.prefix = prefix;
+        }
+
+        private void add(Event event, long now) {
+            count++;
+            Event.State state = event.state();
+            if (state == Event.State.RUNNING)
+                running++;
+            else if (state == Event.State.INSTANT)
+                instant++;
+            elapsedNanos += event.elapsedNanos(now);
+        }
+
+        public String prefix() {
+            return prefix;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public int running() {
+            return running;
+        }
+
+        public int instant() {
+            return instant;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{\n");
+            sb.append("\t\"prefix\":").append("\"").append(prefix).append("\"").append(",\n");
+            sb.append("\t\"count\":").append("\"").append(count).append("\"").append(",\n");
+            sb.append("\t\"running\":").append("\"").append(running).append("\"").append(",\n");
+            sb.append("\t\"instant\":").append("\"").append(instant).append("\"").append(",\n");
+            sb.append("\t\"elapsedTime(s)\":").append("\"").append(NanoClock.toSecondsExtended(elapsedNanos)).append("\"").append("\n");
+            sb.append("}");
+            return sb.toString();
+        }
+
+    }
+
+    private void forEachEventUnder(String prefix, Consumer<Event> action) {
+        Event named = events.get(prefix);
+        if (named != null)
+            action.accept(named);
+        events.subMap(prefix + NAME_SEPARATOR, true, prefix + (char) (NAME_SEPARATOR + 1), false).values().forEach(action);
+    }
+
+    private double mainEventElapsedSeconds(long currentTime) {
+        Event main = mainEvent.get();
+        return main == null ? 0 : main.elapsedSeconds(currentTime);
+    }
+
+    private int addEvent(Event event, int handle) {
+        if (events.putIfAbsent(event.name(), event) != null)
+            throw new IllegalStateException("There is already an event with name " + event.name());
+        return addToIndexes(event, handle);
+    }
+
+    private void checkHandle(int handle) {
+        if (handle != NO_HANDLE && handles.get(handle) != null)
+            throw new IllegalStateException("Event handle " + handle + " is already used");
+    }
+
+    /*
+     * Adds an event already added by name to the other indexes.
+     */
+    private int addToIndexes(Event event, int handle) {
+        if (handle == NO_HANDLE)
+            handle = handles.add(event);
+        else
+            handles.put(handle, event);
+        TimelineKey key = new TimelineKey(event.timestampNanos(), insertions.incrementAndGet());
+        timeline.put(key, event);
+        if (event.isRecurring())
+            recurringEvents.put(key, event);
+        else if (event.isRunning())
+            runningEvents.put(key, event);
+        else
+            stoppedEventsByDuration.get(durationBucket(event.elapsedNanos(System.nanoTime()))).put(key, event);
+        return handle;
+    }
+
+    /*
+     * The event whose timestamp is the timeline's origin.
+     */
+    private Event timelineOrigin() {
+        Event main = mainEvent.get();
+        if (main != null)
+            return main;
+        Map.Entry<TimelineKey, Event> first = timeline.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    /*
+     * Recurring events are considered to last from the start of their first cycle until now.
+     */
+    private static boolean overlaps(Event event, long windowStart, long windowEnd, long now) {
+        long start = event.timestampNanos();
+        if (event.isRecurring())
+            return start <= windowEnd;
+        return start <= windowEnd && start + event.elapsedNanos(now) >= windowStart;
+    }
+
+    /*
+     * Bucket 0 holds events that lasted no time, bucket b > 0 those lasting between 2^(b-1) and 2^b - 1 nanoseconds.
+     */
+    private static int durationBucket(long duration) {
+        return Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, duration));
+    }
+
+    private static long longestDuration(int bucket) {
+        return bucket == 0 ? 0 : -1L >>> (Long.SIZE - bucket);
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long result = a + b;
+        if (((a ^ result) & (b ^ result)) < 0)
+            return b < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return result;
+    }
+
+    /**
+     * Position of an event on the timeline.
+     */
+    private static final class TimelineKey implements Comparable<TimelineKey> {
+
+        private static final String TOKEN_SEPARATOR = ".";
+
+        private final long epochSecond;
+        private final int nano;
+        private final long insertion;
+
+        private TimelineKey(long epochNanos, long insertion) {
+            this(Math.floorDiv(epochNanos, 1_000_000_000L), (int) Math.floorMod(epochNanos, 1_000_000_000L), insertion);
+        }
+
+        private TimelineKey(long epochSecond, int nano, long insertion) {
+            this.epochSecond = epochSecond;
+            this.nano = nano;
+            this.insertion = insertion;
+        }
+
+        /**
+         * The position before every event with a timestamp of {@code epochNanos} or later.
+         */
+        private static TimelineKey first(long epochNanos) {
+            return new TimelineKey(epochNanos, Long.MIN_VALUE);
+        }
+
+        /**
+         * The position after every event with a timestamp of {@code epochNanos} or earlier.
+         */
+        private static TimelineKey last(long epochNanos) {
+            return new TimelineKey(epochNanos, Long.MAX_VALUE);
+        }
+
+        private String toToken() {
+            return Long.toString(epochSecond, Character.MAX_RADIX) + TOKEN_SEPARATOR
+                    + Integer.toString(nano, Character.MAX_RADIX) + TOKEN_SEPARATOR
+                    + Long.toString(insertion, Character.MAX_RADIX);
+        }
+
+        private static TimelineKey fromToken(String token) {
+            String[] parts = token.split("\\" + TOKEN_SEPARATOR, -1);
+            if (parts.length != 3)
+                throw new IllegalArgumentException("Invalid page token " + token);
+            try {
+                return new TimelineKey(
+                        Long.parseLong(parts[0], Character.MAX_RADIX),
+                        Integer.parseInt(parts[1], Character.MAX_RADIX),
+                        Long.parseLong(parts[2], Character.MAX_RADIX)
+                );
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page token " + token);
+            }
+        }
+
+        @Override
+        public int compareTo(TimelineKey other) {
+            int comparison = Long.compare(epochSecond, other.epochSecond);
+            if (comparison == 0)
+                comparison = Integer.compare(nano, other.nano);
+            if (comparison == 0)
+                comparison = Long.compare(insertion, other.insertion);
+            return comparison;
+        }
+
     }
 
 }
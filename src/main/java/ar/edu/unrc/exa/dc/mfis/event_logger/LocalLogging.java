@@ -1,26 +1,58 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger;
 
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties.LogDropPolicy;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.*;
 
+/**
+ * Runtime logging of the library's classes, to the console and to a file per class in the {@code logs} folder.
+ * <p>
+ * The level is read from {@link EventLoggerProperties#runtimeLoggingLevel()}, messages that are expensive to build
+ * should be logged with a {@link java.util.function.Supplier} so they are not built under that level. When
+ * {@link EventLoggerProperties#runtimeLoggingAsyncEnabled()} is set, loggers only queue their records and a single
+ * background thread formats and writes them, flushing the console and files once per batch instead of once per record.
+ */
 public class LocalLogging {
 
-    public static Logger getLogger(Class<?> forClass) {return getLogger(forClass, Level.ALL); }
+    private static AsyncWriter asyncWriter;
+
+    public static Logger getLogger(Class<?> forClass) {return getLogger(forClass, EventLoggerProperties.runtimeLoggingLevel()); }
     public static Logger getLogger(Class<?> forClass, Level loggingLevel) {
         Logger logger = Logger.getLogger(forClass.getName());
         final Path logsFolder = Paths.get("", "logs");
+        final boolean async = EventLoggerProperties.runtimeLoggingAsyncEnabled();
         try{
             Files.createDirectories(logsFolder);
             Handler[] handlers = logger.getHandlers();
             Arrays.stream(handlers).forEach(logger::removeHandler);
             //Assigning handlers to LOGGER object
-            logger.addHandler(new CoolConsoleHandler());
-            FileHandler fileHandler = new FileHandler(Paths.get(logsFolder.toString(), forClass.getName() +  ".log").toString());
-            logger.addHandler(fileHandler);
+            String logFile = Paths.get(logsFolder.toString(), forClass.getName() +  ".log").toString();
+            if (async) {
+                AsyncHandler asyncHandler = new AsyncHandler(asyncWriter());
+                logger.addHandler(asyncHandler);
+                if (EventLoggerProperties.runtimeLoggingConsoleOutput())
+                    asyncHandler.addOutput(new CoolConsoleHandler(false));
+                asyncHandler.addOutput(new BatchedFileHandler(logFile));
+            } else {
+                if (EventLoggerProperties.runtimeLoggingConsoleOutput())
+                    logger.addHandler(new CoolConsoleHandler());
+                FileHandler fileHandler = new FileHandler(logFile);
+                logger.addHandler(fileHandler);
+            }
             //Setting levels to handlers and LOGGER
             logger.setLevel(loggingLevel);
             logger.setUseParentHandlers(false);
@@ -30,19 +62,43 @@ public class LocalLogging {
         return logger;
     }
 
+    /**
+     * @return how many records were discarded because the asynchronous logging queue was full.
+     */
+    public static synchronized long droppedRecords() {
+        return asyncWriter == null ? 0 : asyncWriter.dropped.sum();
+    }
+
+    private static synchronized AsyncWriter asyncWriter() {
+        if (asyncWriter == null)
+            asyncWriter = new AsyncWriter();
+        return asyncWriter;
+    }
+
     public static class CoolConsoleHandler extends StreamHandler {
 
         private final ConsoleHandler stderrHandler = new ConsoleHandler();
+        private final boolean flushEachRecord;
 
         public CoolConsoleHandler() {
+            this(true);
+        }
+
+        /**
+         * @param flushEachRecord : {@code false} to leave flushing records up to {@code System.out} or to whoever calls
+         * {@link #flush()}, records above INFO are always flushed.
+         */
+        public CoolConsoleHandler(boolean flushEachRecord) {
             super(System.out, new SimpleFormatter());
+            this.flushEachRecord = flushEachRecord;
         }
 
         @Override
         public void publish(LogRecord record) {
             if (record.getLevel().intValue() <= Level.INFO.intValue()) {
                 super.publish(record);
-                super.flush();
+                if (flushEachRecord)
+                    super.flush();
             } else {
                 stderrHandler.publish(record);
                 stderrHandler.flush();
@@ -51,4 +107,225 @@ public class LocalLogging {
 
     }
 
+    /*
+     * A FileHandler that only flushes when flush() is called directly, instead of after every record.
+     */
+    private static class BatchedFileHandler extends FileHandler {
+
+        private boolean publishing = false;
+
+        BatchedFileHandler(String pattern) throws IOException {
+            super(pattern);
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            publishing = true;
+            try {
+                super.publish(record);
+            } finally {
+                publishing = false;
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (!publishing)
+                super.flush();
+        }
+
+    }
+
+    /**
+     * Queues records for the shared background writer, which publishes them to this handler's outputs.
+     * <p>
+     * Records are attributed to their logger's class, as every logger is named after the class using it. The calling
+     * method is not looked up: it can only be found by walking the caller's stack, which costs more than queueing the
+     * record.
+     */
+    public static class AsyncHandler extends Handler {
+
+        private final AsyncWriter writer;
+        private final List<Handler> outputs = new CopyOnWriteArrayList<>();
+
+        private AsyncHandler(AsyncWriter writer) {
+            this.writer = writer;
+        }
+
+        void addOutput(Handler output) {
+            outputs.add(output);
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            if (!isLoggable(record))
+                return;
+            record.setSourceClassName(record.getLoggerName());
+            record.setSourceMethodName(null);
+            writer.enqueue(new QueuedRecord(this, record));
+        }
+
+        /**
+         * Writes every queued record, from every logger, before returning.
+         */
+        @Override
+        public void flush() {
+            writer.writeQueued();
+        }
+
+        @Override
+        public void close() throws SecurityException {
+            flush();
+            for (Handler output : outputs)
+                output.close();
+        }
+
+        private void write(LogRecord record) {
+            for (Handler output : outputs)
+                output.publish(record);
+        }
+
+        private void flushOutputs() {
+            for (Handler output : outputs)
+                output.flush();
+        }
+
+    }
+
+    private static class QueuedRecord {
+
+        private final AsyncHandler handler;
+        private final LogRecord record;
+
+        QueuedRecord(AsyncHandler handler, LogRecord record) {
+            this.handler = handler;
+            this.record = record;
+        }
+
+    }
+
+    /*
+     * A bounded queue of records and the thread writing them. When the queue is full, records up to INFO are dropped
+     * following the configured policy while higher ones wait for room. When the process ends the queue is written and,
+     * from then on, records are written by the thread logging them.
+     */
+    private static class AsyncWriter implements Runnable {
+
+        private static final long SHUTDOWN_TIMEOUT = 2000;
+
+        private final ArrayBlockingQueue<QueuedRecord> queue = new ArrayBlockingQueue<>(EventLoggerProperties.runtimeLoggingAsyncQueueCapacity());
+        private final int batchSize = EventLoggerProperties.runtimeLoggingAsyncBatchSize();
+        private final LogDropPolicy dropPolicy = EventLoggerProperties.runtimeLoggingAsyncDropPolicy();
+        private final LongAdder dropped = new LongAdder();
+        private final List<QueuedRecord> batch = new ArrayList<>(batchSize);
+        private final Set<AsyncHandler> written = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Thread thread;
+        private volatile boolean closing = false;
+
+        AsyncWriter() {
+            thread = new Thread(this, "event-logger-log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "event-logger-log-writer-shutdown"));
+        }
+
+        void enqueue(QueuedRecord queued) {
+            if (droppable(queued)) {
+                if (!queue.offer(queued)) {
+                    if (dropPolicy == LogDropPolicy.DROP_OLDEST) {
+                        while (!queue.offer(queued)) {
+                            QueuedRecord oldest = queue.poll();
+                            if (oldest == null)
+                                continue;
+                            if (droppable(oldest))
+                                dropped.increment();
+                            else
+                                writeNow(oldest);
+                        }
+                    } else {
+                        dropped.increment();
+                    }
+                }
+            } else if (!put(queued)) {
+                // the writer may be gone, so there might never be room for the record
+                writeQueued();
+                writeNow(queued);
+            }
+            if (closing)
+                writeQueued();
+        }
+
+        private static boolean droppable(QueuedRecord queued) {
+            return queued.record.getLevel().intValue() <= Level.INFO.intValue();
+        }
+
+        private boolean put(QueuedRecord queued) {
+            boolean interrupted = false;
+            boolean added = false;
+            while (!closing && !added) {
+                try {
+                    queue.put(queued);
+                    added = true;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            return added;
+        }
+
+        private synchronized void writeNow(QueuedRecord queued) {
+            queued.handler.write(queued.record);
+            queued.handler.flushOutputs();
+        }
+
+        @Override
+        public void run() {
+            while (!closing) {
+                QueuedRecord first;
+                try {
+                    first = queue.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                synchronized (this) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch();
+                }
+            }
+            writeQueued();
+        }
+
+        synchronized void writeQueued() {
+            while (queue.drainTo(batch, batchSize) > 0)
+                writeBatch();
+        }
+
+        private void writeBatch() {
+            for (QueuedRecord queued : batch) {
+                queued.handler.write(queued.record);
+                written.add(queued.handler);
+            }
+            for (AsyncHandler handler : written)
+                handler.flushOutputs();
+            written.clear();
+            batch.clear();
+        }
+
+        private void close() {
+            closing = true;
+            thread.interrupt();
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException ignored) {}
+            writeQueued();
+            long droppedRecords = dropped.sum();
+            if (droppedRecords > 0)
+                System.err.println(droppedRecords + " runtime logging records were dropped because the logging queue was full");
+        }
+
+    }
+
 }
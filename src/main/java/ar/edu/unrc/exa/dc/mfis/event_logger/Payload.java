@@ -0,0 +1,190 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Data associated with an event, kept compressed when it's large.
+ * <p>
+ * Text of at least {@link EventLoggerProperties#compressionThreshold()} characters is encoded as UTF-8 and deflated at
+ * the fastest level, unless that doesn't make it smaller. A compressed payload travels and is stored as is, its text
+ * is inflated again each time {@link #text()} is called and is never kept.
+ * <p>
+ * The sizes of a compressed payload come with it, so they are checked before trusting them: it can't inflate to more
+ * than {@link EventLoggerProperties#compressionMaxInflatedSize()} bytes, nor to more than deflate can expand its
+ * compressed bytes, and it's inflated into a buffer that only grows as data is actually inflated.
+ */
+public final class Payload implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = EventLoggerProperties.compressionThreshold();
+    private static final int MAX_INFLATED_SIZE = EventLoggerProperties.compressionMaxInflatedSize();
+    // deflate can't expand data by more than about 1032 to 1
+    private static final long MAX_DEFLATE_RATIO = 1032;
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private final String text;
+    private final byte[] compressed;
+    private final int length;
+    private final int encodedLength;
+
+    private Payload(String text, byte[] compressed, int length, int encodedLength) {
+        this.text = text;
+        this.compressed = compressed;
+        this.length = length;
+        this.encodedLength = encodedLength;
+    }
+
+    /**
+     * @return {@code text} as a payload, compressed if it's large enough; {@code null} if {@code text} is {@code null}.
+     */
+    public static Payload of(String text) {
+        if (text == null)
+            return null;
+        if (THRESHOLD == 0 || text.length() < THRESHOLD)
+            return plain(text);
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(encoded);
+        if (deflated.length >= encoded.length)
+            return plain(text);
+        return new Payload(null, deflated, text.length(), encoded.length);
+    }
+
+    /**
+     * @return {@code text} as an uncompressed payload, used for text that was already left uncompressed (e.g.: by a
+     * client); {@code null} if {@code text} is {@code null}.
+     */
+    public static Payload plain(String text) {
+        return text == null ? null : new Payload(text, null, text.length(), 0);
+    }
+
+    /**
+     * Rebuilds a compressed payload, as returned by {@link #compressed()}.
+     * @param length : the text's length in characters.
+     * @param encodedLength : the text's length once encoded as UTF-8.
+     * @throws IllegalArgumentException if the lengths can't be those of the compressed bytes.
+     */
+    public static Payload ofCompressed(byte[] compressed, int length, int encodedLength) {
+        checkCompressed(compressed, length, encodedLength);
+        return new Payload(null, compressed, length, encodedLength);
+    }
+
+    /*
+     * Each character takes at least one byte once encoded as UTF-8.
+     */
+    private static void checkCompressed(byte[] compressed, int length, int encodedLength) {
+        if (compressed == null)
+            throw new IllegalArgumentException("Compressed payload has no compressed bytes");
+        if (length < 0 || encodedLength < length)
+            throw new IllegalArgumentException("Compressed payload of " + length + " characters can't be " + encodedLength + " bytes long");
+        if (encodedLength > MAX_INFLATED_SIZE)
+            throw new IllegalArgumentException("Compressed payload inflates to " + encodedLength + " bytes, more than the maximum of " + MAX_INFLATED_SIZE);
+        if (encodedLength > compressed.length * MAX_DEFLATE_RATIO)
+            throw new IllegalArgumentException("Compressed payload of " + compressed.length + " bytes can't inflate to " + encodedLength + " bytes");
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (compressed == null) {
+            if (text == null)
+                throw new InvalidObjectException("Payload has neither text nor compressed bytes");
+            return;
+        }
+        try {
+            checkCompressed(compressed, length, encodedLength);
+        } catch (IllegalArgumentException invalid) {
+            throw new InvalidObjectException(invalid.getMessage());
+        }
+    }
+
+    /**
+     * @return the text of a payload that may be {@code null}.
+     */
+    public static String text(Payload payload) {
+        return payload == null ? null : payload.text();
+    }
+
+    public boolean isCompressed() {
+        return compressed != null;
+    }
+
+    /**
+     * @return the text's length in characters, without inflating it.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the deflated UTF-8 encoding of the text, only for compressed payloads.
+     */
+    public byte[] compressed() {
+        return compressed;
+    }
+
+    /**
+     * @return the text's length once encoded as UTF-8, only for compressed payloads.
+     */
+    public int encodedLength() {
+        return encodedLength;
+    }
+
+    /**
+     * @return the text, inflated if it's compressed.
+     */
+    public String text() {
+        if (compressed == null)
+            return text;
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] encoded = new byte[(int) Math.min(encodedLength, Math.max(64, compressed.length * 4L))];
+        try {
+            int inflated = 0;
+            while (inflated < encodedLength && !inflater.finished()) {
+                if (inflated == encoded.length)
+                    encoded = Arrays.copyOf(encoded, (int) Math.min(encodedLength, encoded.length * 2L));
+                int read = inflater.inflate(encoded, inflated, encoded.length - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                inflated += read;
+            }
+            if (inflated != encodedLength)
+                throw new IllegalStateException("Compressed payload is truncated, inflated " + inflated + " of " + encodedLength + " bytes");
+        } catch (DataFormatException corrupted) {
+            throw new IllegalStateException("Compressed payload is corrupted", corrupted);
+        }
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] encoded) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(encoded);
+        deflater.finish();
+        byte[] buffer = new byte[Math.max(64, encoded.length / 4)];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == buffer.length)
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public String toString() {
+        return isCompressed() ? "(" + length + " characters, compressed to " + compressed.length + " bytes)" : text;
+    }
+
+}
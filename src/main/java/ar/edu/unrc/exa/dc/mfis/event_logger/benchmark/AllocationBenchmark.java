@@ -0,0 +1,79 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+/**
+ * Measures the bytes allocated by each operation of the recording path: starting an event (which stores it), stopping
+ * it, running a cycle of a recurring event and reading an event's elapsed time.
+ * <p>
+ * Allocations are read from the current thread's allocation counter (a HotSpot extension of
+ * {@link java.lang.management.ThreadMXBean}), every operation is run enough times before measuring for it to be
+ * compiled. Starting an event allocates the stored event and its index entries, the rest of the operations are
+ * expected to allocate nothing.
+ */
+public class AllocationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 50_000;
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new IllegalStateException("This JVM can't measure allocated memory");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        EventLogger eventLogger = EventLogger.instance();
+        String startingData = "x = 1, y = \"two\"\n";
+        String endingData = "x = 2, y = \"three\"\n";
+        String[] names = names("benchmark.event.", WARMUP_ITERATIONS + MEASURED_ITERATIONS);
+        String[] instantNames = names("benchmark.instant.", WARMUP_ITERATIONS + MEASURED_ITERATIONS);
+        Event[] events = new Event[names.length];
+        eventLogger.startRecurringEvent("benchmark.recurring", startingData);
+        Event recurring = eventLogger.getEvent("benchmark.recurring").orElseThrow(IllegalStateException::new);
+        recurring.stopEvent(endingData);
+        long[] elapsed = new long[1];
+
+        System.out.printf("%-32s %12s%n", "operation", "bytes/op");
+        report("startEvent (stores the event)", i -> {
+            eventLogger.startEvent(names[i], startingData);
+            events[i] = eventLogger.getEvent(names[i]).orElseThrow(IllegalStateException::new);
+        });
+        report("stopEvent", i -> events[i].stopEvent(endingData, false));
+        report("startInstantEvent (stores it)", i -> eventLogger.startInstantEvent(instantNames[i], startingData, endingData, false));
+        report("recurring cycle (start+stop)", i -> {
+            recurring.starEvent(startingData);
+            recurring.stopEvent(endingData);
+        });
+        report("elapsedNanos", i -> elapsed[0] += events[i].elapsedNanos(System.nanoTime()));
+    }
+
+    /*
+     * Runs the operation WARMUP_ITERATIONS times and then measures MEASURED_ITERATIONS more, each call gets a different
+     * index so operations on distinct events can be measured.
+     */
+    private static void report(String operation, IntConsumer action) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            action.accept(i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = WARMUP_ITERATIONS; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+            action.accept(i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        System.out.printf("%-32s %12.1f%n", operation, allocated / (double) MEASURED_ITERATIONS);
+    }
+
+    private static String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,392 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.client.EventLoggerClient;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport.ClientTransport;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.LatencyHistogram;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Puts a server under load from several client processes and reports the throughput and latency percentiles of each
+ * {@link Request.RequestType}.
+ * <p>
+ * Worker processes are started like {@link EventLoggerClient} starts a server (same classpath and properties) and use
+ * {@link EventLoggerClient#sendRequest(Request)}, so they use the configured transport and client settings. Once every
+ * worker is connected they all start at the same time, run a warmup and then a measured period, in which each thread
+ * repeatedly picks an operation and a payload size at random, with the configured weights.
+ * <p>
+ * When a rate is given operations are scheduled at fixed intervals and the latency of an operation's first request is
+ * measured from when it was due, so a server that stalls is not hidden by the operations that couldn't be sent in the
+ * meantime. Usage:
+ * <pre>
+ * LoadGenerator [--processes N] [--threads N] [--warmup seconds] [--duration seconds]
+ *               [--rate operations per second of each process, 0 for no limit]
+ *               [--mix operation=weight,...] [--payload size=weight,...]
+ * </pre>
+ * Operations are {@code START_STOP} (starting and stopping an event), {@code INSTANT}, {@code RECURRING} (a cycle of a
+ * recurring event) and {@code QUERY} (the information of the thread's last event), payload sizes are in characters.
+ */
+public class LoadGenerator {
+
+    enum Operation {
+        START_STOP,
+        INSTANT,
+        RECURRING,
+        QUERY
+    }
+
+    private static final String WORKER = "--worker";
+    private static final String RUN = "--run";
+    private static final String READY = "READY";
+    private static final String GO = "GO";
+    private static final String RESULT = "RESULT";
+    private static final Request.RequestType[] REQUEST_TYPES = Request.RequestType.values();
+
+    public static void main(String[] args) throws Exception {
+        Settings settings;
+        try {
+            settings = Settings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadGenerator [--processes N] [--threads N] [--warmup seconds] [--duration seconds] [--rate operations per second of each process] [--mix operation=weight,...] [--payload size=weight,...]");
+            System.exit(1);
+            return;
+        }
+        if (settings.worker >= 0) {
+            runWorker(settings);
+            System.exit(0);
+        }
+        coordinate(args, settings);
+    }
+
+    private static void coordinate(String[] args, Settings settings) throws IOException, InterruptedException {
+        EventLoggerProperties.Transport transport = EventLoggerProperties.transport();
+        if (transport == EventLoggerProperties.Transport.EMBEDDED)
+            throw new IllegalArgumentException("The " + transport + " transport can't be shared by several processes");
+        // a server is started now if none is running, instead of every worker trying to start one
+        ClientTransport.connect(transport, EventLoggerProperties.serverURL()).close();
+        // events of each run get different names, so runs can be repeated on the same server
+        String run = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < settings.processes; i++) {
+            ProcessBuilder pb = new ProcessBuilder(workerArguments(args, run, i));
+            pb.redirectError(ProcessBuilder.Redirect.appendTo(new File("logs/loadGeneratorWorker" + i + ".log")));
+            workers.add(pb.start());
+        }
+        List<BufferedReader> outputs = new ArrayList<>();
+        for (Process worker : workers) {
+            BufferedReader output = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            do {
+                line = output.readLine();
+            } while (line != null && !line.equals(READY));
+            if (line == null)
+                throw new IllegalStateException("A worker failed to start (see logs/loadGeneratorWorker*.log)");
+            outputs.add(output);
+        }
+        for (Process worker : workers) {
+            Writer input = new OutputStreamWriter(worker.getOutputStream(), StandardCharsets.UTF_8);
+            input.write(GO + "\n");
+            input.flush();
+        }
+        System.out.println(settings.processes + " processes, " + settings.threads + " threads each, " + transport + " transport, "
+                + settings.warmupSeconds + "s warmup, " + settings.durationSeconds + "s measured");
+        Map<Request.RequestType, LatencyHistogram> latencies = new EnumMap<>(Request.RequestType.class);
+        Map<Request.RequestType, Long> errors = new EnumMap<>(Request.RequestType.class);
+        for (int i = 0; i < workers.size(); i++) {
+            String line;
+            while ((line = outputs.get(i).readLine()) != null) {
+                if (line.startsWith(RESULT + " "))
+                    readResult(line, latencies, errors);
+            }
+            if (workers.get(i).waitFor() != 0)
+                System.err.println("Worker " + i + " failed (see logs/loadGeneratorWorker" + i + ".log)");
+        }
+        report(latencies, errors, settings.durationSeconds);
+    }
+
+    private static List<String> workerArguments(String[] args, String run, int worker) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("java");
+        arguments.add("-cp");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.addAll(Arrays.asList(EventLoggerProperties.asArgs()));
+        // the coordinator reads the worker's output, runtime logging still goes to log files
+        arguments.add("-D" + EventLoggerProperties.ConfigKey.EVENT_LOGGER_RUNTIME_LOGGING_CONSOLE_OUTPUT.getKey() + "=false");
+        arguments.add(LoadGenerator.class.getCanonicalName());
+        arguments.addAll(Arrays.asList(args));
+        arguments.add(RUN);
+        arguments.add(run);
+        arguments.add(WORKER);
+        arguments.add(String.valueOf(worker));
+        return arguments;
+    }
+
+    private static void report(Map<Request.RequestType, LatencyHistogram> latencies, Map<Request.RequestType, Long> errors, int durationSeconds) {
+        System.out.printf("%-24s %10s %10s %10s %10s %10s %10s %8s%n", "request type", "count", "ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)", "errors");
+        for (Request.RequestType type : REQUEST_TYPES) {
+            LatencyHistogram histogram = latencies.get(type);
+            long failed = errors.getOrDefault(type, 0L);
+            if (histogram == null && failed == 0)
+                continue;
+            if (histogram == null)
+                histogram = new LatencyHistogram();
+            long count = histogram.count();
+            System.out.printf("%-24s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %8d%n", type, count, count / (double) durationSeconds,
+                    micros(histogram.percentile(0.5)), micros(histogram.percentile(0.99)), micros(histogram.percentile(0.999)),
+                    micros(histogram.percentile(1)), failed);
+        }
+    }
+
+    private static double micros(long nanoseconds) {
+        return nanoseconds / 1000d;
+    }
+
+    /*
+     * RESULT <request type> <errors> <bucket>:<count>,... (only buckets with a count)
+     */
+    private static void readResult(String line, Map<Request.RequestType, LatencyHistogram> latencies, Map<Request.RequestType, Long> errors) {
+        String[] parts = line.split(" ", -1);
+        Request.RequestType type = Request.RequestType.valueOf(parts[1]);
+        errors.merge(type, Long.parseLong(parts[2]), Long::sum);
+        LatencyHistogram histogram = latencies.computeIfAbsent(type, t -> new LatencyHistogram());
+        long[] counts = new long[histogram.bucketCounts().length];
+        if (!parts[3].isEmpty()) {
+            for (String bucket : parts[3].split(",")) {
+                int separator = bucket.indexOf(':');
+                counts[Integer.parseInt(bucket.substring(0, separator))] = Long.parseLong(bucket.substring(separator + 1));
+            }
+        }
+        histogram.add(counts);
+    }
+
+    private static void runWorker(Settings settings) throws IOException, InterruptedException {
+        EventLoggerClient client = EventLoggerClient.instance();
+        System.out.println(READY);
+        System.out.flush();
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        if (!GO.equals(input.readLine()))
+            return;
+        LatencyHistogram[] latencies = new LatencyHistogram[REQUEST_TYPES.length];
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new LatencyHistogram();
+        AtomicLongArray errors = new AtomicLongArray(REQUEST_TYPES.length);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(settings.warmupSeconds);
+        long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(settings.durationSeconds);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < settings.threads; t++) {
+            WorkerThread worker = new WorkerThread(client, settings, t, start, measureFrom, measureUntil, latencies, errors);
+            Thread thread = new Thread(worker, "LoadGenerator-worker-" + t);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+        for (Request.RequestType type : REQUEST_TYPES) {
+            long[] counts = latencies[type.ordinal()].bucketCounts();
+            long failed = errors.get(type.ordinal());
+            StringJoiner buckets = new StringJoiner(",");
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0)
+                    buckets.add(i + ":" + counts[i]);
+            }
+            if (buckets.length() > 0 || failed > 0)
+                System.out.println(RESULT + " " + type + " " + failed + " " + buckets);
+        }
+        System.out.flush();
+    }
+
+    private static final class WorkerThread implements Runnable {
+
+        private final EventLoggerClient client;
+        private final Settings settings;
+        private final String prefix;
+        private final long start;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final LatencyHistogram[] latencies;
+        private final AtomicLongArray errors;
+        private final Random random;
+        private final Map<Integer, String> payloads = new HashMap<>();
+        private long events = 0;
+        private String lastEvent = null;
+
+        private WorkerThread(EventLoggerClient client, Settings settings, int thread, long start, long measureFrom, long measureUntil,
+                             LatencyHistogram[] latencies, AtomicLongArray errors) {
+            this.client = client;
+            this.settings = settings;
+            this.prefix = "load." + settings.run + "." + settings.worker + "." + thread + ".";
+            this.start = start;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.latencies = latencies;
+            this.errors = errors;
+            this.random = new Random(31L * settings.worker + thread);
+            for (int size : settings.payload.keySet())
+                payloads.put(size, payload(size));
+        }
+
+        @Override
+        public void run() {
+            long interval = settings.rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(settings.threads) / settings.rate;
+            long due = start;
+            while (true) {
+                long now = System.nanoTime();
+                if (interval > 0) {
+                    if (due > now) {
+                        LockSupport.parkNanos(due - now);
+                        now = System.nanoTime();
+                    }
+                } else {
+                    due = now;
+                }
+                if (due >= measureUntil)
+                    return;
+                execute(pick(settings.mix), payloads.get(pick(settings.payload)), due);
+                due += interval;
+            }
+        }
+
+        private void execute(Operation operation, String data, long due) {
+            switch (operation) {
+                case START_STOP: {
+                    String name = nextName();
+                    if (send(Request.startEvent(name, data), due))
+                        send(Request.stopEvent(name, data), System.nanoTime());
+                    break;
+                }
+                case INSTANT: {
+                    send(Request.startInstantEvent(nextName(), data, data), due);
+                    break;
+                }
+                case RECURRING: {
+                    String name = prefix + "recurring";
+                    if (send(Request.startRecurringEvent(name, data), due))
+                        send(Request.stopEvent(name, data), System.nanoTime());
+                    break;
+                }
+                case QUERY: {
+                    send(lastEvent == null ? Request.checkEventName(prefix) : Request.queryEventInformation(lastEvent), due);
+                    break;
+                }
+            }
+        }
+
+        /*
+         * Sends a request and records its latency from a given time, if it was due during the measured period.
+         */
+        private boolean send(Request request, long from) {
+            Response response = client.sendRequest(request);
+            long latency = System.nanoTime() - from;
+            if (from >= measureFrom && from < measureUntil) {
+                if (response.error())
+                    errors.incrementAndGet(request.requestType().ordinal());
+                else
+                    latencies[request.requestType().ordinal()].record(latency);
+            }
+            return !response.error();
+        }
+
+        private String nextName() {
+            lastEvent = prefix + events++;
+            return lastEvent;
+        }
+
+        private <T> T pick(Map<T, Integer> weights) {
+            int total = 0;
+            for (int weight : weights.values())
+                total += weight;
+            int chosen = random.nextInt(total);
+            for (Map.Entry<T, Integer> entry : weights.entrySet()) {
+                chosen -= entry.getValue();
+                if (chosen < 0)
+                    return entry.getKey();
+            }
+            throw new IllegalStateException("No weight was chosen");
+        }
+
+        private String payload(int size) {
+            if (size == 0)
+                return null;
+            StringBuilder sb = new StringBuilder(size);
+            while (sb.length() < size)
+                sb.append("value ").append(random.nextInt(1_000_000)).append('\n');
+            return sb.substring(0, size);
+        }
+
+    }
+
+    private static final class Settings {
+
+        private int processes = 4;
+        private int threads = 1;
+        private int warmupSeconds = 5;
+        private int durationSeconds = 30;
+        private int rate = 0;
+        private Map<Operation, Integer> mix = weights("START_STOP=70,INSTANT=10,RECURRING=10,QUERY=10", Operation::valueOf);
+        private Map<Integer, Integer> payload = weights("0=60,1024=30,16384=10", Integer::valueOf);
+        private int worker = -1;
+        private String run = null;
+
+        private static Settings parse(String[] args) {
+            Settings settings = new Settings();
+            for (int i = 0; i < args.length; i++) {
+                String argument = args[i];
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException("Missing value for " + argument);
+                String value = args[++i];
+                switch (argument) {
+                    case "--processes": settings.processes = atLeast(1, argument, value); break;
+                    case "--threads": settings.threads = atLeast(1, argument, value); break;
+                    case "--warmup": settings.warmupSeconds = atLeast(0, argument, value); break;
+                    case "--duration": settings.durationSeconds = atLeast(1, argument, value); break;
+                    case "--rate": settings.rate = atLeast(0, argument, value); break;
+                    case "--mix": settings.mix = weights(value, Operation::valueOf); break;
+                    case "--payload": settings.payload = weights(value, Integer::valueOf); break;
+                    case WORKER: settings.worker = atLeast(0, argument, value); break;
+                    case RUN: settings.run = value; break;
+                    default: throw new IllegalArgumentException("Invalid argument " + argument);
+                }
+            }
+            return settings;
+        }
+
+        private static int atLeast(int minimum, String argument, String value) {
+            int number = Integer.parseInt(value);
+            if (number < minimum)
+                throw new IllegalArgumentException("Invalid value for " + argument + " (" + value + "), it must be at least " + minimum);
+            return number;
+        }
+
+        /*
+         * key=weight,... keeping the given order
+         */
+        private static <T> Map<T, Integer> weights(String value, Function<String, T> keys) {
+            Map<T, Integer> weights = new LinkedHashMap<>();
+            for (String entry : value.split(",")) {
+                int separator = entry.indexOf('=');
+                if (separator < 0)
+                    throw new IllegalArgumentException("Invalid weight " + entry + ", expected key=weight");
+                int weight = Integer.parseInt(entry.substring(separator + 1).trim());
+                if (weight < 0)
+                    throw new IllegalArgumentException("Invalid weight " + entry);
+                weights.put(keys.apply(entry.substring(0, separator).trim()), weight);
+            }
+            if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0)
+                throw new IllegalArgumentException("At least one weight must be positive: " + value);
+            return weights;
+        }
+
+    }
+
+}
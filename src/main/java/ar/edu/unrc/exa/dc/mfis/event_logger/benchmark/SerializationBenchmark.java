@@ -0,0 +1,116 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.benchmark;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares default Java serialization of {@link Request} and {@link Response} against the compact encoding from
+ * {@link BinaryCodec}, both in bytes on the wire and in encode/decode time.
+ */
+public class SerializationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Object> samples = samples();
+        System.out.printf("%-28s %12s %12s %12s %14s %14s%n", "sample", "java(B)", "compact(B)", "codec(B)", "java(ns/op)", "compact(ns/op)");
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            Object value = sample.getValue();
+            int javaBytes = javaSerialize(value, false).length;
+            int compactBytes = javaSerialize(value, true).length;
+            int codecBytes = codecEncode(value).length;
+            double javaTime = measure(value, false);
+            double compactTime = measure(value, true);
+            System.out.printf("%-28s %12d %12d %12d %14.0f %14.0f%n", sample.getKey(), javaBytes, compactBytes, codecBytes, javaTime, compactTime);
+        }
+    }
+
+    private static Map<String, Object> samples() {
+        Map<String, Object> samples = new LinkedHashMap<>();
+        String small = "x = 1, y = 2";
+        String medium = repeat("line of program state with some values 12345\n", 25);
+        String large = repeat("line of program state with some values 12345\n", 1500);
+        samples.put("startEvent", Request.startEvent("benchmark.event", null));
+        samples.put("startEvent+timestamp", Request.startEvent("benchmark.event", null).withClientTimestamp(System.nanoTime()));
+        samples.put("startEvent(small data)", Request.startEvent("benchmark.event", small));
+        samples.put("stopEvent(1KB data)", Request.stopEvent("benchmark.event", medium, false));
+        samples.put("instant(64KB data)", Request.startInstantEvent("benchmark.event", large, large + "changed"));
+        samples.put("instant(256KB data)", Request.startInstantEvent("benchmark.event", repeat(large, 4), repeat(large, 4) + "changed"));
+        samples.put("startSpan+clock+sampled", Request.startEvent("benchmark.child", small).withParent("benchmark.event")
+                .withClientTimestamp(System.nanoTime()).withClockOffset(-123_456_789L).withSampled(42));
+        samples.put("stopEvent(handle)", Request.stopEvent(1_000_000, small, true));
+        samples.put("importEvent", Request.importEvent("benchmark.imported", small, medium, true, 1_700_000_000_000_000_000L, 1_700_000_001_000_000_000L));
+        samples.put("queryEventsInRange", Request.queryEventsInRange(-1.5, 30.25));
+        samples.put("queryAll(page)", Request.queryAllEventsInformation(100, "benchmark.event.99"));
+        samples.put("unicode", Request.startEvent("evento-\u00f1and\u00fa-\u65e5\u672c", "Jos\u00e9 dijo \"hola\"\r\n\t\u20ac \ud83d\ude00"));
+        samples.put("response(start/stop)", Response.eventStartedStopped(Request.startEvent("benchmark.event", null)));
+        samples.put("response(error)", Response.error("Event already exists", Request.startEvent("benchmark.event", null)));
+        samples.put("response(name check)", Response.eventNameCheck(false, Request.checkEventName("benchmark.event")));
+        samples.put("response(event query)", Response.eventQuery(medium, Request.queryEventInformation("benchmark.event")));
+        List<String> names = new ArrayList<>();
+        List<String> infos = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            names.add("benchmark.event." + i);
+            infos.add(i % 10 == 0 ? null : medium + i);
+        }
+        samples.put("response(1000 names)", Response.eventNames(names, Request.listEventNames()));
+        samples.put("response(1000 events)", Response.eventsQuery(infos, Request.queryAllEventsInformation()));
+        samples.put("response(empty list)", Response.eventNames(Collections.emptyList(), Request.listEventNames()));
+        samples.put("response(started, handle)", Response.eventStarted(7, Request.startEvent("benchmark.event", null)));
+        samples.put("response(page)", Response.eventsQuery(new ArrayList<>(infos.subList(0, 100)), "benchmark.event.99", Request.queryAllEventsInformation(100)));
+        return samples;
+    }
+
+    private static double measure(Object value, boolean compact) throws Exception {
+        int sizeInKB = Math.max(1, javaSerialize(value, false).length / 1024);
+        int warmupIterations = Math.max(100, WARMUP_ITERATIONS / sizeInKB);
+        int iterations = Math.max(100, MEASURED_ITERATIONS / sizeInKB);
+        for (int i = 0; i < warmupIterations; i++) {
+            javaDeserialize(javaSerialize(value, compact), compact);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            javaDeserialize(javaSerialize(value, compact), compact);
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    private static byte[] javaSerialize(Object value, boolean compact) throws IOException {
+        System.setProperty(EventLoggerProperties.ConfigKey.EVENT_LOGGER_RMI_COMPACT_SERIALIZATION.getKey(), String.valueOf(compact));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object javaDeserialize(byte[] bytes, boolean compact) throws IOException, ClassNotFoundException {
+        System.setProperty(EventLoggerProperties.ConfigKey.EVENT_LOGGER_RMI_COMPACT_SERIALIZATION.getKey(), String.valueOf(compact));
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] codecEncode(Object value) {
+        return value instanceof Request ? BinaryCodec.encode((Request) value) : BinaryCodec.encode((Response) value);
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+
+}
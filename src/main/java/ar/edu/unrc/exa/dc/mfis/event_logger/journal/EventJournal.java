@@ -0,0 +1,373 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.journal;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties.FsyncPolicy;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.NanoClock;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only journal of the requests that started or stopped events, used by the server to rebuild its events when
+ * it starts again.
+ * <p>
+ * Requests are appended to an in-memory list by the threads executing them, a single writer thread takes every pending
+ * request at once and writes them on the current {@link JournalSegment} (group commit). When a request doesn't fit on
+ * the current segment a new one is started, and once there are enough full segments they are compacted into a single
+ * one on a background thread (see {@link JournalCompaction}).
+ * <p>
+ * Segments are forced to the storage device according to an {@link FsyncPolicy}: with {@link FsyncPolicy#ALWAYS}
+ * {@link #sync()} waits until every request appended so far has been forced, so a response is only sent once its
+ * request can't be lost, the other policies only protect against the process ending (the operating system still holds
+ * the mapped segments).
+ * <p>
+ * Files are named after the index of the segment, a compacted segment includes every segment up to its index.
+ */
+public final class EventJournal {
+
+    private static final Logger logger = LocalLogging.getLogger(EventJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String COMPACTED_PREFIX = "compacted-";
+    private static final String FILE_EXTENSION = ".journal";
+    private static final int MAX_PENDING_REQUESTS = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final int compactionThreshold;
+    // segments found when opening the journal, in the order they must be replayed
+    private final List<Path> recoveredSegments;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition requestsPending = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Condition requestsWritten = lock.newCondition();
+    // guarded by lock
+    private List<JournalRecord> pending = new ArrayList<>();
+    private final List<Path> fullSegments = new ArrayList<>();
+    private long appended = 0;
+    private long written = 0;
+    private boolean closing = false;
+    private IOException failure = null;
+
+    /*
+     * Only used from the writer thread.
+     */
+    private final BinaryCodec.Writer writer = new BinaryCodec.Writer(4096);
+    private JournalSegment currentSegment = null;
+    private long nextSegmentIndex;
+
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private final Thread writerThread;
+
+    private EventJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncInterval, int compactionThreshold, List<Path> recoveredSegments, long nextSegmentIndex) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncInterval);
+        this.compactionThreshold = compactionThreshold;
+        this.recoveredSegments = recoveredSegments;
+        this.nextSegmentIndex = nextSegmentIndex;
+        fullSegments.addAll(recoveredSegments);
+        writerThread = new Thread(this::writeRequests, "EventLoggerServer-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Opens the journal using the configured properties.
+     */
+    public static EventJournal open() throws IOException {
+        return open(
+                Paths.get(EventLoggerProperties.journalDirectory()),
+                EventLoggerProperties.journalSegmentSize(),
+                EventLoggerProperties.journalFsync(),
+                EventLoggerProperties.journalFsyncInterval(),
+                EventLoggerProperties.journalCompactionThreshold()
+        );
+    }
+
+    /**
+     * Opens the journal on {@code directory}, creating it if needed. Files left by an interrupted compaction, and
+     * segments already included in a compacted segment, are deleted.
+     * @param segmentSize : the size in bytes of each segment file.
+     * @param fsyncPolicy : when segments are forced to the storage device.
+     * @param fsyncInterval : milliseconds between forcing segments with {@link FsyncPolicy#INTERVAL}.
+     * @param compactionThreshold : number of full segments from which they are compacted.
+     */
+    public static EventJournal open(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncInterval, int compactionThreshold) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> compactedSegments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(FILE_EXTENSION)) {
+                    segments.put(index(fileName, SEGMENT_PREFIX), file);
+                } else if (fileName.startsWith(COMPACTED_PREFIX) && fileName.endsWith(FILE_EXTENSION)) {
+                    compactedSegments.put(index(fileName, COMPACTED_PREFIX), file);
+                }
+            }
+        }
+        List<Path> recoveredSegments = new ArrayList<>();
+        long lastIndex = 0;
+        if (!compactedSegments.isEmpty()) {
+            lastIndex = compactedSegments.lastKey();
+            recoveredSegments.add(compactedSegments.lastEntry().getValue());
+            for (Path included : compactedSegments.headMap(lastIndex).values()) {
+                Files.delete(included);
+            }
+            for (Path included : segments.headMap(lastIndex, true).values()) {
+                Files.delete(included);
+            }
+        }
+        recoveredSegments.addAll(segments.tailMap(lastIndex, false).values());
+        if (!segments.isEmpty())
+            lastIndex = Math.max(lastIndex, segments.lastKey());
+        return new EventJournal(directory, segmentSize, fsyncPolicy, fsyncInterval, compactionThreshold, recoveredSegments, lastIndex + 1);
+    }
+
+    /**
+     * Rebuilds the events of a previous run of the server, must be called before appending any request.
+     * @return the number of requests applied.
+     */
+    public int replay(EventLogger eventLogger) throws IOException {
+        long start = System.nanoTime();
+        JournalReplay replay = new JournalReplay(eventLogger);
+        for (Path segment : recoveredSegments) {
+            JournalSegment.read(segment, payload -> replay.apply(JournalRecord.read(payload)));
+        }
+        int applied = replay.finish();
+        logger.info("Replayed " + applied + " requests from " + recoveredSegments.size() + " segments in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        return applied;
+    }
+
+    /**
+     * Appends a request that has been successfully executed, this only waits if the writer thread is too far behind.
+     * @param time : the {@link System#nanoTime()} value the request was executed at.
+     */
+    public void append(Request request, long time) {
+        JournalRecord record = JournalRecord.request(NanoClock.toEpochNanos(time), request);
+        lock.lock();
+        try {
+            while (pending.size() >= MAX_PENDING_REQUESTS && failure == null && !closing) {
+                spaceAvailable.awaitUninterruptibly();
+            }
+            if (failure != null || closing)
+                return;
+            pending.add(record);
+            appended++;
+            requestsPending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every request appended so far is on the storage device, only with {@link FsyncPolicy#ALWAYS}.
+     * @throws IOException if the journal can no longer be written.
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                long target = appended;
+                while (written < target && failure == null) {
+                    requestsWritten.awaitUninterruptibly();
+                }
+            }
+            if (failure != null)
+                throw new IOException("Journal is no longer being written", failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending request and closes the current segment, requests appended after this are ignored.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closing = true;
+            requestsPending.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeRequests() {
+        List<JournalRecord> batch = new ArrayList<>();
+        long nextForce = System.nanoTime() + fsyncIntervalNanos;
+        boolean unforced = false;
+        try {
+            while (true) {
+                lock.lock();
+                try {
+                    while (pending.isEmpty() && !closing) {
+                        if (fsyncPolicy == FsyncPolicy.INTERVAL && unforced) {
+                            long remaining = nextForce - System.nanoTime();
+                            if (remaining <= 0)
+                                break;
+                            awaitNanos(requestsPending, remaining);
+                        } else {
+                            requestsPending.awaitUninterruptibly();
+                        }
+                    }
+                    if (pending.isEmpty() && closing)
+                        break;
+                    List<JournalRecord> requests = pending;
+                    pending = batch;
+                    batch = requests;
+                    spaceAvailable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                for (JournalRecord record : batch) {
+                    write(record);
+                }
+                unforced |= !batch.isEmpty();
+                if (unforced && (fsyncPolicy == FsyncPolicy.ALWAYS || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - nextForce >= 0))) {
+                    currentSegment.force();
+                    unforced = false;
+                    nextForce = System.nanoTime() + fsyncIntervalNanos;
+                }
+                lock.lock();
+                try {
+                    written += batch.size();
+                    requestsWritten.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                batch.clear();
+            }
+            if (currentSegment != null)
+                closeSegment();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error while writing the journal, no more requests will be journaled\n", e);
+            lock.lock();
+            try {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                pending.clear();
+                requestsWritten.signalAll();
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(JournalRecord record) throws IOException {
+        writer.reset();
+        record.write(writer);
+        if (currentSegment != null && currentSegment.append(writer.buffer(), writer.size()))
+            return;
+        if (currentSegment != null) {
+            closeSegment();
+            segmentFull(currentSegment.path());
+        }
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%016d", nextSegmentIndex++) + FILE_EXTENSION);
+        currentSegment = JournalSegment.create(path, Math.max(segmentSize, JournalSegment.requiredCapacity(writer.size())));
+        logger.info("Started journal segment " + path.getFileName());
+        if (!currentSegment.append(writer.buffer(), writer.size()))
+            throw new IOException("Request of " + writer.size() + " bytes doesn't fit on a new segment");
+    }
+
+    private void closeSegment() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NONE)
+            currentSegment.force();
+        currentSegment.close();
+    }
+
+    private void segmentFull(Path segment) {
+        List<Path> toCompact = null;
+        lock.lock();
+        try {
+            fullSegments.add(segment);
+            if (fullSegments.size() >= compactionThreshold && compacting.compareAndSet(false, true))
+                toCompact = new ArrayList<>(fullSegments);
+        } finally {
+            lock.unlock();
+        }
+        if (toCompact != null) {
+            final List<Path> segments = toCompact;
+            Thread compaction = new Thread(() -> compact(segments), "EventLoggerServer-journal-compaction");
+            compaction.setDaemon(true);
+            compaction.start();
+        }
+    }
+
+    /*
+     * A process ending while compacting leaves a temporary file, which is deleted when opening the journal.
+     */
+    private void compact(List<Path> segments) {
+        try {
+            long start = System.nanoTime();
+            String lastSegment = segments.get(segments.size() - 1).getFileName().toString();
+            long lastIndex = index(lastSegment, lastSegment.startsWith(COMPACTED_PREFIX) ? COMPACTED_PREFIX : SEGMENT_PREFIX);
+            Path output = directory.resolve(COMPACTED_PREFIX + String.format("%016d", lastIndex) + FILE_EXTENSION);
+            int records = JournalCompaction.compact(segments, output);
+            lock.lock();
+            try {
+                fullSegments.removeAll(segments);
+                fullSegments.add(0, output);
+            } finally {
+                lock.unlock();
+            }
+            for (Path segment : segments) {
+                Files.deleteIfExists(segment);
+            }
+            logger.info("Compacted " + segments.size() + " journal segments into " + output.getFileName() + " (" + records + " records) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Error while compacting the journal\n", e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private static long index(String fileName, String prefix) throws IOException {
+        try {
+            return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - FILE_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected journal file " + fileName);
+        }
+    }
+
+    /*
+     * The writer thread is never interrupted, it only ends when the journal is closed.
+     */
+    private static void awaitNanos(Condition condition, long nanos) {
+        try {
+            condition.awaitNanos(nanos);
+        } catch (InterruptedException ignored) {
+            // keep writing until closed
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.journal;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Rewrites several journal segments as a single one.
+ * <p>
+ * Events are never removed, so every journaled request is still needed to rebuild them. What compaction removes is
+ * the unused space at the end of each segment and the separate records for starting and stopping an event: each
+ * stopped event is written as a single record, at the position of the request that started it. The main event is
+ * kept as separate records, since the time other events start relative to it depends on when it was stopped.
+ * <p>
+ * Compaction keeps every record of its segments in memory while running.
+ */
+final class JournalCompaction {
+
+    private final List<JournalRecord> records = new ArrayList<>();
+    // position of started events whose stop hasn't been found yet
+    private final Map<String, Integer> startedEvents = new HashMap<>();
+    // position of requests stopping an event whose start hasn't been found yet
+    private final Map<String, Integer> earlyStops = new HashMap<>();
+    private String mainEventName = null;
+
+    private JournalCompaction() {}
+
+    /**
+     * Compacts {@code segments} into {@code output}, the output file only appears once it's completely written and
+     * forced to the storage device, and its name is forced along with the directory before returning, so the segments
+     * can be deleted afterwards.
+     * @return the number of records written.
+     */
+    static int compact(List<Path> segments, Path output) throws IOException {
+        JournalCompaction compaction = new JournalCompaction();
+        for (Path segment : segments) {
+            JournalSegment.read(segment, payload -> compaction.add(JournalRecord.read(payload)));
+        }
+        return compaction.write(output);
+    }
+
+    private void add(JournalRecord record) {
+        Request request = record.request();
+        if (!record.isStoppedEvent()) {
+            switch (request.requestType()) {
+                case START_MAIN_EVENT: {
+                    mainEventName = request.hasName() ? request.name() : EventLoggerProperties.defaultMainEventName();
+                    break;
+                }
+                case START_EVENT: {
+                    Integer earlyStop = earlyStops.remove(request.name());
+                    if (earlyStop != null) {
+                        JournalRecord stop = records.set(earlyStop, null);
+                        records.add(JournalRecord.stoppedEvent(record, stop));
+                        return;
+                    }
+                    startedEvents.put(request.name(), records.size());
+                    break;
+                }
+                case STOP_EVENT: {
+                    if (request.name().equals(mainEventName))
+                        break;
+                    Integer start = startedEvents.remove(request.name());
+                    if (start != null) {
+                        records.set(start, JournalRecord.stoppedEvent(records.get(start), record));
+                        return;
+                    }
+                    earlyStops.put(request.name(), records.size());
+                    break;
+                }
+                default: break;
+            }
+        }
+        records.add(record);
+    }
+
+    private int write(Path output) throws IOException {
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        BinaryCodec.Writer writer = new BinaryCodec.Writer(4096);
+        CRC32 checksum = new CRC32();
+        int written = 0;
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            JournalSegment.writeHeader(stream);
+            for (JournalRecord record : records) {
+                if (record == null)
+                    continue;
+                writer.reset();
+                record.write(writer);
+                JournalSegment.writeRecord(stream, writer.buffer(), writer.size(), checksum);
+                written++;
+            }
+            stream.flush();
+            file.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, output, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(output.toAbsolutePath().getParent());
+        return written;
+    }
+
+    /*
+     * A rename is only durable once the directory holding it is forced. Some platforms (e.g.: Windows) can't open a
+     * directory as a channel, their file systems don't need it.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException cannotOpen) {
+            return;
+        }
+        try (FileChannel opened = channel) {
+            opened.force(true);
+        }
+    }
+
+}
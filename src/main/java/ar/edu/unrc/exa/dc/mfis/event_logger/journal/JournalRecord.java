@@ -0,0 +1,88 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.journal;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A journal record, either a request that started or stopped an event together with the time it was executed, or (only
+ * written by compaction) both the request that started an event and the one that stopped it.
+ * <p>
+ * Times are nanoseconds since the epoch (see {@link ar.edu.unrc.exa.dc.mfis.event_logger.timing.NanoClock}) and
+ * requests are written using {@link BinaryCodec}.
+ */
+final class JournalRecord {
+
+    private static final int REQUEST = 0;
+    private static final int STOPPED_EVENT = 1;
+
+    private final long time;
+    private final Request request;
+    private final long stopTime;
+    private final Request stopRequest;
+
+    private JournalRecord(long time, Request request, long stopTime, Request stopRequest) {
+        this.time = time;
+        this.request = request;
+        this.stopTime = stopTime;
+        this.stopRequest = stopRequest;
+    }
+
+    static JournalRecord request(long time, Request request) {
+        return new JournalRecord(time, request, 0, null);
+    }
+
+    /**
+     * A record for an event that was both started and stopped.
+     */
+    static JournalRecord stoppedEvent(JournalRecord start, JournalRecord stop) {
+        return new JournalRecord(start.time, start.request, stop.time, stop.request);
+    }
+
+    long time() {
+        return time;
+    }
+
+    Request request() {
+        return request;
+    }
+
+    boolean isStoppedEvent() {
+        return stopRequest != null;
+    }
+
+    /**
+     * The record of the request that stopped the event, only for records returned by
+     * {@link #stoppedEvent(JournalRecord, JournalRecord)}.
+     */
+    JournalRecord stop() {
+        return request(stopTime, stopRequest);
+    }
+
+    void write(BinaryCodec.Writer writer) {
+        writer.writeByte(isStoppedEvent() ? STOPPED_EVENT : REQUEST);
+        writer.writeVarLong(time);
+        BinaryCodec.write(request, writer);
+        if (isStoppedEvent()) {
+            writer.writeVarLong(stopTime);
+            BinaryCodec.write(stopRequest, writer);
+        }
+    }
+
+    static JournalRecord read(ByteBuffer payload) {
+        BinaryCodec.Reader reader = new BinaryCodec.Reader(payload);
+        int kind = reader.readByte();
+        long time = reader.readVarLong();
+        Request request = BinaryCodec.readRequest(reader);
+        switch (kind) {
+            case REQUEST: return request(time, request);
+            case STOPPED_EVENT: {
+                long stopTime = reader.readVarLong();
+                return new JournalRecord(time, request, stopTime, BinaryCodec.readRequest(reader));
+            }
+            default: throw new IllegalStateException("Unknown journal record kind " + kind);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.journal;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.NanoClock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Applies journal records to an {@link EventLogger}, starting and stopping events at the times they were originally
+ * started and stopped.
+ * <p>
+ * Requests are journaled after being executed, so two requests executed concurrently can be journaled in a different
+ * order. The only order that matters is an event being stopped after being started, a request stopping an event that
+ * doesn't exist yet is kept until the event is started.
+ * <p>
+ * Started events are given the same handles they were given originally, if the journaled request has it.
+ */
+final class JournalReplay {
+
+    private static final Logger logger = LocalLogging.getLogger(JournalReplay.class);
+
+    private final EventLogger eventLogger;
+    private final Map<String, JournalRecord> deferredStops = new HashMap<>();
+    private JournalRecord deferredMainStop = null;
+    private int applied = 0;
+    private int failed = 0;
+
+    JournalReplay(EventLogger eventLogger) {
+        this.eventLogger = eventLogger;
+    }
+
+    void apply(JournalRecord record) {
+        applyRequest(record);
+        if (record.isStoppedEvent())
+            applyRequest(record.stop());
+    }
+
+    /**
+     * Ends the replay, requests stopping events that were never started are discarded.
+     * @return the number of requests applied.
+     */
+    int finish() {
+        int discarded = deferredStops.size() + (deferredMainStop == null ? 0 : 1);
+        if (discarded > 0)
+            logger.warning("Discarding " + discarded + " requests stopping events that were never started");
+        if (failed > 0)
+            logger.warning(failed + " journaled requests could not be applied");
+        deferredStops.clear();
+        deferredMainStop = null;
+        return applied;
+    }
+
+    private void applyRequest(JournalRecord record) {
+        Request request = record.request();
+        long time = NanoClock.fromEpochNanos(record.time());
+        int handle = request.hasHandle() ? request.handle() : EventLogger.NO_HANDLE;
+        try {
+            switch (request.requestType()) {
+                case START_MAIN_EVENT: {
+                    eventLogger.startNamedMainEventWithPayload(request.hasName() ? request.name() : null, request.initialPayload(), time, handle);
+                    applied++;
+                    if (deferredMainStop != null) {
+                        JournalRecord stop = deferredMainStop;
+                        deferredMainStop = null;
+                        applyRequest(stop);
+                    }
+                    eventLogger.getMainEvent().ifPresent(main -> applyDeferredStop(main.name()));
+                    return;
+                }
+                case START_EVENT: {
+                    eventLogger.startEventWithPayload(request.name(), request.initialPayload(), time, handle);
+                    applied++;
+                    linkToParent(request);
+                    applyDeferredStop(request.name());
+                    return;
+                }
+                case START_RECURRING_EVENT: {
+                    if (eventLogger.startRecurringEventWithPayload(request.name(), request.initialPayload(), time, handle) != EventLogger.NO_HANDLE)
+                        linkToParent(request);
+                    applied++;
+                    applyDeferredStop(request.name());
+                    return;
+                }
+                case START_INSTANT_EVENT: {
+                    eventLogger.startInstantEventWithPayload(request.name(), request.initialPayload(), request.finalPayload(), request.calculateDifference(), time, handle);
+                    applied++;
+                    linkToParent(request);
+                    return;
+                }
+                case IMPORT_EVENT: {
+                    eventLogger.importEventWithPayload(request.name(), request.initialPayload(), request.finalPayload(), request.calculateDifference(), request.windowStart(), request.windowEnd(), handle);
+                    applied++;
+                    linkToParent(request);
+                    applyDeferredStop(request.name());
+                    return;
+                }
+                case STOP_MAIN_EVENT: {
+                    Optional<Event> mainEvent = eventLogger.getMainEvent();
+                    if (!mainEvent.isPresent()) {
+                        deferredMainStop = record;
+                        return;
+                    }
+                    mainEvent.get().stopEventWithPayload(request.initialPayload(), request.calculateDifference(), time);
+                    applied++;
+                    return;
+                }
+                case STOP_EVENT: {
+                    Optional<Event> event = eventLogger.getEvent(request.name());
+                    if (!event.isPresent()) {
+                        deferredStops.put(request.name(), record);
+                        return;
+                    }
+                    event.get().stopEventWithPayload(request.initialPayload(), request.calculateDifference(), time);
+                    applied++;
+                    return;
+                }
+                default: {
+                    failed++;
+                    logger.warning("Ignoring journaled " + request.requestType() + " request");
+                }
+            }
+        } catch (IllegalStateException | IllegalArgumentException invalid) {
+            failed++;
+            logger.warning("Couldn't apply journaled " + request.requestType() + " request (" + invalid.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Links are kept by name, so the parent doesn't need to be replayed before its children.
+     */
+    private void linkToParent(Request request) {
+        if (!request.hasParent())
+            return;
+        try {
+            eventLogger.linkToParent(request.name(), request.parent());
+        } catch (IllegalStateException | IllegalArgumentException invalid) {
+            logger.warning("Couldn't link journaled event " + request.name() + " to its parent (" + invalid.getMessage() + ")");
+        }
+    }
+
+    private void applyDeferredStop(String name) {
+        JournalRecord stop = deferredStops.remove(name);
+        if (stop != null)
+            applyRequest(stop);
+    }
+
+}
@@ -0,0 +1,156 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.journal;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A journal file, written through a memory mapping of a fixed size.
+ * <p>
+ * The file starts with a magic number and a version, followed by records: a 4 bytes length, a 4 bytes CRC32 of the
+ * payload and the payload. A record's length is written after its payload, and a zero length marks the end of the
+ * records, so a segment that was not completely written (the file is created with its whole size) is read up to its
+ * last complete record. A record whose checksum doesn't match (a write torn by a system crash) also ends the segment.
+ * <p>
+ * Writing is not thread safe, segments are only written by the journal's writer thread.
+ */
+final class JournalSegment {
+
+    private static final Logger logger = LocalLogging.getLogger(JournalSegment.class);
+
+    private static final int MAGIC = 0x454C4A4E;
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 checksum = new CRC32();
+
+    private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a new segment able to hold {@code capacity} bytes, including its header.
+     */
+    static JournalSegment create(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            return new JournalSegment(path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Appends a record, if it fits.
+     * @return {@code true} if the record was written, {@code false} if the segment is full.
+     */
+    boolean append(byte[] payload, int length) {
+        int position = buffer.position();
+        if (buffer.capacity() - position < RECORD_HEADER_SIZE + length)
+            return false;
+        checksum.reset();
+        checksum.update(payload, 0, length);
+        buffer.putInt(position + 4, (int) checksum.getValue());
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.put(payload, 0, length);
+        buffer.putInt(position, length);
+        return true;
+    }
+
+    /**
+     * Writes every record appended so far to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The size of a segment able to hold a record of {@code payloadLength} bytes.
+     */
+    static int requiredCapacity(int payloadLength) {
+        return HEADER_SIZE + RECORD_HEADER_SIZE + payloadLength;
+    }
+
+    static void writeHeader(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Writes a record on a stream, used to write whole segments without mapping them.
+     */
+    static void writeRecord(DataOutputStream output, byte[] payload, int length, CRC32 checksum) throws IOException {
+        checksum.reset();
+        checksum.update(payload, 0, length);
+        output.writeInt(length);
+        output.writeInt((int) checksum.getValue());
+        output.write(payload, 0, length);
+    }
+
+    /**
+     * Reads every complete record of a segment.
+     * @param recordHandler : receives each record's payload, the buffer is only valid during the call.
+     * @return the number of records read.
+     */
+    static int read(Path path, Consumer<ByteBuffer> recordHandler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a journal segment " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("Not a journal segment " + path);
+            CRC32 checksum = new CRC32();
+            int records = 0;
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int position = buffer.position();
+                int length = buffer.getInt();
+                int expectedChecksum = buffer.getInt();
+                if (length == 0)
+                    break;
+                if (length < 0 || length > buffer.remaining()) {
+                    logger.warning("Truncated record at " + position + " on " + path.getFileName() + ", ignoring the rest of the segment");
+                    break;
+                }
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    logger.warning("Corrupted record at " + position + " on " + path.getFileName() + ", ignoring the rest of the segment");
+                    break;
+                }
+                recordHandler.accept(payload);
+                buffer.position(position + RECORD_HEADER_SIZE + length);
+                records++;
+            }
+            return records;
+        }
+    }
+
+}
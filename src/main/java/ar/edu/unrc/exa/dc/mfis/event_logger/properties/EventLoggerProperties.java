@@ -1,8 +1,12 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger.properties;
 
+import ar.edu.unrc.exa.dc.mfis.event_logger.sampling.EventSampler;
+
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.logging.Level;
 
 import static ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties.ConfigKey.*;
 
@@ -16,6 +20,32 @@ public class EventLoggerProperties {
     private static final int RMI_CLIENT_CONNECTION_RETRIES_DEFAULT = 5;
     private static final long RMI_CLIENT_CONNECTION_RETRY_DELAY_DEFAULT = 2;
     private static final boolean PROPERTIES_USE_DEFAULT_ON_INVALID_VALUE_DEFAULT = true;
+    private static final boolean RMI_CLIENT_ASYNC_ENABLE_DEFAULT = false;
+    private static final int RMI_CLIENT_ASYNC_QUEUE_CAPACITY_DEFAULT = 4096;
+    private static final long RMI_CLIENT_ASYNC_FLUSH_INTERVAL_DEFAULT = 50;
+    private static final int RMI_CLIENT_ASYNC_BATCH_SIZE_DEFAULT = 128;
+    private static final boolean RMI_CLIENT_CLOCK_SYNC_ENABLE_DEFAULT = true;
+    private static final int RMI_CLIENT_CLOCK_SYNC_PROBES_DEFAULT = 8;
+    private static final long RMI_CLIENT_CLOCK_SYNC_INTERVAL_DEFAULT = 30000;
+    private static final boolean RMI_COMPACT_SERIALIZATION_DEFAULT = true;
+    private static final Transport TRANSPORT_DEFAULT = Transport.RMI;
+    private static final int NIO_PORT_DEFAULT = 7099;
+    private static final String SHM_DIRECTORY_DEFAULT = Paths.get(System.getProperty("java.io.tmpdir"), "event_logger").toString();
+    private static final int SHM_RING_CAPACITY_DEFAULT = 4 * 1024 * 1024;
+    private static final boolean EMBEDDED_EXPORT_ENABLE_DEFAULT = false;
+    private static final Transport EMBEDDED_EXPORT_TRANSPORT_DEFAULT = Transport.RMI;
+    private static final boolean JOURNAL_ENABLE_DEFAULT = false;
+    private static final String JOURNAL_DIRECTORY_DEFAULT = "journal";
+    private static final int JOURNAL_SEGMENT_SIZE_DEFAULT = 64 * 1024 * 1024;
+    private static final FsyncPolicy JOURNAL_FSYNC_DEFAULT = FsyncPolicy.INTERVAL;
+    private static final long JOURNAL_FSYNC_INTERVAL_DEFAULT = 1000;
+    private static final int JOURNAL_COMPACTION_THRESHOLD_DEFAULT = 8;
+    private static final DiffAlgorithm DIFF_ALGORITHM_DEFAULT = DiffAlgorithm.MYERS;
+    private static final int DIFF_LARGE_INPUT_THRESHOLD_DEFAULT = 64 * 1024;
+    private static final int DIFF_MAX_INPUT_SIZE_DEFAULT = 8 * 1024 * 1024;
+    private static final long DIFF_TIME_BUDGET_DEFAULT = 2000;
+    private static final int COMPRESSION_THRESHOLD_DEFAULT = 16 * 1024;
+    private static final int COMPRESSION_MAX_INFLATED_SIZE_DEFAULT = 256 * 1024 * 1024;
 
     private static final String RMI_CLIENT_SECURITY_POLICY_DEFAULT = "resources/eventloggerclient.policy";
 
@@ -25,7 +55,15 @@ public class EventLoggerProperties {
 
     private static final String MAIN_EVENT_DEFAULT_NAME = "MAIN";
 
+    private static final String SAMPLING_RULES_DEFAULT = "";
+    private static final int SAMPLING_MAX_SKIPPED_EVENTS_DEFAULT = 64 * 1024;
+
     private static final boolean RUNTIME_LOGGING_CONSOLE_OUTPUT_DEFAULT = true;
+    private static final Level RUNTIME_LOGGING_LEVEL_DEFAULT = Level.ALL;
+    private static final boolean RUNTIME_LOGGING_ASYNC_ENABLE_DEFAULT = true;
+    private static final int RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY_DEFAULT = 8192;
+    private static final int RUNTIME_LOGGING_ASYNC_BATCH_SIZE_DEFAULT = 256;
+    private static final LogDropPolicy RUNTIME_LOGGING_ASYNC_DROP_POLICY_DEFAULT = LogDropPolicy.DROP_OLDEST;
 
     private static boolean properties_use_default_on_invalid_value = Boolean.parseBoolean(
             getPropertyValue(
@@ -41,6 +79,30 @@ public class EventLoggerProperties {
         UPPERCASE
     }
 
+    public enum Transport {
+        RMI,
+        NIO,
+        SHM,
+        EMBEDDED
+    }
+
+    public enum FsyncPolicy {
+        NONE,
+        INTERVAL,
+        ALWAYS
+    }
+
+    public enum DiffAlgorithm {
+        MYERS,
+        MYERS_LINEAR_SPACE,
+        PATIENCE
+    }
+
+    public enum LogDropPolicy {
+        DROP_NEWEST,
+        DROP_OLDEST
+    }
+
     public enum ConfigKey {
         EVENT_LOGGER_PROPERTIES_USE_DEFAULT_ON_INVALID_VALUE {
             @Override
@@ -109,6 +171,222 @@ public class EventLoggerProperties {
                 return "Delay in seconds to retry a connection to the server, default value is " + RMI_CLIENT_CONNECTION_RETRY_DELAY_DEFAULT + "s";
             }
         },
+        EVENT_LOGGER_CLIENT_ASYNC_ENABLE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.async.enable"; }
+
+            @Override
+            public String getDescription() {
+                return "Enable/Disable queueing requests on the client and sending them in batches from a background thread, default value is " + RMI_CLIENT_ASYNC_ENABLE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_CLIENT_ASYNC_QUEUE_CAPACITY {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.async.queue_capacity"; }
+
+            @Override
+            public String getDescription() {
+                return "How many requests can be queued on the client before callers are blocked (only used when async mode is enabled), default value is " + RMI_CLIENT_ASYNC_QUEUE_CAPACITY_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_CLIENT_ASYNC_FLUSH_INTERVAL {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.async.flush_interval"; }
+
+            @Override
+            public String getDescription() {
+                return "Maximum time in milliseconds a queued request waits before being sent (only used when async mode is enabled), default value is " + RMI_CLIENT_ASYNC_FLUSH_INTERVAL_DEFAULT + "ms";
+            }
+        },
+        EVENT_LOGGER_CLIENT_ASYNC_BATCH_SIZE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.async.batch_size"; }
+
+            @Override
+            public String getDescription() {
+                return "Maximum amount of queued requests sent together (only used when async mode is enabled), default value is " + RMI_CLIENT_ASYNC_BATCH_SIZE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_CLIENT_CLOCK_SYNC_ENABLE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.clock_sync.enable"; }
+
+            @Override
+            public String getDescription() {
+                return "Enable/Disable timestamping requests that start or stop events on the client and mapping them onto the server's clock, so events are timed when requests are made instead of when they arrive, default value is " + RMI_CLIENT_CLOCK_SYNC_ENABLE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_CLIENT_CLOCK_SYNC_PROBES {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.clock_sync.probes"; }
+
+            @Override
+            public String getDescription() {
+                return "How many round trips are made on each clock synchronization, the shortest one is used (only used when clock synchronization is enabled), default value is " + RMI_CLIENT_CLOCK_SYNC_PROBES_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_CLIENT_CLOCK_SYNC_INTERVAL {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.client.clock_sync.interval"; }
+
+            @Override
+            public String getDescription() {
+                return "Time in milliseconds between clock synchronizations (only used when clock synchronization is enabled), default value is " + RMI_CLIENT_CLOCK_SYNC_INTERVAL_DEFAULT + "ms";
+            }
+        },
+        EVENT_LOGGER_RMI_COMPACT_SERIALIZATION {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.compact_serialization"; }
+
+            @Override
+            public String getDescription() {
+                return "Enable/Disable serializing requests and responses with a compact binary encoding instead of default Java serialization, default value is " + RMI_COMPACT_SERIALIZATION_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_TRANSPORT {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".transport"; }
+
+            @Override
+            public String getDescription() {
+                return "Transport used between client and server. Possible values are " + Arrays.toString(Transport.values()) + ". Default value is " + TRANSPORT_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_EMBEDDED_EXPORT_ENABLE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".embedded.export.enable"; }
+
+            @Override
+            public String getDescription() {
+                return "Enable/Disable sending every event to a server when a client using the " + Transport.EMBEDDED + " transport is closed or its process ends, default value is " + EMBEDDED_EXPORT_ENABLE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_EMBEDDED_EXPORT_TRANSPORT {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".embedded.export.transport"; }
+
+            @Override
+            public String getDescription() {
+                return "Transport used to send events to a server when a client using the " + Transport.EMBEDDED + " transport is closed (see event_logger.embedded.export.enable), any transport but " + Transport.EMBEDDED + ". Default value is " + EMBEDDED_EXPORT_TRANSPORT_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_NIO_PORT {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".nio.port"; }
+
+            @Override
+            public String getDescription() {
+                return "Port number the server listens on when using the " + Transport.NIO + " transport, default is " + NIO_PORT_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_SHM_DIRECTORY {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".shm.directory"; }
+
+            @Override
+            public String getDescription() {
+                return "Directory holding the files shared between clients and server when using the " + Transport.SHM + " transport, default is " + SHM_DIRECTORY_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_SHM_RING_CAPACITY {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".shm.ring_capacity"; }
+
+            @Override
+            public String getDescription() {
+                return "Size in bytes of each client's request and response buffers when using the " + Transport.SHM + " transport, rounded up to a power of two (requests and responses larger than half this size fail), default is " + SHM_RING_CAPACITY_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_JOURNAL_ENABLE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".journal.enable"; }
+
+            @Override
+            public String getDescription() {
+                return "Enable/Disable writing every request that starts or stops an event to a journal, which the server replays when starting, default value is " + JOURNAL_ENABLE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_JOURNAL_DIRECTORY {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".journal.directory"; }
+
+            @Override
+            public String getDescription() {
+                return "Directory holding the journal's segment files, default is " + JOURNAL_DIRECTORY_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_JOURNAL_SEGMENT_SIZE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".journal.segment_size"; }
+
+            @Override
+            public String getDescription() {
+                return "Size in bytes of each journal segment file, a new segment is started when the current one is full, default is " + JOURNAL_SEGMENT_SIZE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_JOURNAL_FSYNC {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".journal.fsync"; }
+
+            @Override
+            public String getDescription() {
+                return "When the journal is forced to disk: " + FsyncPolicy.NONE + " leaves it to the operating system, " + FsyncPolicy.INTERVAL + " forces it periodically (see " + EVENT_LOGGER_JOURNAL_FSYNC_INTERVAL.getKey() + ") and " + FsyncPolicy.ALWAYS + " forces it before responding to each request. Default value is " + JOURNAL_FSYNC_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_JOURNAL_FSYNC_INTERVAL {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".journal.fsync_interval"; }
+
+            @Override
+            public String getDescription() {
+                return "Time in milliseconds between forcing the journal to disk when using the " + FsyncPolicy.INTERVAL + " fsync policy, default value is " + JOURNAL_FSYNC_INTERVAL_DEFAULT + "ms";
+            }
+        },
+        EVENT_LOGGER_JOURNAL_COMPACTION_THRESHOLD {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".journal.compaction_threshold"; }
+
+            @Override
+            public String getDescription() {
+                return "Number of full journal segments from which they are compacted into a single one, default value is " + JOURNAL_COMPACTION_THRESHOLD_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_DIFF_ALGORITHM {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".diff.algorithm"; }
+
+            @Override
+            public String getDescription() {
+                return "Algorithm used to calculate the difference between large data (see " + EVENT_LOGGER_DIFF_LARGE_INPUT_THRESHOLD.getKey() + "). Possible values are " + Arrays.toString(DiffAlgorithm.values()) + ". Default value is " + DIFF_ALGORITHM_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_DIFF_LARGE_INPUT_THRESHOLD {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".diff.large_input_threshold"; }
+
+            @Override
+            public String getDescription() {
+                return "Combined size in characters of starting and ending data from which lines are compared by hash and the configured diff algorithm is used, default value is " + DIFF_LARGE_INPUT_THRESHOLD_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_DIFF_MAX_INPUT_SIZE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".diff.max_input_size"; }
+
+            @Override
+            public String getDescription() {
+                return "Combined size in characters of starting and ending data from which only a summary of changed lines is calculated instead of a full difference, default value is " + DIFF_MAX_INPUT_SIZE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_DIFF_TIME_BUDGET {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".diff.time_budget"; }
+
+            @Override
+            public String getDescription() {
+                return "Maximum time in milliseconds to calculate a difference, a summary of changed lines is used when exceeded (a 0 value means no limit), default value is " + DIFF_TIME_BUDGET_DEFAULT + "ms";
+            }
+        },
         EVENT_LOGGER_MAIN_EVENT_DEFAULT_NAME {
             @Override
             public String getKey() { return EVENT_LOGGER_PREFIX + ".rmi.server.main_event_default_name"; }
@@ -136,6 +414,42 @@ public class EventLoggerProperties {
                 return "The policy file to use by the server, default value is " + RMI_SERVER_SECURITY_POLICY_DEFAULT;
             }
         },
+        EVENT_LOGGER_COMPRESSION_THRESHOLD {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".compression.threshold"; }
+
+            @Override
+            public String getDescription() {
+                return "Size in characters from which an event's starting or ending data is compressed when the request carrying it is made, and kept compressed by the server until it's queried (a 0 value disables compression), default value is " + COMPRESSION_THRESHOLD_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_COMPRESSION_MAX_INFLATED_SIZE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".compression.max_inflated_size"; }
+
+            @Override
+            public String getDescription() {
+                return "Maximum size in bytes of compressed data once inflated, compressed data claiming a larger size is rejected when it's received, default value is " + COMPRESSION_MAX_INFLATED_SIZE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_SAMPLING_RULES {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".sampling.rules"; }
+
+            @Override
+            public String getDescription() {
+                return "Rules deciding which events matching a name pattern are recorded, as pattern=policy separated by ';' where '*' in a pattern matches any characters and a policy is probability:P (0 to 1), every:N or rate:N (events per second), e.g.: db.*=probability:0.1;cache.*=every:100. The first matching rule is used, by default every event is recorded";
+            }
+        },
+        EVENT_LOGGER_SAMPLING_MAX_SKIPPED_EVENTS {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".sampling.max_skipped_events"; }
+
+            @Override
+            public String getDescription() {
+                return "Maximum number of events skipped by the server's sampling that it remembers so they can be stopped by name, the oldest is forgotten (and counted in the server's metrics) when a newer one is skipped, default value is " + SAMPLING_MAX_SKIPPED_EVENTS_DEFAULT;
+            }
+        },
         EVENT_LOGGER_RUNTIME_LOGGING_CONSOLE_OUTPUT {
             @Override
             public String getKey() { return EVENT_LOGGER_PREFIX + ".runtime_logging.console_output"; }
@@ -145,6 +459,51 @@ public class EventLoggerProperties {
                 return "Enable/Disable runtime logging console output, this will not disable log files, default value is " + RUNTIME_LOGGING_CONSOLE_OUTPUT_DEFAULT;
             }
         },
+        EVENT_LOGGER_RUNTIME_LOGGING_LEVEL {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".runtime_logging.level"; }
+
+            @Override
+            public String getDescription() {
+                return "Lowest level of the runtime logging messages that are written, messages under it are not even built (e.g.: WARNING, INFO, FINE). Default value is " + RUNTIME_LOGGING_LEVEL_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_ENABLE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".runtime_logging.async.enable"; }
+
+            @Override
+            public String getDescription() {
+                return "Enable/Disable queueing runtime logging messages and writing them in batches from a background thread, default value is " + RUNTIME_LOGGING_ASYNC_ENABLE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".runtime_logging.async.queue_capacity"; }
+
+            @Override
+            public String getDescription() {
+                return "How many runtime logging messages can be queued before the drop policy is applied (only used when async logging is enabled), default value is " + RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_BATCH_SIZE {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".runtime_logging.async.batch_size"; }
+
+            @Override
+            public String getDescription() {
+                return "Maximum amount of queued runtime logging messages written before flushing the console and log files (only used when async logging is enabled), default value is " + RUNTIME_LOGGING_ASYNC_BATCH_SIZE_DEFAULT;
+            }
+        },
+        EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_DROP_POLICY {
+            @Override
+            public String getKey() { return EVENT_LOGGER_PREFIX + ".runtime_logging.async.drop_policy"; }
+
+            @Override
+            public String getDescription() {
+                return "Which runtime logging message is discarded when the queue is full: " + LogDropPolicy.DROP_NEWEST + " discards the new one and " + LogDropPolicy.DROP_OLDEST + " the oldest queued one, messages above INFO are never discarded (only used when async logging is enabled). Default value is " + RUNTIME_LOGGING_ASYNC_DROP_POLICY_DEFAULT;
+            }
+        },
         EVENT_LOGGER_SECURITY_MANAGER_ENABLE {
             @Override
             public String getKey() { return EVENT_LOGGER_PREFIX + ".security_manager_enable"; }
@@ -164,6 +523,86 @@ public class EventLoggerProperties {
         return NamingConvention.valueOf(stringPropertyValue(EVENT_LOGGER_NAMING_CONVENTION, namingConventionValue, NAMING_CONVENTION_DEFAULT.toString()));
     }
 
+    public static Transport transport() {
+        String transportValue = getPropertyValue(EVENT_LOGGER_TRANSPORT, TRANSPORT_DEFAULT.toString());
+        return Transport.valueOf(stringPropertyValue(EVENT_LOGGER_TRANSPORT, transportValue, TRANSPORT_DEFAULT.toString()).toUpperCase());
+    }
+
+    public static boolean embeddedExportEnabled() {
+        String exportEnabled = getPropertyValue(EVENT_LOGGER_EMBEDDED_EXPORT_ENABLE, String.valueOf(EMBEDDED_EXPORT_ENABLE_DEFAULT));
+        return Boolean.parseBoolean(exportEnabled);
+    }
+
+    public static Transport embeddedExportTransport() {
+        String transportValue = getPropertyValue(EVENT_LOGGER_EMBEDDED_EXPORT_TRANSPORT, EMBEDDED_EXPORT_TRANSPORT_DEFAULT.toString());
+        return Transport.valueOf(stringPropertyValue(EVENT_LOGGER_EMBEDDED_EXPORT_TRANSPORT, transportValue, EMBEDDED_EXPORT_TRANSPORT_DEFAULT.toString()).toUpperCase());
+    }
+
+    public static int nioPort() {
+        String portStringValue = getPropertyValue(EVENT_LOGGER_NIO_PORT, String.valueOf(NIO_PORT_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_NIO_PORT, portStringValue, NIO_PORT_DEFAULT);
+    }
+
+    public static String shmDirectory() {
+        String shmDirectory = getPropertyValue(EVENT_LOGGER_SHM_DIRECTORY, SHM_DIRECTORY_DEFAULT);
+        return stringPropertyValue(EVENT_LOGGER_SHM_DIRECTORY, shmDirectory, SHM_DIRECTORY_DEFAULT);
+    }
+
+    public static int shmRingCapacity() {
+        String ringCapacityStringValue = getPropertyValue(EVENT_LOGGER_SHM_RING_CAPACITY, String.valueOf(SHM_RING_CAPACITY_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_SHM_RING_CAPACITY, ringCapacityStringValue, SHM_RING_CAPACITY_DEFAULT);
+    }
+
+    public static boolean journalEnabled() {
+        String journalEnabled = getPropertyValue(EVENT_LOGGER_JOURNAL_ENABLE, String.valueOf(JOURNAL_ENABLE_DEFAULT));
+        return Boolean.parseBoolean(journalEnabled);
+    }
+
+    public static String journalDirectory() {
+        String journalDirectory = getPropertyValue(EVENT_LOGGER_JOURNAL_DIRECTORY, JOURNAL_DIRECTORY_DEFAULT);
+        return stringPropertyValue(EVENT_LOGGER_JOURNAL_DIRECTORY, journalDirectory, JOURNAL_DIRECTORY_DEFAULT);
+    }
+
+    public static int journalSegmentSize() {
+        String segmentSizeStringValue = getPropertyValue(EVENT_LOGGER_JOURNAL_SEGMENT_SIZE, String.valueOf(JOURNAL_SEGMENT_SIZE_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_JOURNAL_SEGMENT_SIZE, segmentSizeStringValue, JOURNAL_SEGMENT_SIZE_DEFAULT);
+    }
+
+    public static FsyncPolicy journalFsync() {
+        String fsyncValue = getPropertyValue(EVENT_LOGGER_JOURNAL_FSYNC, JOURNAL_FSYNC_DEFAULT.toString());
+        return FsyncPolicy.valueOf(stringPropertyValue(EVENT_LOGGER_JOURNAL_FSYNC, fsyncValue, JOURNAL_FSYNC_DEFAULT.toString()).toUpperCase());
+    }
+
+    public static long journalFsyncInterval() {
+        String fsyncIntervalStringValue = getPropertyValue(EVENT_LOGGER_JOURNAL_FSYNC_INTERVAL, String.valueOf(JOURNAL_FSYNC_INTERVAL_DEFAULT));
+        return numberPropertyValue(EVENT_LOGGER_JOURNAL_FSYNC_INTERVAL, fsyncIntervalStringValue, JOURNAL_FSYNC_INTERVAL_DEFAULT);
+    }
+
+    public static int journalCompactionThreshold() {
+        String compactionThresholdStringValue = getPropertyValue(EVENT_LOGGER_JOURNAL_COMPACTION_THRESHOLD, String.valueOf(JOURNAL_COMPACTION_THRESHOLD_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_JOURNAL_COMPACTION_THRESHOLD, compactionThresholdStringValue, JOURNAL_COMPACTION_THRESHOLD_DEFAULT);
+    }
+
+    public static DiffAlgorithm diffAlgorithm() {
+        String diffAlgorithmValue = getPropertyValue(EVENT_LOGGER_DIFF_ALGORITHM, DIFF_ALGORITHM_DEFAULT.toString());
+        return DiffAlgorithm.valueOf(stringPropertyValue(EVENT_LOGGER_DIFF_ALGORITHM, diffAlgorithmValue, DIFF_ALGORITHM_DEFAULT.toString()).toUpperCase());
+    }
+
+    public static int diffLargeInputThreshold() {
+        String thresholdStringValue = getPropertyValue(EVENT_LOGGER_DIFF_LARGE_INPUT_THRESHOLD, String.valueOf(DIFF_LARGE_INPUT_THRESHOLD_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_DIFF_LARGE_INPUT_THRESHOLD, thresholdStringValue, DIFF_LARGE_INPUT_THRESHOLD_DEFAULT);
+    }
+
+    public static int diffMaxInputSize() {
+        String maxInputSizeStringValue = getPropertyValue(EVENT_LOGGER_DIFF_MAX_INPUT_SIZE, String.valueOf(DIFF_MAX_INPUT_SIZE_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_DIFF_MAX_INPUT_SIZE, maxInputSizeStringValue, DIFF_MAX_INPUT_SIZE_DEFAULT);
+    }
+
+    public static long diffTimeBudget() {
+        String timeBudgetStringValue = getPropertyValue(EVENT_LOGGER_DIFF_TIME_BUDGET, String.valueOf(DIFF_TIME_BUDGET_DEFAULT));
+        return numberPropertyValue(EVENT_LOGGER_DIFF_TIME_BUDGET, timeBudgetStringValue, DIFF_TIME_BUDGET_DEFAULT);
+    }
+
     public static String serverURL() {
         String serverURL = getPropertyValue(EVENT_LOGGER_SERVER_URL, RMI_SERVER_URL_DEFAULT);
         return stringPropertyValue(EVENT_LOGGER_SERVER_URL, serverURL, RMI_SERVER_URL_DEFAULT);
@@ -204,11 +643,96 @@ public class EventLoggerProperties {
         return numberPropertyValue(EVENT_LOGGER_CLIENT_CONNECTION_RETRY_DELAY, reconnectionDelayStringValue, RMI_CLIENT_CONNECTION_RETRY_DELAY_DEFAULT);
     }
 
+    public static boolean clientAsyncEnabled() {
+        String clientAsyncEnabled = getPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_ENABLE, String.valueOf(RMI_CLIENT_ASYNC_ENABLE_DEFAULT));
+        return Boolean.parseBoolean(clientAsyncEnabled);
+    }
+
+    public static int clientAsyncQueueCapacity() {
+        String queueCapacityStringValue = getPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_QUEUE_CAPACITY, String.valueOf(RMI_CLIENT_ASYNC_QUEUE_CAPACITY_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_QUEUE_CAPACITY, queueCapacityStringValue, RMI_CLIENT_ASYNC_QUEUE_CAPACITY_DEFAULT);
+    }
+
+    public static long clientAsyncFlushInterval() {
+        String flushIntervalStringValue = getPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_FLUSH_INTERVAL, String.valueOf(RMI_CLIENT_ASYNC_FLUSH_INTERVAL_DEFAULT));
+        return numberPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_FLUSH_INTERVAL, flushIntervalStringValue, RMI_CLIENT_ASYNC_FLUSH_INTERVAL_DEFAULT);
+    }
+
+    public static int clientAsyncBatchSize() {
+        String batchSizeStringValue = getPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_BATCH_SIZE, String.valueOf(RMI_CLIENT_ASYNC_BATCH_SIZE_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_CLIENT_ASYNC_BATCH_SIZE, batchSizeStringValue, RMI_CLIENT_ASYNC_BATCH_SIZE_DEFAULT);
+    }
+
+    public static boolean clientClockSyncEnabled() {
+        String clockSyncEnabled = getPropertyValue(EVENT_LOGGER_CLIENT_CLOCK_SYNC_ENABLE, String.valueOf(RMI_CLIENT_CLOCK_SYNC_ENABLE_DEFAULT));
+        return Boolean.parseBoolean(clockSyncEnabled);
+    }
+
+    public static int clientClockSyncProbes() {
+        String probesStringValue = getPropertyValue(EVENT_LOGGER_CLIENT_CLOCK_SYNC_PROBES, String.valueOf(RMI_CLIENT_CLOCK_SYNC_PROBES_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_CLIENT_CLOCK_SYNC_PROBES, probesStringValue, RMI_CLIENT_CLOCK_SYNC_PROBES_DEFAULT);
+    }
+
+    public static long clientClockSyncInterval() {
+        String intervalStringValue = getPropertyValue(EVENT_LOGGER_CLIENT_CLOCK_SYNC_INTERVAL, String.valueOf(RMI_CLIENT_CLOCK_SYNC_INTERVAL_DEFAULT));
+        return numberPropertyValue(EVENT_LOGGER_CLIENT_CLOCK_SYNC_INTERVAL, intervalStringValue, RMI_CLIENT_CLOCK_SYNC_INTERVAL_DEFAULT);
+    }
+
+    public static boolean compactSerialization() {
+        String compactSerialization = getPropertyValue(EVENT_LOGGER_RMI_COMPACT_SERIALIZATION, String.valueOf(RMI_COMPACT_SERIALIZATION_DEFAULT));
+        return Boolean.parseBoolean(compactSerialization);
+    }
+
     public static boolean runtimeLoggingConsoleOutput() {
         String runtimeLoggingConsoleOutput = getPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_CONSOLE_OUTPUT, String.valueOf(RUNTIME_LOGGING_CONSOLE_OUTPUT_DEFAULT));
         return Boolean.parseBoolean(runtimeLoggingConsoleOutput);
     }
 
+    public static int compressionThreshold() {
+        String thresholdStringValue = getPropertyValue(EVENT_LOGGER_COMPRESSION_THRESHOLD, String.valueOf(COMPRESSION_THRESHOLD_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_COMPRESSION_THRESHOLD, thresholdStringValue, COMPRESSION_THRESHOLD_DEFAULT);
+    }
+
+    public static int samplingMaxSkippedEvents() {
+        String maxSkippedEventsStringValue = getPropertyValue(EVENT_LOGGER_SAMPLING_MAX_SKIPPED_EVENTS, String.valueOf(SAMPLING_MAX_SKIPPED_EVENTS_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_SAMPLING_MAX_SKIPPED_EVENTS, maxSkippedEventsStringValue, SAMPLING_MAX_SKIPPED_EVENTS_DEFAULT);
+    }
+
+    public static int compressionMaxInflatedSize() {
+        String maxInflatedSizeStringValue = getPropertyValue(EVENT_LOGGER_COMPRESSION_MAX_INFLATED_SIZE, String.valueOf(COMPRESSION_MAX_INFLATED_SIZE_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_COMPRESSION_MAX_INFLATED_SIZE, maxInflatedSizeStringValue, COMPRESSION_MAX_INFLATED_SIZE_DEFAULT);
+    }
+
+    public static String samplingRules() {
+        String samplingRules = getPropertyValue(EVENT_LOGGER_SAMPLING_RULES, SAMPLING_RULES_DEFAULT);
+        return stringPropertyValue(EVENT_LOGGER_SAMPLING_RULES, samplingRules, SAMPLING_RULES_DEFAULT);
+    }
+
+    public static Level runtimeLoggingLevel() {
+        String levelValue = getPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_LEVEL, RUNTIME_LOGGING_LEVEL_DEFAULT.getName());
+        return Level.parse(stringPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_LEVEL, levelValue, RUNTIME_LOGGING_LEVEL_DEFAULT.getName()).toUpperCase());
+    }
+
+    public static boolean runtimeLoggingAsyncEnabled() {
+        String asyncEnabled = getPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_ENABLE, String.valueOf(RUNTIME_LOGGING_ASYNC_ENABLE_DEFAULT));
+        return Boolean.parseBoolean(asyncEnabled);
+    }
+
+    public static int runtimeLoggingAsyncQueueCapacity() {
+        String queueCapacityStringValue = getPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY, String.valueOf(RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY, queueCapacityStringValue, RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY_DEFAULT);
+    }
+
+    public static int runtimeLoggingAsyncBatchSize() {
+        String batchSizeStringValue = getPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_BATCH_SIZE, String.valueOf(RUNTIME_LOGGING_ASYNC_BATCH_SIZE_DEFAULT));
+        return (int) numberPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_BATCH_SIZE, batchSizeStringValue, RUNTIME_LOGGING_ASYNC_BATCH_SIZE_DEFAULT);
+    }
+
+    public static LogDropPolicy runtimeLoggingAsyncDropPolicy() {
+        String dropPolicyValue = getPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_DROP_POLICY, RUNTIME_LOGGING_ASYNC_DROP_POLICY_DEFAULT.toString());
+        return LogDropPolicy.valueOf(stringPropertyValue(EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_DROP_POLICY, dropPolicyValue, RUNTIME_LOGGING_ASYNC_DROP_POLICY_DEFAULT.toString()).toUpperCase());
+    }
+
     public static boolean securityManagerEnabled() {
         String securityManagerEnabled = getPropertyValue(EVENT_LOGGER_SECURITY_MANAGER_ENABLE, String.valueOf(RMI_SECURITY_ENABLE_DEFAULT));
         return Boolean.parseBoolean(securityManagerEnabled);
@@ -244,11 +768,44 @@ public class EventLoggerProperties {
             case EVENT_LOGGER_SERVER_URL : { value = serverURL(); break; }
             case EVENT_LOGGER_CLIENT_CONNECTION_RETRIES : { value = String.valueOf(connectionRetries()); break; }
             case EVENT_LOGGER_CLIENT_CONNECTION_RETRY_DELAY : { value = String.valueOf(reconnectionDelay()); break; }
+            case EVENT_LOGGER_CLIENT_ASYNC_ENABLE : { value = String.valueOf(clientAsyncEnabled()); break; }
+            case EVENT_LOGGER_CLIENT_ASYNC_QUEUE_CAPACITY : { value = String.valueOf(clientAsyncQueueCapacity()); break; }
+            case EVENT_LOGGER_CLIENT_ASYNC_FLUSH_INTERVAL : { value = String.valueOf(clientAsyncFlushInterval()); break; }
+            case EVENT_LOGGER_CLIENT_ASYNC_BATCH_SIZE : { value = String.valueOf(clientAsyncBatchSize()); break; }
+            case EVENT_LOGGER_CLIENT_CLOCK_SYNC_ENABLE : { value = String.valueOf(clientClockSyncEnabled()); break; }
+            case EVENT_LOGGER_CLIENT_CLOCK_SYNC_PROBES : { value = String.valueOf(clientClockSyncProbes()); break; }
+            case EVENT_LOGGER_CLIENT_CLOCK_SYNC_INTERVAL : { value = String.valueOf(clientClockSyncInterval()); break; }
+            case EVENT_LOGGER_RMI_COMPACT_SERIALIZATION : { value = String.valueOf(compactSerialization()); break; }
+            case EVENT_LOGGER_TRANSPORT : { value = transport().toString(); break; }
+            case EVENT_LOGGER_EMBEDDED_EXPORT_ENABLE : { value = String.valueOf(embeddedExportEnabled()); break; }
+            case EVENT_LOGGER_EMBEDDED_EXPORT_TRANSPORT : { value = embeddedExportTransport().toString(); break; }
+            case EVENT_LOGGER_NIO_PORT : { value = String.valueOf(nioPort()); break; }
+            case EVENT_LOGGER_SHM_DIRECTORY : { value = shmDirectory(); break; }
+            case EVENT_LOGGER_SHM_RING_CAPACITY : { value = String.valueOf(shmRingCapacity()); break; }
+            case EVENT_LOGGER_JOURNAL_ENABLE : { value = String.valueOf(journalEnabled()); break; }
+            case EVENT_LOGGER_JOURNAL_DIRECTORY : { value = journalDirectory(); break; }
+            case EVENT_LOGGER_JOURNAL_SEGMENT_SIZE : { value = String.valueOf(journalSegmentSize()); break; }
+            case EVENT_LOGGER_JOURNAL_FSYNC : { value = journalFsync().toString(); break; }
+            case EVENT_LOGGER_JOURNAL_FSYNC_INTERVAL : { value = String.valueOf(journalFsyncInterval()); break; }
+            case EVENT_LOGGER_JOURNAL_COMPACTION_THRESHOLD : { value = String.valueOf(journalCompactionThreshold()); break; }
+            case EVENT_LOGGER_DIFF_ALGORITHM : { value = diffAlgorithm().toString(); break; }
+            case EVENT_LOGGER_DIFF_LARGE_INPUT_THRESHOLD : { value = String.valueOf(diffLargeInputThreshold()); break; }
+            case EVENT_LOGGER_DIFF_MAX_INPUT_SIZE : { value = String.valueOf(diffMaxInputSize()); break; }
+            case EVENT_LOGGER_DIFF_TIME_BUDGET : { value = String.valueOf(diffTimeBudget()); break; }
             case EVENT_LOGGER_MAIN_EVENT_DEFAULT_NAME: { value = String.valueOf(defaultMainEventName()); break; }
             case EVENT_LOGGER_RMI_CLIENT_POLICY : { value = clientPolicy(); break; }
             case EVENT_LOGGER_RMI_SERVER_POLICY : { value = serverPolicy(); break; }
             case EVENT_LOGGER_SECURITY_MANAGER_ENABLE : { value = String.valueOf(securityManagerEnabled()); break; }
             case EVENT_LOGGER_RUNTIME_LOGGING_CONSOLE_OUTPUT : { value = String.valueOf(runtimeLoggingConsoleOutput()); break; }
+            case EVENT_LOGGER_RUNTIME_LOGGING_LEVEL : { value = runtimeLoggingLevel().getName(); break; }
+            case EVENT_LOGGER_SAMPLING_RULES : { value = samplingRules(); break; }
+            case EVENT_LOGGER_SAMPLING_MAX_SKIPPED_EVENTS : { value = String.valueOf(samplingMaxSkippedEvents()); break; }
+            case EVENT_LOGGER_COMPRESSION_THRESHOLD : { value = String.valueOf(compressionThreshold()); break; }
+            case EVENT_LOGGER_COMPRESSION_MAX_INFLATED_SIZE : { value = String.valueOf(compressionMaxInflatedSize()); break; }
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_ENABLE : { value = String.valueOf(runtimeLoggingAsyncEnabled()); break; }
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY : { value = String.valueOf(runtimeLoggingAsyncQueueCapacity()); break; }
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_BATCH_SIZE : { value = String.valueOf(runtimeLoggingAsyncBatchSize()); break; }
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_DROP_POLICY : { value = runtimeLoggingAsyncDropPolicy().toString(); break; }
             default: throw new IllegalArgumentException("Config key " + key + " is not valid");
         }
         properties_use_default_on_invalid_value = previousValue;
@@ -297,17 +854,95 @@ public class EventLoggerProperties {
                 }
                 return false;
             }
+            case EVENT_LOGGER_TRANSPORT : {
+                for (Transport transport : Transport.values()) {
+                    if (transport.toString().equalsIgnoreCase(value))
+                        return true;
+                }
+                return false;
+            }
+            case EVENT_LOGGER_EMBEDDED_EXPORT_TRANSPORT : {
+                for (Transport transport : Transport.values()) {
+                    if (transport != Transport.EMBEDDED && transport.toString().equalsIgnoreCase(value))
+                        return true;
+                }
+                return false;
+            }
+            case EVENT_LOGGER_JOURNAL_FSYNC : {
+                for (FsyncPolicy fsyncPolicy : FsyncPolicy.values()) {
+                    if (fsyncPolicy.toString().equalsIgnoreCase(value))
+                        return true;
+                }
+                return false;
+            }
+            case EVENT_LOGGER_DIFF_ALGORITHM : {
+                for (DiffAlgorithm diffAlgorithm : DiffAlgorithm.values()) {
+                    if (diffAlgorithm.toString().equalsIgnoreCase(value))
+                        return true;
+                }
+                return false;
+            }
+            case EVENT_LOGGER_RUNTIME_LOGGING_LEVEL : {
+                try {
+                    Level.parse(value.toUpperCase());
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }
+            case EVENT_LOGGER_SAMPLING_RULES : {
+                try {
+                    EventSampler.parse(value);
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_DROP_POLICY : {
+                for (LogDropPolicy dropPolicy : LogDropPolicy.values()) {
+                    if (dropPolicy.toString().equalsIgnoreCase(value))
+                        return true;
+                }
+                return false;
+            }
             case EVENT_LOGGER_RMI_REGISTRY_PORT :
             case EVENT_LOGGER_RMI_PORT :
             case EVENT_LOGGER_CLIENT_CONNECTION_RETRIES :
             case EVENT_LOGGER_CLIENT_CONNECTION_RETRY_DELAY :
+            case EVENT_LOGGER_DIFF_LARGE_INPUT_THRESHOLD :
+            case EVENT_LOGGER_DIFF_MAX_INPUT_SIZE :
+            case EVENT_LOGGER_DIFF_TIME_BUDGET :
+            case EVENT_LOGGER_COMPRESSION_THRESHOLD :
                 return isNumber(value);
+            case EVENT_LOGGER_NIO_PORT :
+            case EVENT_LOGGER_SHM_RING_CAPACITY :
+            case EVENT_LOGGER_JOURNAL_SEGMENT_SIZE :
+            case EVENT_LOGGER_JOURNAL_FSYNC_INTERVAL :
+            case EVENT_LOGGER_JOURNAL_COMPACTION_THRESHOLD :
+            case EVENT_LOGGER_COMPRESSION_MAX_INFLATED_SIZE :
+            case EVENT_LOGGER_SAMPLING_MAX_SKIPPED_EVENTS :
+            case EVENT_LOGGER_CLIENT_ASYNC_QUEUE_CAPACITY :
+            case EVENT_LOGGER_CLIENT_ASYNC_FLUSH_INTERVAL :
+            case EVENT_LOGGER_CLIENT_ASYNC_BATCH_SIZE :
+            case EVENT_LOGGER_CLIENT_CLOCK_SYNC_PROBES :
+            case EVENT_LOGGER_CLIENT_CLOCK_SYNC_INTERVAL :
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_QUEUE_CAPACITY :
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_BATCH_SIZE :
+                return isPositiveNumber(value);
+            case EVENT_LOGGER_RUNTIME_LOGGING_ASYNC_ENABLE :
+            case EVENT_LOGGER_CLIENT_ASYNC_ENABLE :
+            case EVENT_LOGGER_CLIENT_CLOCK_SYNC_ENABLE :
+            case EVENT_LOGGER_RMI_COMPACT_SERIALIZATION :
             case EVENT_LOGGER_MAIN_EVENT_DEFAULT_NAME :
             case EVENT_LOGGER_RMI_CLIENT_POLICY :
             case EVENT_LOGGER_RMI_SERVER_POLICY :
             case EVENT_LOGGER_RUNTIME_LOGGING_CONSOLE_OUTPUT :
             case EVENT_LOGGER_PROPERTIES_USE_DEFAULT_ON_INVALID_VALUE :
             case EVENT_LOGGER_SECURITY_MANAGER_ENABLE :
+            case EVENT_LOGGER_SHM_DIRECTORY :
+            case EVENT_LOGGER_JOURNAL_ENABLE :
+            case EVENT_LOGGER_EMBEDDED_EXPORT_ENABLE :
+            case EVENT_LOGGER_JOURNAL_DIRECTORY :
             case EVENT_LOGGER_SERVER_URL : return !value.isEmpty();
         }
         return false;
@@ -326,4 +961,8 @@ public class EventLoggerProperties {
         }
     }
 
+    private static boolean isPositiveNumber(String stringRep) {
+        return isNumber(stringRep) && Integer.parseInt(stringRep) > 0;
+    }
+
 }
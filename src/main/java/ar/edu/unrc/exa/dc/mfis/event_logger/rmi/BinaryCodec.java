@@ -0,0 +1,396 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Payload;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding for {@link Request} and {@link Response}.
+ * <p>
+ * Enums are written as their ordinal, lengths and numbers as variable length integers (LEB128, signed numbers are
+ * zigzag encoded first) and strings as their UTF-8 bytes. Optional fields are marked on a leading flags field, so absent
+ * values take no space. A {@link Response} includes its originating {@link Request}.
+ */
+public final class BinaryCodec {
+
+    private static final Request.RequestType[] REQUEST_TYPES = Request.RequestType.values();
+    private static final Response.ResponseType[] RESPONSE_TYPES = Response.ResponseType.values();
+
+    private static final int REQUEST_HAS_NAME = 1;
+    private static final int REQUEST_HAS_INITIAL_DATA = 1 << 1;
+    private static final int REQUEST_HAS_FINAL_DATA = 1 << 2;
+    private static final int REQUEST_CALCULATE_DIFFERENCE = 1 << 3;
+    private static final int REQUEST_HAS_CLIENT_TIMESTAMP = 1 << 4;
+    private static final int REQUEST_IS_PAGED = 1 << 5;
+    private static final int REQUEST_HAS_PAGE_TOKEN = 1 << 6;
+    private static final int REQUEST_HAS_TIME_WINDOW = 1 << 7;
+    private static final int REQUEST_HAS_HANDLE = 1 << 8;
+    private static final int REQUEST_HAS_PARENT = 1 << 9;
+    private static final int REQUEST_HAS_CLOCK_OFFSET = 1 << 10;
+    private static final int REQUEST_IS_SAMPLED = 1 << 11;
+    private static final int REQUEST_INITIAL_DATA_COMPRESSED = 1 << 12;
+    private static final int REQUEST_FINAL_DATA_COMPRESSED = 1 << 13;
+
+    private static final int RESPONSE_HAS_SIMPLE_TEXT_DATA = 1;
+    private static final int RESPONSE_HAS_MULTIPLE_TEXT_DATA = 1 << 1;
+    private static final int RESPONSE_BOOLEAN_DATA = 1 << 2;
+    private static final int RESPONSE_HAS_FROM = 1 << 3;
+    private static final int RESPONSE_HAS_CONTINUATION_TOKEN = 1 << 4;
+    private static final int RESPONSE_HAS_HANDLE = 1 << 5;
+
+    private BinaryCodec() {}
+
+    public static byte[] encode(Request request) {
+        Writer writer = new Writer();
+        write(request, writer);
+        return writer.toByteArray();
+    }
+
+    public static byte[] encode(Response response) {
+        Writer writer = new Writer();
+        write(response, writer);
+        return writer.toByteArray();
+    }
+
+    public static Request decodeRequest(byte[] bytes) {
+        return readRequest(new Reader(ByteBuffer.wrap(bytes)));
+    }
+
+    public static Response decodeResponse(byte[] bytes) {
+        return readResponse(new Reader(ByteBuffer.wrap(bytes)));
+    }
+
+    public static void write(Request request, Writer writer) {
+        int flags = 0;
+        if (request.hasName()) flags |= REQUEST_HAS_NAME;
+        if (request.hasInitialData()) flags |= REQUEST_HAS_INITIAL_DATA;
+        if (request.hasFinalData()) flags |= REQUEST_HAS_FINAL_DATA;
+        if (request.calculateDifference()) flags |= REQUEST_CALCULATE_DIFFERENCE;
+        if (request.hasClientTimestamp()) flags |= REQUEST_HAS_CLIENT_TIMESTAMP;
+        if (request.isPaged()) flags |= REQUEST_IS_PAGED;
+        if (request.hasPageToken()) flags |= REQUEST_HAS_PAGE_TOKEN;
+        if (request.hasTimeWindow()) flags |= REQUEST_HAS_TIME_WINDOW;
+        if (request.hasHandle()) flags |= REQUEST_HAS_HANDLE;
+        if (request.hasParent()) flags |= REQUEST_HAS_PARENT;
+        if (request.hasClockOffset()) flags |= REQUEST_HAS_CLOCK_OFFSET;
+        if (request.isSampled()) flags |= REQUEST_IS_SAMPLED;
+        if (request.hasInitialData() && request.initialPayload().isCompressed()) flags |= REQUEST_INITIAL_DATA_COMPRESSED;
+        if (request.hasFinalData() && request.finalPayload().isCompressed()) flags |= REQUEST_FINAL_DATA_COMPRESSED;
+        writer.writeVarInt(request.requestType().ordinal());
+        writer.writeVarInt(flags);
+        if (request.hasName()) writer.writeString(request.name());
+        if (request.hasInitialData()) writePayload(request.initialPayload(), writer);
+        if (request.hasFinalData()) writePayload(request.finalPayload(), writer);
+        if (request.hasClientTimestamp()) writer.writeVarLong(request.clientTimestamp());
+        if (request.isPaged()) writer.writeVarInt(request.pageSize());
+        if (request.hasPageToken()) writer.writeString(request.pageToken());
+        if (request.hasTimeWindow()) {
+            writer.writeVarLong(request.windowStart());
+            writer.writeVarLong(request.windowEnd());
+        }
+        if (request.hasHandle()) writer.writeVarInt(request.handle());
+        if (request.hasParent()) writer.writeString(request.parent());
+        if (request.hasClockOffset()) writer.writeVarLong(request.clockOffset());
+        if (request.isSampled()) writer.writeVarLong(request.skipped());
+    }
+
+    public static Request readRequest(Reader reader) {
+        Request.RequestType requestType = reader.readEnum(REQUEST_TYPES);
+        int flags = reader.readVarInt();
+        String name = (flags & REQUEST_HAS_NAME) != 0 ? reader.readString() : null;
+        Payload initialData = (flags & REQUEST_HAS_INITIAL_DATA) != 0 ? readPayload((flags & REQUEST_INITIAL_DATA_COMPRESSED) != 0, reader) : null;
+        Payload finalData = (flags & REQUEST_HAS_FINAL_DATA) != 0 ? readPayload((flags & REQUEST_FINAL_DATA_COMPRESSED) != 0, reader) : null;
+        long clientTimestamp = (flags & REQUEST_HAS_CLIENT_TIMESTAMP) != 0 ? reader.readVarLong() : Request.NO_TIMESTAMP;
+        int pageSize = (flags & REQUEST_IS_PAGED) != 0 ? reader.readVarInt() : Request.NOT_PAGED;
+        String pageToken = (flags & REQUEST_HAS_PAGE_TOKEN) != 0 ? reader.readString() : null;
+        long windowStart = 0;
+        long windowEnd = 0;
+        if ((flags & REQUEST_HAS_TIME_WINDOW) != 0) {
+            windowStart = reader.readVarLong();
+            windowEnd = reader.readVarLong();
+        }
+        int handle = (flags & REQUEST_HAS_HANDLE) != 0 ? reader.readVarInt() : Request.NO_HANDLE;
+        String parent = (flags & REQUEST_HAS_PARENT) != 0 ? reader.readString() : null;
+        long clockOffset = (flags & REQUEST_HAS_CLOCK_OFFSET) != 0 ? reader.readVarLong() : Request.NO_CLOCK_OFFSET;
+        long skipped = (flags & REQUEST_IS_SAMPLED) != 0 ? reader.readVarLong() : Request.NOT_SAMPLED;
+        return new Request(name, initialData, finalData, (flags & REQUEST_CALCULATE_DIFFERENCE) != 0, requestType, clientTimestamp, pageSize, pageToken, windowStart, windowEnd, handle, parent, clockOffset, skipped);
+    }
+
+    /*
+     * A compressed payload is written as its length in characters, its encoded length and its compressed bytes, so it's
+     * never inflated in transit.
+     */
+    private static void writePayload(Payload payload, Writer writer) {
+        if (!payload.isCompressed()) {
+            writer.writeString(payload.text());
+            return;
+        }
+        writer.writeVarInt(payload.length());
+        writer.writeVarInt(payload.encodedLength());
+        writer.writeVarInt(payload.compressed().length);
+        writer.writeBytes(payload.compressed(), 0, payload.compressed().length);
+    }
+
+    private static Payload readPayload(boolean compressed, Reader reader) {
+        // the sender already decided not to compress it
+        if (!compressed)
+            return Payload.plain(reader.readString());
+        int length = reader.readLength("payload length");
+        int encodedLength = reader.readLength("payload encoded length");
+        byte[] compressedBytes = reader.readBytes(reader.readVarInt());
+        try {
+            return Payload.ofCompressed(compressedBytes, length, encodedLength);
+        } catch (IllegalArgumentException invalid) {
+            throw new IllegalStateException("Malformed payload, " + invalid.getMessage(), invalid);
+        }
+    }
+
+    public static void write(Response response, Writer writer) {
+        int flags = 0;
+        if (response.hasSimpleTextData()) flags |= RESPONSE_HAS_SIMPLE_TEXT_DATA;
+        if (response.hasMultiTextData()) flags |= RESPONSE_HAS_MULTIPLE_TEXT_DATA;
+        if (response.booleanData()) flags |= RESPONSE_BOOLEAN_DATA;
+        if (response.originatingRequest() != null) flags |= RESPONSE_HAS_FROM;
+        if (response.hasContinuationToken()) flags |= RESPONSE_HAS_CONTINUATION_TOKEN;
+        if (response.hasHandle()) flags |= RESPONSE_HAS_HANDLE;
+        writer.writeVarInt(response.responseType().ordinal());
+        writer.writeVarInt(flags);
+        if (response.hasSimpleTextData()) writer.writeString(response.simpleTextData());
+        if (response.hasMultiTextData()) {
+            List<String> multipleTextData = response.multipleTextData();
+            writer.writeVarInt(multipleTextData.size());
+            for (String text : multipleTextData) {
+                writer.writeNullableString(text);
+            }
+        }
+        if (response.originatingRequest() != null) write(response.originatingRequest(), writer);
+        if (response.hasContinuationToken()) writer.writeString(response.continuationToken());
+        if (response.hasHandle()) writer.writeVarInt(response.handle());
+    }
+
+    public static Response readResponse(Reader reader) {
+        Response.ResponseType responseType = reader.readEnum(RESPONSE_TYPES);
+        int flags = reader.readVarInt();
+        String simpleTextData = (flags & RESPONSE_HAS_SIMPLE_TEXT_DATA) != 0 ? reader.readString() : null;
+        List<String> multipleTextData = null;
+        if ((flags & RESPONSE_HAS_MULTIPLE_TEXT_DATA) != 0) {
+            int size = reader.readLength();
+            multipleTextData = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                multipleTextData.add(reader.readNullableString());
+            }
+        }
+        Request from = (flags & RESPONSE_HAS_FROM) != 0 ? readRequest(reader) : null;
+        String continuationToken = (flags & RESPONSE_HAS_CONTINUATION_TOKEN) != 0 ? reader.readString() : null;
+        int handle = (flags & RESPONSE_HAS_HANDLE) != 0 ? reader.readVarInt() : Request.NO_HANDLE;
+        return new Response(simpleTextData, multipleTextData, (flags & RESPONSE_BOOLEAN_DATA) != 0, responseType, from, continuationToken, handle);
+    }
+
+    /**
+     * Growable byte buffer used to encode values, can be reused by calling {@link #reset()}.
+     */
+    public static final class Writer {
+
+        private byte[] buffer;
+        private int size = 0;
+
+        public Writer() {
+            this(64);
+        }
+
+        public Writer(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        public void reset() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] buffer() {
+            return buffer;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        public void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        public void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        public void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        /**
+         * Writes a signed number using zigzag encoding, so small negative numbers also take few bytes.
+         */
+        public void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensureCapacity(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        public void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Writes a string that may be {@code null}, the length is shifted by one and 0 is used for {@code null}.
+         */
+        public void writeNullableString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+
+    }
+
+    /**
+     * Decodes values from a {@link ByteBuffer}, starting at its current position.
+     */
+    public static final class Reader {
+
+        private final ByteBuffer buffer;
+
+        public Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        public int readByte() {
+            return buffer.get();
+        }
+
+        public int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IllegalStateException("Malformed variable length integer");
+        }
+
+        public long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = buffer.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            throw new IllegalStateException("Malformed variable length long");
+        }
+
+        /**
+         * Reads an enum constant written as its ordinal.
+         * @throws IllegalStateException if the ordinal is not one of {@code values}.
+         */
+        public <E extends Enum<E>> E readEnum(E[] values) {
+            int ordinal = readVarInt();
+            if (ordinal < 0 || ordinal >= values.length)
+                throw new IllegalStateException("Malformed " + values.getClass().getComponentType().getSimpleName() + ", unknown ordinal " + ordinal);
+            return values[ordinal];
+        }
+
+        /**
+         * Reads the size of a collection whose elements take at least a byte each, so it can't exceed what is left.
+         * @throws IllegalStateException if the size is negative or larger than the remaining bytes.
+         */
+        public int readLength() {
+            int length = readVarInt();
+            if (length < 0 || length > buffer.remaining())
+                throw new IllegalStateException("Malformed length " + length + ", " + buffer.remaining() + " bytes remaining");
+            return length;
+        }
+
+        private int readLength(String what) {
+            int length = readVarInt();
+            if (length < 0)
+                throw new IllegalStateException("Malformed " + what + " " + length);
+            return length;
+        }
+
+        public String readString() {
+            return readUTF8(readVarInt());
+        }
+
+        public byte[] readBytes(int length) {
+            checkLength(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        public String readNullableString() {
+            int length = readVarInt();
+            if (length == 0)
+                return null;
+            return readUTF8(length - 1);
+        }
+
+        private String readUTF8(int length) {
+            checkLength(length);
+            String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+
+        private void checkLength(int length) {
+            if (length < 0)
+                throw new IllegalStateException("Malformed length " + length);
+            if (length > buffer.remaining())
+                throw new BufferUnderflowException();
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * Serialized form of {@link Request} and {@link Response} using {@link BinaryCodec}, written in place of the actual
+ * object when compact serialization is enabled, and resolved back to it when read.
+ * <p>
+ * This class is only public because Java serialization requires it, it's not meant to be used directly.
+ */
+public final class CompactForm implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final byte REQUEST = 0;
+    private static final byte RESPONSE = 1;
+    // same limit as a frame of the NIO transport
+    private static final int MAX_SIZE = 256 * 1024 * 1024;
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private Object value;
+
+    public CompactForm() {}
+
+    CompactForm(Request request) {
+        this.value = request;
+    }
+
+    CompactForm(Response response) {
+        this.value = response;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        if (value instanceof Request) {
+            out.writeByte(REQUEST);
+            BinaryCodec.write((Request) value, writer);
+        } else {
+            out.writeByte(RESPONSE);
+            BinaryCodec.write((Response) value, writer);
+        }
+        writeVarInt(out, writer.size());
+        out.write(writer.buffer(), 0, writer.size());
+    }
+
+    /**
+     * The encoded size is read from the stream, so it's checked before allocating anything and the bytes are read into
+     * a buffer that only grows as they arrive.
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte kind = in.readByte();
+        int size = readVarInt(in);
+        if (size < 0 || size > MAX_SIZE)
+            throw new StreamCorruptedException("Invalid compact form size " + size);
+        byte[] bytes = new byte[Math.min(size, READ_CHUNK_SIZE)];
+        for (int read = 0; read < size; ) {
+            if (read == bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.min(size, bytes.length * 2L));
+            in.readFully(bytes, read, bytes.length - read);
+            read = bytes.length;
+        }
+        try {
+            switch (kind) {
+                case REQUEST: value = BinaryCodec.decodeRequest(bytes); break;
+                case RESPONSE: value = BinaryCodec.decodeResponse(bytes); break;
+                default: throw new StreamCorruptedException("Unknown compact form kind " + kind);
+            }
+        } catch (IllegalStateException | IllegalArgumentException malformed) {
+            StreamCorruptedException corrupted = new StreamCorruptedException(malformed.getMessage());
+            corrupted.initCause(malformed);
+            throw corrupted;
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return value;
+    }
+
+    private static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+}
@@ -1,7 +1,11 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
 
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import ar.edu.unrc.exa.dc.mfis.event_logger.Payload;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
 import org.json.simple.JSONObject;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 import static ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request.RequestType.*;
@@ -18,25 +22,143 @@ public class Request implements Serializable {
         STOP_EVENT,
         QUERY_EVENT_INFO,
         QUERY_ALL_EVENTS_INFO,
-        STOP_SERVER
+        STOP_SERVER,
+        QUERY_EVENTS_IN_RANGE,
+        LIST_EVENT_NAMES_UNDER,
+        QUERY_EVENTS_INFO_UNDER,
+        STOP_EVENTS_UNDER,
+        QUERY_SUMMARY_UNDER,
+        START_RECURRING_EVENT,
+        QUERY_EVENT_STATISTICS,
+        QUERY_SPAN_TREE,
+        IMPORT_EVENT,
+        SYNC_CLOCK,
+        QUERY_METRICS,
+        REPORT_SKIPPED
     }
 
     private final String name;
-    private final String initialData;
-    private final String finalData;
+    private final Payload initialData;
+    private final Payload finalData;
     private final boolean calculateDifference;
     private final RequestType requestType;
+    private final long clientTimestamp;
+    private final int pageSize;
+    private final String pageToken;
+    private final long windowStart;
+    private final long windowEnd;
+    private final int handle;
+    private final String parent;
+    private final long clockOffset;
+    private final long skipped;
+
+    static final long NO_TIMESTAMP = -1;
+    static final int NOT_PAGED = 0;
+    static final int NO_HANDLE = 0;
+    static final long NO_CLOCK_OFFSET = Long.MIN_VALUE;
+    static final long NOT_SAMPLED = -1;
 
     private Request(String name, String initialData, String finalData, RequestType requestType) {
         this(name, initialData, finalData, true, requestType);
     }
 
     private Request(String name, String initialData, String finalData, boolean calculateDifference, RequestType requestType) {
+        this(name, Payload.of(initialData), Payload.of(finalData), calculateDifference, requestType, NO_TIMESTAMP, NOT_PAGED, null, 0, 0, NO_HANDLE, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
+    /*
+     * Also used by BinaryCodec to rebuild a request.
+     */
+    Request(String name, Payload initialData, Payload finalData, boolean calculateDifference, RequestType requestType, long clientTimestamp, int pageSize, String pageToken, long windowStart, long windowEnd, int handle, String parent, long clockOffset, long skipped) {
         this.name = name;
         this.initialData = initialData;
         this.finalData = finalData;
         this.calculateDifference = calculateDifference;
         this.requestType = requestType;
+        this.clientTimestamp = clientTimestamp;
+        this.pageSize = pageSize;
+        this.pageToken = pageToken;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.handle = handle;
+        this.parent = parent;
+        this.clockOffset = clockOffset;
+        this.skipped = skipped;
+    }
+
+    /**
+     * Returns a copy of this request carrying a timestamp taken on the client (using {@link System#nanoTime()}) at the
+     * moment the request was created, this is used when requests are not sent right away (e.g.: when they are queued).
+     * @param clientTimestamp : the client's {@code System.nanoTime()} value when the request was made.
+     * @return a copy of this request with the associated client timestamp.
+     */
+    public Request withClientTimestamp(long clientTimestamp) {
+        if (clientTimestamp == NO_TIMESTAMP)
+            throw new IllegalArgumentException("Invalid client timestamp " + clientTimestamp);
+        return new Request(name, initialData, finalData, calculateDifference, requestType, clientTimestamp, pageSize, pageToken, windowStart, windowEnd, handle, parent, clockOffset, skipped);
+    }
+
+    /**
+     * Returns a copy of this request carrying the estimated difference between the server's and the client's
+     * {@link System#nanoTime()} clocks at the moment of its client timestamp, so the server can execute it at the time
+     * it was made instead of the time it arrived (see {@link #serverTime()}).
+     * @param clockOffset : the nanoseconds to add to a client's {@code System.nanoTime()} value to get the server's.
+     * @return a copy of this request with the associated clock offset.
+     */
+    public Request withClockOffset(long clockOffset) {
+        if (!hasClientTimestamp())
+            throw new IllegalStateException("A clock offset requires a client timestamp");
+        if (clockOffset == NO_CLOCK_OFFSET)
+            throw new IllegalArgumentException("Invalid clock offset " + clockOffset);
+        return new Request(name, initialData, finalData, calculateDifference, requestType, clientTimestamp, pageSize, pageToken, windowStart, windowEnd, handle, parent, clockOffset, skipped);
+    }
+
+    /**
+     * Returns a copy of this request starting an event as a child of another event, see
+     * {@link ar.edu.unrc.exa.dc.mfis.event_logger.rmi.client.EventLoggerClient#startSpan(String, String)} to keep track
+     * of the parent automatically.
+     * @param parent : the parent event's name, the parent must already exist.
+     * @return a copy of this request with the associated parent.
+     */
+    public Request withParent(String parent) {
+        if (parent == null || parent.isEmpty())
+            throw new IllegalArgumentException("Parent's name cannot be either null or empty");
+        return new Request(name, initialData, finalData, calculateDifference, requestType, clientTimestamp, pageSize, pageToken, windowStart, windowEnd, handle, parent, clockOffset, skipped);
+    }
+
+    /**
+     * Returns a copy of this request carrying an event's handle, this is used to keep the handle given to an event
+     * when the request that started it is journaled.
+     * @param handle : the handle of the event started by this request.
+     * @return a copy of this request with the associated handle.
+     */
+    public Request withHandle(int handle) {
+        if (handle <= NO_HANDLE)
+            throw new IllegalArgumentException("Invalid event handle " + handle);
+        return new Request(name, initialData, finalData, calculateDifference, requestType, clientTimestamp, pageSize, pageToken, windowStart, windowEnd, handle, parent, clockOffset, skipped);
+    }
+
+    /**
+     * Returns a copy of this request starting an event the client already decided to record following a sampling rule
+     * (see {@link ar.edu.unrc.exa.dc.mfis.event_logger.sampling.EventSampler}), so the server doesn't sample it again.
+     * @param skipped : how many events matching the same rule the client skipped since it last reported them, so the
+     * server can estimate the total.
+     * @return a copy of this request marked as sampled.
+     */
+    public Request withSampled(long skipped) {
+        if (skipped < 0)
+            throw new IllegalArgumentException("Invalid skipped events count " + skipped);
+        return new Request(name, initialData, finalData, calculateDifference, requestType, clientTimestamp, pageSize, pageToken, windowStart, windowEnd, handle, parent, clockOffset, skipped);
+    }
+
+    /**
+     * Returns a request stopping an event by name with this request's (still compressed) data, used to journal requests
+     * stopping events by handle or by prefix.
+     * @param name : the name of the event to stop.
+     * @return a {@link RequestType#STOP_EVENT} request.
+     */
+    public Request asStopEvent(String name) {
+        return new Request(name, initialData, null, calculateDifference, STOP_EVENT, NO_TIMESTAMP, NOT_PAGED, null, 0, 0, NO_HANDLE, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
     }
 
     public boolean hasName() {
@@ -53,11 +175,27 @@ public class Request implements Serializable {
 
     public boolean hasFinalData() { return finalData != null; }
 
+    /**
+     * @return the initial data, inflated if it was compressed (see {@link #initialPayload()}).
+     */
     public String initialData() {
-        return initialData;
+        return Payload.text(initialData);
     }
 
-    public String finalData() { return finalData; }
+    /**
+     * @return the final data, inflated if it was compressed (see {@link #finalPayload()}).
+     */
+    public String finalData() { return Payload.text(finalData); }
+
+    /**
+     * @return the initial data as it was sent, compressed if it was large (see {@link Payload}).
+     */
+    public Payload initialPayload() { return initialData; }
+
+    /**
+     * @return the final data as it was sent, compressed if it was large (see {@link Payload}).
+     */
+    public Payload finalPayload() { return finalData; }
 
     public boolean calculateDifference() { return calculateDifference; }
 
@@ -65,6 +203,95 @@ public class Request implements Serializable {
         return requestType;
     }
 
+    public boolean hasClientTimestamp() { return clientTimestamp != NO_TIMESTAMP; }
+
+    public long clientTimestamp() { return clientTimestamp; }
+
+    public boolean hasClockOffset() { return clockOffset != NO_CLOCK_OFFSET; }
+
+    public long clockOffset() { return clockOffset; }
+
+    /**
+     * @return {@code true} iff the time this request was made on the client can be mapped to the server's clock.
+     */
+    public boolean hasServerTime() { return hasClientTimestamp() && hasClockOffset(); }
+
+    /**
+     * @return the client timestamp on the server's {@link System#nanoTime()} clock, only valid on the server.
+     */
+    public long serverTime() { return clientTimestamp + clockOffset; }
+
+    /**
+     * @return {@code true} iff only a page of the results is requested (see {@link #queryAllEventsInformation(int, String)}).
+     */
+    public boolean isPaged() { return pageSize != NOT_PAGED; }
+
+    public int pageSize() { return pageSize; }
+
+    public boolean hasPageToken() { return pageToken != null; }
+
+    public String pageToken() { return pageToken; }
+
+    /**
+     * @return {@code true} iff this request carries a time window (see {@link #queryEventsInRange(double, double)} and
+     * {@link #importEvent(String, String, String, boolean, long, long)}).
+     */
+    public boolean hasTimeWindow() { return requestType == QUERY_EVENTS_IN_RANGE || requestType == IMPORT_EVENT; }
+
+    /**
+     * @return the time window's start, in nanoseconds since the main event's timestamp (since the epoch when importing
+     * an event).
+     */
+    public long windowStart() { return windowStart; }
+
+    /**
+     * @return the time window's end, in nanoseconds since the main event's timestamp (since the epoch when importing
+     * an event).
+     */
+    public long windowEnd() { return windowEnd; }
+
+    /**
+     * @return {@code true} iff the event is identified by the handle it was given when started, instead of its name
+     * (see {@link Response#handle()}).
+     */
+    public boolean hasHandle() { return handle != NO_HANDLE; }
+
+    public int handle() { return handle; }
+
+    public boolean hasParent() { return parent != null; }
+
+    public String parent() { return parent; }
+
+    /**
+     * @return {@code true} iff the client already decided to record the event this request starts (see
+     * {@link #withSampled(long)}).
+     */
+    public boolean isSampled() { return skipped != NOT_SAMPLED; }
+
+    /**
+     * @return the events the client skipped before this one, following the same sampling rule.
+     */
+    public long skipped() { return skipped; }
+
+    /**
+     * @return {@code true} iff this request modifies the server's events (starting or stopping events).
+     */
+    public boolean isEventStartStop() {
+        switch (requestType) {
+            case START_MAIN_EVENT:
+            case START_EVENT:
+            case START_INSTANT_EVENT:
+            case START_RECURRING_EVENT:
+            case STOP_MAIN_EVENT:
+            case STOP_EVENT:
+            case STOP_EVENTS_UNDER:
+            case IMPORT_EVENT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     public static Request startMainEvent() {
         return startMainEvent(null);
     }
@@ -95,6 +322,15 @@ public class Request implements Serializable {
         return new Request(name, data, null, START_EVENT);
     }
 
+    /**
+     * Starts a cycle of a recurring event, the first cycle creates the event and later cycles (once the previous one is
+     * stopped with {@link #stopEvent(String, String)}) record their duration in the event's statistics instead of
+     * creating new events, see {@link #queryEventStatistics(String)}.
+     */
+    public static Request startRecurringEvent(String name, String data) {
+        return new Request(name, data, null, START_RECURRING_EVENT);
+    }
+
     public static Request checkEventName(String name) {
         return new Request(name, null, null, CHECK_EVENT_NAME);
     }
@@ -103,6 +339,14 @@ public class Request implements Serializable {
         return new Request(null, null, null, LIST_EVENT_NAMES);
     }
 
+    /**
+     * Lists the names of the events under a name: the event with that name and every event whose name starts with that
+     * name followed by a dot (e.g.: {@code build.module} and {@code build.module.compile} are under {@code build}).
+     */
+    public static Request listEventNamesUnder(String prefix) {
+        return new Request(prefix, null, null, LIST_EVENT_NAMES_UNDER);
+    }
+
     public static Request stopMainEvent() {
         return stopMainEvent(null);
     }
@@ -123,14 +367,156 @@ public class Request implements Serializable {
         return new Request(name, data, null, calculateDifference, STOP_EVENT);
     }
 
+    /**
+     * Stops every running event under a name (see {@link #listEventNamesUnder(String)}), the response lists the names
+     * of the events stopped.
+     */
+    public static Request stopEventsUnder(String prefix, String data, boolean calculateDifference) {
+        return new Request(prefix, data, null, calculateDifference, STOP_EVENTS_UNDER);
+    }
+
+    /**
+     * Stops an event identified by the handle it was given when started (see {@link Response#handle()}).
+     */
+    public static Request stopEvent(int handle, String data, boolean calculateDifference) {
+        if (handle <= NO_HANDLE)
+            throw new IllegalArgumentException("Invalid event handle " + handle);
+        return new Request(null, Payload.of(data), null, calculateDifference, STOP_EVENT, NO_TIMESTAMP, NOT_PAGED, null, 0, 0, handle, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
     public static Request queryEventInformation(String name) {
         return new Request(name, null, null, QUERY_EVENT_INFO);
     }
 
+    /**
+     * Queries the statistics of the durations of each cycle of a recurring event: count, min, max, mean, variance and
+     * 50th, 99th and 99.9th percentiles.
+     */
+    public static Request queryEventStatistics(String name) {
+        return new Request(name, null, null, QUERY_EVENT_STATISTICS);
+    }
+
+    /**
+     * Queries the statistics of a recurring event identified by the handle it was given when started (see
+     * {@link #queryEventStatistics(String)}).
+     */
+    public static Request queryEventStatistics(int handle) {
+        if (handle <= NO_HANDLE)
+            throw new IllegalArgumentException("Invalid event handle " + handle);
+        return new Request(null, null, null, true, QUERY_EVENT_STATISTICS, NO_TIMESTAMP, NOT_PAGED, null, 0, 0, handle, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
+    /**
+     * Queries the tree of spans rooted at an event (its children, see {@link #withParent(String)}, their children and so
+     * on) with the total and self time of each span, self time being the part of a span's time not covered by its
+     * children.
+     */
+    public static Request querySpanTree(String name) {
+        return new Request(name, null, null, QUERY_SPAN_TREE);
+    }
+
+    /**
+     * Queries the information of an event identified by the handle it was given when started (see
+     * {@link Response#handle()}).
+     */
+    public static Request queryEventInformation(int handle) {
+        if (handle <= NO_HANDLE)
+            throw new IllegalArgumentException("Invalid event handle " + handle);
+        return new Request(null, null, null, true, QUERY_EVENT_INFO, NO_TIMESTAMP, NOT_PAGED, null, 0, 0, handle, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
     public static Request queryAllEventsInformation() {
         return new Request(null, null, null, QUERY_ALL_EVENTS_INFO);
     }
 
+    /**
+     * Queries the information of every event under a name (see {@link #listEventNamesUnder(String)}), ordered by name.
+     */
+    public static Request queryEventsInformationUnder(String prefix) {
+        return new Request(prefix, null, null, QUERY_EVENTS_INFO_UNDER);
+    }
+
+    /**
+     * Queries the totals of the events under a name (see {@link #listEventNamesUnder(String)}): how many there are, how
+     * many are running or instant, and their summed elapsed time.
+     */
+    public static Request querySummaryUnder(String prefix) {
+        return new Request(prefix, null, null, QUERY_SUMMARY_UNDER);
+    }
+
+    /**
+     * Queries the first page of events, ordered by their timestamp.
+     * @param pageSize : the maximum number of events on the page.
+     */
+    public static Request queryAllEventsInformation(int pageSize) {
+        return queryAllEventsInformation(pageSize, null);
+    }
+
+    /**
+     * Queries a page of events, ordered by their timestamp.
+     * @param pageSize : the maximum number of events on the page.
+     * @param pageToken : the continuation token of the previous page's response ({@link Response#continuationToken()}),
+     * or {@code null} for the first page.
+     */
+    public static Request queryAllEventsInformation(int pageSize, String pageToken) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Page size must be positive (" + pageSize + ")");
+        return new Request(null, null, null, true, QUERY_ALL_EVENTS_INFO, NO_TIMESTAMP, pageSize, pageToken, 0, 0, NO_HANDLE, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
+    /**
+     * Asks the server for its {@link System#nanoTime()} value, the client estimates the offset between both clocks from
+     * the round trip (see {@link Response#serverTime()}).
+     */
+    public static Request syncClock() {
+        return new Request(null, null, null, SYNC_CLOCK);
+    }
+
+    /**
+     * Asks the server for its metrics (see {@link Response#metrics(String, Request)}).
+     */
+    public static Request queryMetrics() {
+        return new Request(null, null, null, QUERY_METRICS);
+    }
+
+    /**
+     * Reports events the client skipped following a sampling rule that weren't reported along with a later event of the
+     * same rule (see {@link #withSampled(long)}), e.g.: because no later event was kept.
+     * @param pattern : the sampling rule's pattern.
+     * @param skipped : how many events were skipped.
+     */
+    public static Request reportSkipped(String pattern, long skipped) {
+        return new Request(pattern, null, null, REPORT_SKIPPED).withSampled(skipped);
+    }
+
+    /**
+     * Adds an event recorded elsewhere (e.g.: by an embedded client, see
+     * {@link EventLoggerProperties.Transport#EMBEDDED}) with its original times, see
+     * {@link EventLogger#importEvent(String, String, String, boolean, long, long, int)}.
+     * @param startTime : when the event started, in nanoseconds since the epoch.
+     * @param stopTime : when the event stopped, in nanoseconds since the epoch, or {@link EventLogger#STILL_RUNNING}.
+     */
+    public static Request importEvent(String name, String initialData, String finalData, boolean calculateDifference, long startTime, long stopTime) {
+        if (stopTime < startTime)
+            throw new IllegalArgumentException("Invalid event times, it stops (" + stopTime + ") before it starts (" + startTime + ")");
+        return new Request(name, Payload.of(initialData), Payload.of(finalData), calculateDifference, IMPORT_EVENT, NO_TIMESTAMP, NOT_PAGED, null,
+                startTime, stopTime, NO_HANDLE, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
+    /**
+     * Queries the events whose duration overlaps a time window (e.g.: what happened between 30 and 45 seconds), ordered
+     * by their timestamp. Times are relative to the main event's timestamp, or to the first event's timestamp if there
+     * is no main event. Instant events last no time and running events last until the request is executed.
+     * @param fromSeconds : the window's start.
+     * @param toSeconds : the window's end (inclusive).
+     */
+    public static Request queryEventsInRange(double fromSeconds, double toSeconds) {
+        if (Double.isNaN(fromSeconds) || Double.isNaN(toSeconds) || fromSeconds > toSeconds)
+            throw new IllegalArgumentException("Invalid time window [" + fromSeconds + ", " + toSeconds + "]");
+        return new Request(null, null, null, true, QUERY_EVENTS_IN_RANGE, NO_TIMESTAMP, NOT_PAGED, null,
+                (long) (fromSeconds * 1_000_000_000L), (long) (toSeconds * 1_000_000_000L), NO_HANDLE, null, NO_CLOCK_OFFSET, NOT_SAMPLED);
+    }
+
     public static Request stopServer() {
         return new Request(null, null, null, STOP_SERVER);
     }
@@ -147,22 +533,59 @@ public class Request implements Serializable {
         sb.append(",\n");
         sb.append("\t\"initialData\":");
         if (hasInitialData()) {
-            sb.append("\"").append(cleanStringData(initialData)).append("\"");
+            sb.append("\"").append(cleanStringData(initialData.toString())).append("\"");
         } else {
             sb.append("\"").append("N/A").append("\"");
         }
         sb.append(",\n");
         sb.append("\t\"finalData\":");
         if (hasFinalData()) {
-            sb.append("\"").append(cleanStringData(finalData)).append("\"");
+            sb.append("\"").append(cleanStringData(finalData.toString())).append("\"");
         } else {
             sb.append("\"").append("N/A").append("\"");
         }
+        if (hasClientTimestamp()) {
+            sb.append(",\n");
+            sb.append("\t\"clientTimestamp\":").append("\"").append(clientTimestamp).append("\"");
+        }
+        if (hasClockOffset()) {
+            sb.append(",\n");
+            sb.append("\t\"clockOffset(ns)\":").append("\"").append(clockOffset).append("\"");
+        }
+        if (isPaged()) {
+            sb.append(",\n");
+            sb.append("\t\"pageSize\":").append("\"").append(pageSize).append("\"");
+            if (hasPageToken()) {
+                sb.append(",\n");
+                sb.append("\t\"pageToken\":").append("\"").append(cleanStringData(pageToken)).append("\"");
+            }
+        }
+        if (hasHandle()) {
+            sb.append(",\n");
+            sb.append("\t\"handle\":").append("\"").append(handle).append("\"");
+        }
+        if (hasParent()) {
+            sb.append(",\n");
+            sb.append("\t\"parent\":").append("\"").append(parent).append("\"");
+        }
+        if (isSampled()) {
+            sb.append(",\n");
+            sb.append("\t\"skippedBefore\":").append("\"").append(skipped).append("\"");
+        }
+        if (hasTimeWindow()) {
+            sb.append(",\n");
+            sb.append("\t\"windowStart(ns)\":").append("\"").append(windowStart).append("\"").append(",\n");
+            sb.append("\t\"windowEnd(ns)\":").append("\"").append(windowEnd).append("\"");
+        }
         sb.append("\n");
         sb.append("}");
         return sb.toString();
     }
 
+    private Object writeReplace() throws ObjectStreamException {
+        return EventLoggerProperties.compactSerialization() ? new CompactForm(this) : this;
+    }
+
     private String cleanStringData(String rawData) {
         if (rawData == null) return null;
         return JSONObject.escape(rawData);
@@ -1,7 +1,9 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
 
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
 import org.json.simple.JSONObject;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
@@ -53,6 +55,42 @@ public class Response implements Serializable {
             public String getDescription() {
                 return "An error occurred on a particular query";
             }
+        },
+        EVENTS_STOPPED {
+            @Override
+            public String getDescription() {
+                return "Stop every running event under a name, with the names of the events stopped";
+            }
+        },
+        EVENTS_SUMMARY {
+            @Override
+            public String getDescription() {
+                return "Query the server the totals (count, running count, summed elapsed time) of the events under a name";
+            }
+        },
+        EVENT_STATISTICS {
+            @Override
+            public String getDescription() {
+                return "Query the server the statistics (count, min, max, mean, variance and percentiles) of the cycles of a recurring event";
+            }
+        },
+        SPAN_TREE {
+            @Override
+            public String getDescription() {
+                return "Query the server the tree of spans rooted at an event, with the total and self time of each span";
+            }
+        },
+        CLOCK_SYNC {
+            @Override
+            public String getDescription() {
+                return "Query the server its current monotonic clock value, used by clients to map their timestamps onto the server's clock";
+            }
+        },
+        METRICS {
+            @Override
+            public String getDescription() {
+                return "Query the server its metrics: request counts and latencies per request type, error counts per cause, events and data held and time spent calculating differences";
+            }
         };
 
         public abstract String getDescription();
@@ -63,13 +101,27 @@ public class Response implements Serializable {
     private final boolean booleanData;
     private final ResponseType responseType;
     private final Request from;
+    private final String continuationToken;
+    private final int handle;
+
+    private static final int NO_HANDLE = Request.NO_HANDLE;
 
     private Response(ResponseType responseType, Request from) {
+        this(responseType, NO_HANDLE, from);
+    }
+
+    private Response(ResponseType responseType, int handle, Request from) {
         switch (responseType) {
             case EVENT_NAMES:
             case EVENT_QUERY:
             case EVENT_NAME_CHECK:
             case EVENTS_QUERY:
+            case EVENTS_STOPPED:
+            case EVENTS_SUMMARY:
+            case EVENT_STATISTICS:
+            case SPAN_TREE:
+            case CLOCK_SYNC:
+            case METRICS:
                 throw new IllegalArgumentException("Response type RT requires associated data".replaceAll("RT", responseType.toString()));
         }
         validateRequest(responseType, from);
@@ -78,6 +130,8 @@ public class Response implements Serializable {
         booleanData = true;
         this.responseType = responseType;
         this.from = from;
+        this.continuationToken = null;
+        this.handle = handle;
     }
 
     private Response(boolean booleanData, String message, ResponseType responseType, Request from) {
@@ -88,6 +142,12 @@ public class Response implements Serializable {
             case EVENTS_QUERY:
             case ERROR:
             case EVENT_QUERY:
+            case EVENTS_STOPPED:
+            case EVENTS_SUMMARY:
+            case EVENT_STATISTICS:
+            case SPAN_TREE:
+            case CLOCK_SYNC:
+            case METRICS:
                 throw new IllegalArgumentException("Response type RT is not compatible with boolean data".replaceAll("RT", responseType.toString()));
         }
         if (from == null)
@@ -98,6 +158,8 @@ public class Response implements Serializable {
         this.booleanData = booleanData;
         this.responseType = responseType;
         this.from = from;
+        this.continuationToken = null;
+        this.handle = NO_HANDLE;
     }
 
     private Response(String simpleTextData, ResponseType responseType, Request from) {
@@ -105,6 +167,7 @@ public class Response implements Serializable {
             case EVENT_NAME_CHECK:
             case STOP_SERVER:
             case EVENT_START_STOP:
+            case EVENTS_STOPPED:
                 throw new IllegalArgumentException("Response type RT is not compatible with text data".replaceAll("RT", responseType.toString()));
         }
         if (from == null)
@@ -115,15 +178,22 @@ public class Response implements Serializable {
         booleanData = true;
         this.responseType = responseType;
         this.from = from;
+        this.continuationToken = null;
+        this.handle = NO_HANDLE;
     }
 
-    private Response(List<String> multipleTextData, ResponseType responseType, Request from) {
+    private Response(List<String> multipleTextData, String continuationToken, ResponseType responseType, Request from) {
         switch (responseType) {
             case ERROR:
             case EVENT_NAME_CHECK:
             case EVENT_QUERY:
             case STOP_SERVER:
             case EVENT_START_STOP:
+            case EVENTS_SUMMARY:
+            case EVENT_STATISTICS:
+            case SPAN_TREE:
+            case CLOCK_SYNC:
+            case METRICS:
                 throw new IllegalArgumentException("Response type RT is not compatible with multiple text data".replaceAll("RT", responseType.toString()));
         }
         if (from == null)
@@ -134,6 +204,21 @@ public class Response implements Serializable {
         booleanData = true;
         this.responseType = responseType;
         this.from = from;
+        this.continuationToken = continuationToken;
+        this.handle = NO_HANDLE;
+    }
+
+    /*
+     * Used by BinaryCodec to rebuild an already validated response.
+     */
+    Response(String simpleTextData, List<String> multipleTextData, boolean booleanData, ResponseType responseType, Request from, String continuationToken, int handle) {
+        this.simpleTextData = simpleTextData;
+        this.multipleTextData = multipleTextData;
+        this.booleanData = booleanData;
+        this.responseType = responseType;
+        this.from = from;
+        this.continuationToken = continuationToken;
+        this.handle = handle;
     }
 
     private void validateRequest(ResponseType responseType, Request from) {
@@ -145,6 +230,15 @@ public class Response implements Serializable {
                     case LIST_EVENT_NAMES:
                     case QUERY_EVENT_INFO:
                     case QUERY_ALL_EVENTS_INFO:
+                    case QUERY_EVENTS_IN_RANGE:
+                    case LIST_EVENT_NAMES_UNDER:
+                    case QUERY_EVENTS_INFO_UNDER:
+                    case STOP_EVENTS_UNDER:
+                    case QUERY_SUMMARY_UNDER:
+                    case QUERY_EVENT_STATISTICS:
+                    case QUERY_SPAN_TREE:
+                    case SYNC_CLOCK:
+                    case QUERY_METRICS:
                     case STOP_SERVER:
                         incompatibleTypes = true;
                 }
@@ -155,7 +249,9 @@ public class Response implements Serializable {
                 break;
             }
             case EVENTS_QUERY: {
-                incompatibleTypes = !from.requestType().equals(Request.RequestType.QUERY_ALL_EVENTS_INFO);
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.QUERY_ALL_EVENTS_INFO)
+                        && !from.requestType().equals(Request.RequestType.QUERY_EVENTS_IN_RANGE)
+                        && !from.requestType().equals(Request.RequestType.QUERY_EVENTS_INFO_UNDER);
                 break;
             }
             case EVENT_NAME_CHECK: {
@@ -163,7 +259,32 @@ public class Response implements Serializable {
                 break;
             }
             case EVENT_NAMES: {
-                incompatibleTypes = !from.requestType().equals(Request.RequestType.LIST_EVENT_NAMES);
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.LIST_EVENT_NAMES)
+                        && !from.requestType().equals(Request.RequestType.LIST_EVENT_NAMES_UNDER);
+                break;
+            }
+            case EVENTS_STOPPED: {
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.STOP_EVENTS_UNDER);
+                break;
+            }
+            case EVENTS_SUMMARY: {
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.QUERY_SUMMARY_UNDER);
+                break;
+            }
+            case EVENT_STATISTICS: {
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.QUERY_EVENT_STATISTICS);
+                break;
+            }
+            case SPAN_TREE: {
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.QUERY_SPAN_TREE);
+                break;
+            }
+            case CLOCK_SYNC: {
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.SYNC_CLOCK);
+                break;
+            }
+            case METRICS: {
+                incompatibleTypes = !from.requestType().equals(Request.RequestType.QUERY_METRICS);
                 break;
             }
             case STOP_SERVER: {
@@ -210,16 +331,116 @@ public class Response implements Serializable {
         return responseType;
     }
 
+    /**
+     * @return {@code true} iff this is a page of events and there are more events after it.
+     */
+    public boolean hasContinuationToken() {
+        return continuationToken != null;
+    }
+
+    /**
+     * The token to request the next page of events with {@link Request#queryAllEventsInformation(int, String)}. The next
+     * pages start after the last event on this page, by timestamp, so events added in the meantime with an earlier
+     * timestamp (e.g.: imported events or events timed by a client) are not on them.
+     */
+    public String continuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * The server's {@link System#nanoTime()} value when it answered a {@link Request.RequestType#SYNC_CLOCK} request.
+     * @throws IllegalStateException if this is not a {@link ResponseType#CLOCK_SYNC} response.
+     */
+    public long serverTime() {
+        if (responseType != CLOCK_SYNC)
+            throw new IllegalStateException("Response type " + responseType + " doesn't carry the server's time");
+        return Long.parseLong(simpleTextData);
+    }
+
+    /**
+     * @return {@code true} iff this response carries the handle of the event started by the request.
+     */
+    public boolean hasHandle() {
+        return handle != NO_HANDLE;
+    }
+
+    /**
+     * The handle given to the event started by the request, it can be used instead of the event's name to stop it
+     * ({@link Request#stopEvent(int, String, boolean)}) or query it ({@link Request#queryEventInformation(int)}).
+     */
+    public int handle() {
+        return handle;
+    }
+
     public static Response eventStartedStopped(Request from) {
         return new Response(EVENT_START_STOP, from);
     }
 
+    /**
+     * @param handle : the handle given to the event started.
+     */
+    public static Response eventStarted(int handle, Request from) {
+        return new Response(EVENT_START_STOP, handle, from);
+    }
+
     public static Response eventQuery(String data, Request from) {
         return new Response(data, EVENT_QUERY, from);
     }
 
     public static Response eventsQuery(List<String> data, Request from) {
-        return new Response(data, EVENTS_QUERY, from);
+        return new Response(data, null, EVENTS_QUERY, from);
+    }
+
+    /**
+     * A page of events.
+     * @param continuationToken : the token for the next page, {@code null} if this is the last page.
+     */
+    public static Response eventsQuery(List<String> data, String continuationToken, Request from) {
+        if (!from.isPaged())
+            throw new IllegalArgumentException("Continuation token given for a request that is not paged");
+        return new Response(data, continuationToken, EVENTS_QUERY, from);
+    }
+
+    /**
+     * @param names : the names of the events stopped.
+     */
+    public static Response eventsStopped(List<String> names, Request from) {
+        return new Response(names, null, EVENTS_STOPPED, from);
+    }
+
+    /**
+     * @param summary : the totals of the events under a name, as a JSON object.
+     */
+    public static Response eventsSummary(String summary, Request from) {
+        return new Response(summary, EVENTS_SUMMARY, from);
+    }
+
+    /**
+     * @param statistics : the statistics of a recurring event, as a JSON object.
+     */
+    public static Response eventStatistics(String statistics, Request from) {
+        return new Response(statistics, EVENT_STATISTICS, from);
+    }
+
+    /**
+     * @param spanTree : the tree of spans rooted at an event, as a JSON object.
+     */
+    public static Response spanTree(String spanTree, Request from) {
+        return new Response(spanTree, SPAN_TREE, from);
+    }
+
+    /**
+     * @param serverTime : the server's {@link System#nanoTime()} value when answering the request.
+     */
+    public static Response clockSync(long serverTime, Request from) {
+        return new Response(Long.toString(serverTime), CLOCK_SYNC, from);
+    }
+
+    /**
+     * @param metrics : the server's metrics, as a JSON object.
+     */
+    public static Response metrics(String metrics, Request from) {
+        return new Response(metrics, METRICS, from);
     }
 
     public static Response eventNameCheck(boolean nameExists, Request from) {
@@ -227,7 +448,7 @@ public class Response implements Serializable {
     }
 
     public static Response eventNames(List<String> names, Request from) {
-        return new Response(names, EVENT_NAMES, from);
+        return new Response(names, null, EVENT_NAMES, from);
     }
 
     public static Response stopServer(Request from) {
@@ -258,6 +479,10 @@ public class Response implements Serializable {
         }
         sb.append(",\n");
         sb.append("\t\"booleanData\":").append("\"").append(booleanData).append("\"").append(",\n");
+        if (hasContinuationToken())
+            sb.append("\t\"continuationToken\":").append("\"").append(cleanStringData(continuationToken)).append("\"").append(",\n");
+        if (hasHandle())
+            sb.append("\t\"handle\":").append("\"").append(handle).append("\"").append(",\n");
         sb.append("\t\"from\": {\n").append("\"request\":").append(
                 Arrays.stream(from.toString().split("\n")).map(s -> "\t" + s + "\n").collect(Collectors.joining())
         ).append("\n\t}\n");
@@ -265,6 +490,10 @@ public class Response implements Serializable {
         return sb.toString();
     }
 
+    private Object writeReplace() throws ObjectStreamException {
+        return EventLoggerProperties.compactSerialization() ? new CompactForm(this) : this;
+    }
+
     private String cleanStringData(String rawData) {
         if (rawData == null) return null;
         return JSONObject.escape(rawData);
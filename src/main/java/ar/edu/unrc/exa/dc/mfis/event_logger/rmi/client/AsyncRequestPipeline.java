@@ -0,0 +1,211 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.client;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded client side queue of requests that are sent to the server in batches by a background thread.
+ * <p>
+ * Requests are sent in the same order they were queued. Once a request is queued, the background thread waits up to
+ * {@code flushInterval} milliseconds for more requests, sending the batch when that time is up or as soon as
+ * {@code batchSize} requests are waiting. A request whose caller waits for its response (see {@link #submit(Request,
+ * boolean)}) is sent right away, along with every request queued before it. When the queue is full, callers are
+ * blocked until there is room for their request.
+ */
+class AsyncRequestPipeline {
+
+    private static final Logger logger = LocalLogging.getLogger(AsyncRequestPipeline.class);
+
+    private static class PendingRequest {
+        private final Request request;
+        private final CompletableFuture<Response> response;
+        private final boolean sendNow;
+
+        private PendingRequest(Request request, CompletableFuture<Response> response, boolean sendNow) {
+            this.request = request;
+            this.response = response;
+            this.sendNow = sendNow;
+        }
+    }
+
+    private static final long PUT_RETRY_INTERVAL = 100;
+
+    private final BlockingQueue<PendingRequest> queue;
+    private final Function<List<Request>, List<Response>> batchSender;
+    private final long flushInterval;
+    private final int batchSize;
+    private final Object flushLock = new Object();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    AsyncRequestPipeline(Function<List<Request>, List<Response>> batchSender, int capacity, long flushInterval, int batchSize) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSender = batchSender;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.flusher = new Thread(this::flushLoop, "EventLoggerClient-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a request for which no response is needed, errors will only be logged.
+     */
+    void enqueue(Request request) {
+        put(new PendingRequest(timestamped(request), null, false));
+    }
+
+    /**
+     * Queues a request and returns a future holding the server's response.
+     * @param sendNow : {@code true} to send the request (and those queued before it) without waiting for the flush
+     * interval, for callers blocked on the response.
+     */
+    CompletableFuture<Response> submit(Request request, boolean sendNow) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        put(new PendingRequest(timestamped(request), response, sendNow));
+        return response;
+    }
+
+    /**
+     * Sends every request queued so far, returns once their responses are received.
+     */
+    void flush() {
+        if (!running) return;
+        submit(null, true).join();
+    }
+
+    /**
+     * Stops the background thread and sends all remaining requests from the calling thread. Requests queued
+     * concurrently with closing are either sent, failed or rejected (see {@link #put(PendingRequest)}), never left
+     * waiting.
+     */
+    void close() {
+        if (!running) return;
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingRequest> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            send(remaining);
+            remaining.clear();
+        }
+        queue.drainTo(remaining);
+        for (PendingRequest pendingRequest : remaining) {
+            if (pendingRequest.response != null)
+                pendingRequest.response.completeExceptionally(new IllegalStateException("Request pipeline is closed"));
+        }
+    }
+
+    private Request timestamped(Request request) {
+        if (request == null || request.hasClientTimestamp())
+            return request;
+        return request.withClientTimestamp(System.nanoTime());
+    }
+
+    /*
+     * While the queue is full the pipeline may be closed, so waiting for room is bounded. A request queued while closing
+     * may be missed by close's last drain: if it's still queued once the pipeline is seen closed it's taken back and
+     * rejected, otherwise close already took it.
+     */
+    private void put(PendingRequest pendingRequest) {
+        try {
+            while (!queue.offer(pendingRequest, PUT_RETRY_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (!running)
+                    throw new IllegalStateException("Request pipeline is closed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a request", e);
+        }
+        if (!running && queue.remove(pendingRequest))
+            throw new IllegalStateException("Request pipeline is closed");
+    }
+
+    private void flushLoop() {
+        List<PendingRequest> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                fill(batch, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval));
+                send(batch);
+            } catch (InterruptedException e) {
+                // closing, requests already taken are sent before those left on the queue
+                send(batch);
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /*
+     * Adds queued requests to the batch until it's full, the deadline is reached or a request must be sent now.
+     */
+    private void fill(List<PendingRequest> batch, long deadline) throws InterruptedException {
+        int checked = 0;
+        while (true) {
+            queue.drainTo(batch, batchSize - batch.size());
+            for (; checked < batch.size(); checked++) {
+                if (batch.get(checked).sendNow)
+                    return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0)
+                return;
+            PendingRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null)
+                return;
+            batch.add(next);
+        }
+    }
+
+    private void send(List<PendingRequest> batch) {
+        synchronized (flushLock) {
+            List<Request> requests = new ArrayList<>(batch.size());
+            for (PendingRequest pendingRequest : batch) {
+                if (pendingRequest.request != null)
+                    requests.add(pendingRequest.request);
+            }
+            List<Response> responses;
+            try {
+                responses = requests.isEmpty() ? new ArrayList<>() : batchSender.apply(requests);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Error while sending a batch of " + requests.size() + " requests\n", e);
+                for (PendingRequest pendingRequest : batch) {
+                    if (pendingRequest.response != null)
+                        pendingRequest.response.completeExceptionally(e);
+                }
+                return;
+            }
+            int idx = 0;
+            for (PendingRequest pendingRequest : batch) {
+                if (pendingRequest.request == null) {
+                    pendingRequest.response.complete(null);
+                    continue;
+                }
+                Response response = responses.get(idx++);
+                if (pendingRequest.response != null) {
+                    pendingRequest.response.complete(response);
+                } else if (response.error()) {
+                    logger.warning("Queued request failed\n" + response);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.client;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport.ClientTransport;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Estimates the offset between this process' {@link System#nanoTime()} clock and the server's, so the time a request
+ * was made on the client can be mapped onto the server's clock.
+ * <p>
+ * Each synchronization sends a few {@link Request#syncClock()} probes and keeps the one with the shortest round trip,
+ * the one least affected by queueing; assuming the server read its clock halfway through the round trip, the offset
+ * is off by at most half of that round trip. The drift between both clocks is the change of the offset between the
+ * first and the latest synchronization, so offsets are extrapolated between synchronizations. This class is thread
+ * safe.
+ */
+final class ClockSync {
+
+    private static final Logger logger = LocalLogging.getLogger(ClockSync.class);
+
+    /*
+     * Synchronizations closer than this are not used to estimate the drift, their offsets' error would dominate it.
+     */
+    private static final long MIN_DRIFT_SPAN = 1_000_000_000L;
+
+    private final ClientTransport transport;
+    private final int probes;
+    private Sample first = null;
+    private volatile Estimate estimate = null;
+
+    ClockSync(ClientTransport transport, int probes) {
+        this.transport = transport;
+        this.probes = probes;
+    }
+
+    /**
+     * Estimates the offset again, keeping the previous estimate if no probe got a response.
+     */
+    synchronized void synchronize() {
+        Sample best = null;
+        for (int i = 0; i < probes; i++) {
+            long sent = System.nanoTime();
+            Response response;
+            try {
+                response = transport.send(Request.syncClock());
+            } catch (IOException | RuntimeException probeFailed) {
+                logger.warning("Clock synchronization probe failed (" + probeFailed + ")");
+                continue;
+            }
+            long received = System.nanoTime();
+            if (response.error()) {
+                logger.warning("Clock synchronization probe failed\n" + response.simpleTextData());
+                continue;
+            }
+            long roundTrip = received - sent;
+            if (best == null || roundTrip < best.roundTrip) {
+                long midpoint = sent + roundTrip / 2;
+                best = new Sample(midpoint, response.serverTime() - midpoint, roundTrip);
+            }
+        }
+        if (best == null) {
+            logger.warning("Couldn't synchronize clock with server");
+            return;
+        }
+        if (first == null)
+            first = best;
+        double drift = best.midpoint - first.midpoint < MIN_DRIFT_SPAN ? 0 : (double) (best.offset - first.offset) / (best.midpoint - first.midpoint);
+        estimate = new Estimate(best, drift);
+        logger.info("Clock synchronized, offset " + best.offset + "ns (+/- " + best.roundTrip / 2 + "ns), drift " + drift);
+    }
+
+    boolean isSynchronized() {
+        return estimate != null;
+    }
+
+    /**
+     * @param clientTime : a {@link System#nanoTime()} value of this process.
+     * @return the nanoseconds to add to {@code clientTime} to get the server's clock value at that moment.
+     * @throws IllegalStateException if the clock was never synchronized.
+     */
+    long offsetAt(long clientTime) {
+        Estimate current = estimate;
+        if (current == null)
+            throw new IllegalStateException("Clock is not synchronized");
+        return current.sample.offset + Math.round(current.drift * (clientTime - current.sample.midpoint));
+    }
+
+    private static final class Sample {
+
+        private final long midpoint;
+        private final long offset;
+        private final long roundTrip;
+
+        private Sample(long midpoint, long offset, long roundTrip) {
+            this.midpoint = midpoint;
+            this.offset = offset;
+            this.roundTrip = roundTrip;
+        }
+
+    }
+
+    private static final class Estimate {
+
+        private final Sample sample;
+        private final double drift;
+
+        private Estimate(Sample sample, double drift) {
+            this.sample = sample;
+            this.drift = drift;
+        }
+
+    }
+
+}
@@ -1,28 +1,30 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.client;
 
 import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
-import ar.edu.unrc.exa.dc.mfis.event_logger.EventLoggerServerMain;
 import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
 import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
 import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
 import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
 import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
-import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServerImpl;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport.ClientTransport;
+import ar.edu.unrc.exa.dc.mfis.event_logger.sampling.EventSampler;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.net.URL;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.rmi.ConnectException;
-import java.rmi.NotBoundException;
-import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.security.Policy;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,7 +34,20 @@ public class EventLoggerClient {
 
     public static final String VERSION = "1.0.0";
 
-    private final EventLoggerServer eventLoggerServer;
+    private final ClientTransport transport;
+    private final AsyncRequestPipeline pipeline;
+    /*
+     * Null when clock synchronization is disabled, requests starting or stopping events are then timed by the server
+     * when they arrive.
+     */
+    private final ClockSync clock;
+    private final ThreadLocal<Deque<String>> spans = ThreadLocal.withInitial(ArrayDeque::new);
+    /*
+     * How many spans were started on top of this thread's span stack since a span was skipped by sampling, every span
+     * started inside a skipped one is skipped too.
+     */
+    private final ThreadLocal<int[]> skippedSpans = ThreadLocal.withInitial(() -> new int[1]);
+    private final EventSampler sampler = EventSampler.fromProperties();
     private static EventLoggerClient instance;
     public static EventLoggerClient instance() {
         if (instance == null)
@@ -41,117 +56,328 @@ public class EventLoggerClient {
     }
 
     private EventLoggerClient(String serverURL) {
-        if (EventLoggerProperties.securityManagerEnabled()) {
-            if (System.getSecurityManager() == null) {
-                URL policyPath = EventLoggerServerMain.class.getClassLoader().getResource(EventLoggerProperties.clientPolicy());
-                if (policyPath == null) {
-                    logger.severe("No policy could be found at " + EventLoggerProperties.clientPolicy());
-                    throw new RuntimeException("No policy could be found at " + EventLoggerProperties.clientPolicy());
-                }
-                System.setProperty("java.security.policy", policyPath.toString());
-                Policy.getPolicy().refresh();
-                System.setSecurityManager(new SecurityManager());
-            }
-        }
         try {
-            eventLoggerServer = getServer(serverURL);
+            transport = ClientTransport.connect(EventLoggerProperties.transport(), serverURL);
         } catch (Exception e) {
             throw new RuntimeException("An error occurred while trying to get the server", e);
         }
+        if (EventLoggerProperties.clientAsyncEnabled() && EventLoggerProperties.transport() != EventLoggerProperties.Transport.EMBEDDED) {
+            pipeline = new AsyncRequestPipeline(
+                    requests -> sendBatch(requests, EventLoggerServer.BatchMode.BEST_EFFORT),
+                    EventLoggerProperties.clientAsyncQueueCapacity(),
+                    EventLoggerProperties.clientAsyncFlushInterval(),
+                    EventLoggerProperties.clientAsyncBatchSize()
+            );
+        } else {
+            pipeline = null;
+        }
+        if (EventLoggerProperties.clientClockSyncEnabled() && EventLoggerProperties.transport() != EventLoggerProperties.Transport.EMBEDDED) {
+            clock = new ClockSync(transport, EventLoggerProperties.clientClockSyncProbes());
+            clock.synchronize();
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "EventLoggerClient-clock-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = EventLoggerProperties.clientClockSyncInterval();
+            scheduler.scheduleWithFixedDelay(clock::synchronize, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            clock = null;
+        }
+        if (pipeline != null || !sampler.isEmpty())
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "EventLoggerClient-shutdown-flush"));
     }
 
+    /**
+     * Sends a request to the server and waits for its response.
+     * <p>
+     * When async mode is enabled ({@link EventLoggerProperties#clientAsyncEnabled()}) the request is queued after any
+     * other pending request, and this method waits until it's sent and a response is received.
+     */
     public Response sendRequest(Request request)  {
-        Response response;
+        request = timestamped(request);
+        if (pipeline == null)
+            return doSendRequest(request);
         try {
-            logger.info("Sending request\n" + request.toString());
-            response = eventLoggerServer.executeQuery(request);
-            logger.info("Got response\n" + response.toString());
-        } catch (RemoteException re) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            re.printStackTrace(pw);
-            String sStackTrace = sw.toString();
-            logger.log(Level.SEVERE,"Got RemoteException\n", re );
-            response = Response.error(sStackTrace, request);
+            return pipeline.submit(request, true).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.error("Interrupted while waiting for a response", request);
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE,"Error while waiting for a queued request\n", e.getCause());
+            return Response.error(e.getCause().toString(), request);
         }
-        return response;
     }
 
-    private EventLoggerServer getServer(String serverURL) throws RemoteException {
-        logger.info("Getting server at " + serverURL);
-        Registry registry = LocateRegistry.getRegistry(serverURL);
-        logger.info("Got registry " + registry.toString());
-        EventLoggerServer eventLoggerServer;
+    /**
+     * Sends a request without waiting for a response, meant for starting and stopping events.
+     * <p>
+     * When async mode is enabled the request is queued (with a client side timestamp) and sent in a batch by a
+     * background thread, errors are only logged. When async mode is disabled the request is sent right away (with the
+     * {@link EventLoggerProperties.Transport#NIO} transport the response is not waited for).
+     */
+    public void enqueueRequest(Request request) {
+        request = timestamped(request);
+        if (pipeline == null) {
+            doSendRequestAsync(request).thenAccept(response -> {
+                if (response.error())
+                    logger.warning("Request failed\n" + response);
+            });
+        } else {
+            pipeline.enqueue(request);
+        }
+    }
+
+    /**
+     * Sends a request and returns a future holding the server's response, meant for queries.
+     * <p>
+     * When async mode is enabled the request is queued after any other pending request, and sent with the next batch
+     * (at most {@link EventLoggerProperties#clientAsyncFlushInterval()} milliseconds later). When async mode is disabled
+     * the request is sent right away, with the {@link EventLoggerProperties.Transport#RMI} transport the response is
+     * waited for and an already completed future is returned.
+     */
+    public Future<Response> submitRequest(Request request) {
+        request = timestamped(request);
+        if (pipeline == null)
+            return doSendRequestAsync(request);
+        return pipeline.submit(request, false);
+    }
+
+    /**
+     * Reports the events skipped by sampling that weren't reported yet, and waits until every queued request has been
+     * sent to the server (when async mode is enabled).
+     */
+    public void flush() {
+        reportSkipped(this::enqueueRequest);
+        if (pipeline != null)
+            pipeline.flush();
+    }
+
+    /*
+     * Run on shutdown, skipped events are reported before the pipeline sends its remaining requests.
+     */
+    private void close() {
+        if (pipeline == null) {
+            reportSkipped(this::sendRequest);
+        } else {
+            reportSkipped(this::enqueueRequest);
+            pipeline.close();
+        }
+    }
+
+    /*
+     * Skipped events are reported along with the next event kept by the same rule, those skipped after the last kept
+     * one (or by a rule that never keeps any) are reported on their own.
+     */
+    private void reportSkipped(Consumer<Request> sender) {
+        for (EventSampler.Rule rule : sampler.rules()) {
+            long skipped = rule.takeSkipped();
+            if (skipped > 0)
+                sender.accept(Request.reportSkipped(rule.pattern(), skipped));
+        }
+    }
+
+    /**
+     * Starts an event, unless it's skipped by the sampling rule matching its name
+     * ({@link EventLoggerProperties#samplingRules()}). A skipped event costs no request, not even building one.
+     * @param name : the event's name.
+     * @param data : the event's initial data.
+     * @return {@code true} iff the event is started, skipped events must not be stopped.
+     */
+    public boolean startEvent(String name, String data) {
+        EventSampler.Rule rule = sampler.rule(name);
+        if (rule != null && !rule.sample())
+            return false;
+        enqueueRequest(sampled(Request.startEvent(name, data), rule));
+        return true;
+    }
+
+    /**
+     * Starts and stops an event at once, unless it's skipped by the sampling rule matching its name (see
+     * {@link #startEvent(String, String)}).
+     * @param name : the event's name.
+     * @param initialData : the event's initial data.
+     * @param finalData : the event's final data.
+     * @return {@code true} iff the event is recorded.
+     */
+    public boolean startInstantEvent(String name, String initialData, String finalData) {
+        EventSampler.Rule rule = sampler.rule(name);
+        if (rule != null && !rule.sample())
+            return false;
+        enqueueRequest(sampled(Request.startInstantEvent(name, initialData, finalData), rule));
+        return true;
+    }
+
+    /*
+     * Marks a request as sampled in by the client, reporting the events skipped by the same rule since the last one.
+     */
+    private static Request sampled(Request request, EventSampler.Rule rule) {
+        return rule == null ? request : request.withSampled(rule.takeSkipped());
+    }
+
+    /**
+     * Starts an event as a child of the span this thread is currently in (the last one started by this thread and not
+     * yet stopped), the event becomes the thread's current span until {@link #stopSpan(String)} is called.
+     * <p>
+     * Spans of a thread are expected to be stopped in the reverse order they were started, spans can't be shared with
+     * other threads but a child of a span can be started by another thread (or process) with
+     * {@link #startSpan(String, String, String)}.
+     * <p>
+     * Spans are sampled like events started with {@link #startEvent(String, String)}. Once a span is skipped, every
+     * span this thread starts until it's stopped is skipped as well, and stopping them does nothing.
+     * @param name : the event's name.
+     * @param data : the event's initial data.
+     */
+    public void startSpan(String name, String data) {
+        startSpan(name, data, spans.get().peek());
+    }
+
+    /**
+     * Starts an event as a child of a given span and makes it this thread's current span.
+     * @param name : the event's name.
+     * @param data : the event's initial data.
+     * @param parent : the parent span's name, it may come from other thread or process; {@code null} for a root span.
+     */
+    public void startSpan(String name, String data, String parent) {
+        int[] skippedDepth = skippedSpans.get();
+        EventSampler.Rule rule = sampler.rule(name);
+        if (skippedDepth[0] > 0) {
+            if (rule != null)
+                rule.skip();
+            skippedDepth[0]++;
+            return;
+        }
+        if (rule != null && !rule.sample()) {
+            skippedDepth[0] = 1;
+            return;
+        }
+        Request request = sampled(Request.startEvent(name, data), rule);
+        enqueueRequest(parent == null ? request : request.withParent(parent));
+        spans.get().push(name);
+    }
+
+    /**
+     * Stops this thread's current span, its parent becomes the current span.
+     * @param data : the event's final data.
+     * @throws IllegalStateException if this thread has no current span.
+     */
+    public void stopSpan(String data) {
+        int[] skippedDepth = skippedSpans.get();
+        if (skippedDepth[0] > 0) {
+            skippedDepth[0]--;
+            return;
+        }
+        String name = spans.get().poll();
+        if (name == null)
+            throw new IllegalStateException("There is no span started by this thread");
+        enqueueRequest(Request.stopEvent(name, data));
+    }
+
+    /**
+     * @return the name of this thread's current span, to pass it as a parent to other threads or processes; empty if
+     * the current span was skipped by sampling.
+     */
+    public Optional<String> currentSpan() {
+        if (skippedSpans.get()[0] > 0)
+            return Optional.empty();
+        return Optional.ofNullable(spans.get().peek());
+    }
+
+    /**
+     * Sends several requests to the server in a single call and waits for their responses, this does not go through
+     * the async queue.
+     * @param requests : the requests to send, in order.
+     * @param mode : how failing requests affect the rest of the batch.
+     * @return the response to each request, in the same order as {@code requests}.
+     */
+    public List<Response> sendBatch(List<Request> requests, EventLoggerServer.BatchMode mode) {
+        List<Response> responses;
         try {
-            eventLoggerServer = lookupServer(registry);
-            logger.info("Got server " +  eventLoggerServer);
-        } catch (NotBoundException | ConnectException e) {
-            logger.warning("No server found, will try to start server and retry ...");
-            startServer();
-            try {
-                eventLoggerServer = retryLookup(registry, EventLoggerProperties.connectionRetries(), EventLoggerProperties.reconnectionDelay());
-            } catch (InterruptedException ex) {
-                logger.log(Level.SEVERE, "Error while retrying to connect to server\n", ex);
-                throw new RuntimeException(ex);
+            logger.info("Sending a batch of " + requests.size() + " requests (" + mode + ")");
+            responses = transport.sendBatch(requests.stream().map(this::withClockOffset).collect(Collectors.toList()), mode);
+            logger.info("Got " + responses.size() + " responses");
+        } catch (IOException ioe) {
+            String sStackTrace = stackTrace(ioe);
+            logger.log(Level.SEVERE,"Got IOException\n", ioe );
+            responses = new ArrayList<>(requests.size());
+            for (Request request : requests) {
+                responses.add(Response.error(sStackTrace, request));
             }
         }
-        return eventLoggerServer;
-    }
-
-    private synchronized EventLoggerServer retryLookup(Registry registry, int retries, long delaySeconds) throws RemoteException, InterruptedException {
-        EventLoggerServer eventLoggerServer;
-        int currentRetries = 1;
-        do {
-            try {
-                eventLoggerServer = lookupServer(registry);
-                logger.info("Got server after " +  currentRetries + " retries " +  eventLoggerServer);
-                return eventLoggerServer;
-            } catch (NotBoundException | ConnectException e) {
-                if (retries == currentRetries) {
-                    logger.log(Level.SEVERE,"Error while retrying a server lookup\n", e);
-                    throw new RuntimeException(e);
-                }
-                logger.warning("Server lookup fail, retrying in " + delaySeconds + "s, retries left " + (retries - currentRetries));
-                wait(delaySeconds*1000);
-            }
-        } while (currentRetries++ < retries);
-        throw new IllegalStateException("Could not get a server");
+        return responses;
     }
 
-    private EventLoggerServer lookupServer(Registry registry) throws NotBoundException, RemoteException {
-        return (EventLoggerServer) registry.lookup(EventLoggerServer.name);
+    /**
+     * Queries the information of every event, ordered by timestamp, one page at a time so neither the server nor the
+     * client have to hold every event's information at once.
+     * @param pageSize : the maximum number of events requested on each page.
+     * @param eventInformationConsumer : receives the information of each event, in order.
+     * @return the response to the last page requested, an error response if a page could not be queried.
+     */
+    public Response queryAllEventsInformation(int pageSize, Consumer<String> eventInformationConsumer) {
+        Response response = sendRequest(Request.queryAllEventsInformation(pageSize));
+        while (!response.error()) {
+            response.multipleTextData().forEach(eventInformationConsumer);
+            if (!response.hasContinuationToken())
+                break;
+            response = sendRequest(Request.queryAllEventsInformation(pageSize, response.continuationToken()));
+        }
+        return response;
     }
 
-    private void startServer() {
-        String[] args = getServerArguments();
-        logger.info("Starting server\n" + Arrays.toString(args));
-        ProcessBuilder pb = new ProcessBuilder(args);
-        Path currentDir = Paths.get("");
-        File serverErrorLog = currentDir.resolve("logs/serverError.log").toAbsolutePath().toFile();
-        File serverOutputLog = currentDir.resolve("logs/serverOutput.log").toAbsolutePath().toFile();
-        pb.redirectError(ProcessBuilder.Redirect.appendTo(serverErrorLog));
-        pb.redirectOutput(ProcessBuilder.Redirect.appendTo(serverOutputLog));
+    private Response doSendRequest(Request request) {
+        Request sent = withClockOffset(request);
+        Response response;
         try {
-            pb.start();
-            logger.info("Server started");
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error while trying to start server process\n", e);
-            throw new RuntimeException(e);
+            logger.info(() -> "Sending request\n" + sent.toString());
+            Response received = transport.send(sent);
+            logger.info(() -> "Got response\n" + received.toString());
+            response = received;
+        } catch (IOException ioe) {
+            String sStackTrace = stackTrace(ioe);
+            logger.log(Level.SEVERE,"Got IOException\n", ioe );
+            response = Response.error(sStackTrace, sent);
         }
+        return response;
     }
 
-    private String[] getServerArguments() {
-        String[] properties = EventLoggerProperties.asArgs();
-        String[] args = new String[properties.length + 4];
-        args[0] = "java";
-        args[1] = "-cp";
-        args[2] = System.getProperty("java.class.path");
-        int idx = 3;
-        for (String property : properties) {
-            args[idx++] = property;
-        }
-        args[args.length - 1] = EventLoggerServerImpl.class.getCanonicalName();
-        return args;
+    private CompletableFuture<Response> doSendRequestAsync(Request request) {
+        Request sent = withClockOffset(request);
+        logger.info(() -> "Sending request\n" + sent.toString());
+        return transport.sendAsync(sent).handle((response, failure) -> {
+            if (failure == null) {
+                logger.info(() -> "Got response\n" + response.toString());
+                return response;
+            }
+            logger.log(Level.SEVERE,"Got " + failure.getClass().getSimpleName() + "\n", failure );
+            return Response.error(stackTrace(failure), sent);
+        });
+    }
+
+    /*
+     * Requests starting or stopping events are timestamped as soon as they reach the client, so the time they spend
+     * queued or being sent is not part of the events' durations.
+     */
+    private Request timestamped(Request request) {
+        if (clock == null || request.hasClientTimestamp() || !request.isEventStartStop())
+            return request;
+        return request.withClientTimestamp(System.nanoTime());
+    }
+
+    /*
+     * The offset is added right before sending, using the latest estimate.
+     */
+    private Request withClockOffset(Request request) {
+        if (clock == null || !request.hasClientTimestamp() || request.hasClockOffset() || !clock.isSynchronized())
+            return request;
+        return request.withClockOffset(clock.offsetAt(request.clientTimestamp()));
+    }
+
+    private static String stackTrace(Throwable throwable) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        throwable.printStackTrace(pw);
+        return sw.toString();
     }
 
 }
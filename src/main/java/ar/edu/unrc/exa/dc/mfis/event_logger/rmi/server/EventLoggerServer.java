@@ -5,12 +5,37 @@ import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface EventLoggerServer extends Remote {
 
     String name = "EventLogger.EventLoggerServer";
     String VERSION = "1.0.0";
 
+    /**
+     * How a batch of requests is executed by {@link #executeBatch(List, BatchMode)}.
+     */
+    enum BatchMode {
+        /**
+         * The whole batch is checked before executing any request, if any request would fail then no request is
+         * executed and every response is an error.
+         */
+        ALL_OR_NOTHING,
+        /**
+         * Every request is executed in order, a failing request does not affect the rest.
+         */
+        BEST_EFFORT
+    }
+
     Response executeQuery(Request request) throws RemoteException;
 
+    /**
+     * Executes an ordered list of requests in a single call.
+     * {@link Request.RequestType#STOP_SERVER} requests are not allowed in a batch.
+     * @param requests : the requests to execute, in order.
+     * @param mode : how failing requests affect the rest of the batch.
+     * @return a list with the response to each request, in the same order as {@code requests}.
+     */
+    List<Response> executeBatch(List<Request> requests, BatchMode mode) throws RemoteException;
+
 }
@@ -2,24 +2,34 @@ package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server;
 
 import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
 import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
-import ar.edu.unrc.exa.dc.mfis.event_logger.EventLoggerServerMain;
 import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.journal.EventJournal;
 import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
 import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
 import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.ServerMetrics.ErrorCause;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport.ServerTransport;
+import ar.edu.unrc.exa.dc.mfis.event_logger.sampling.EventSampler;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.net.URL;
-import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
-import java.security.Policy;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -30,54 +40,387 @@ public class EventLoggerServerImpl implements EventLoggerServer{
 
     public static final String VERSION = "1.0.0";
     private final EventLogger eventLogger = EventLogger.instance();
-    private final Registry registry;
+    private final ServerTransport transport;
+    /*
+     * Requests may be executed concurrently (RMI dispatches each call on its own thread) while holding the read lock,
+     * all-or-nothing batches hold the write lock so no other request can modify events between checking and executing
+     * the batch.
+     */
+    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+    /*
+     * Every request that starts or stops an event is appended to the journal after being executed, responses are sent
+     * after syncing the journal (without holding the batch lock). Null if the journal is disabled.
+     */
+    private final EventJournal journal;
+    private final ServerMetrics metrics = new ServerMetrics(eventLogger);
+    /*
+     * Samples starts the client didn't sample already. Skipped events are kept by name until they are stopped, so
+     * stopping them (or starting their children) doesn't fail. A skipped event may never be stopped by name (e.g.: an
+     * abandoned span), so only the latest ones are kept, forgetting the oldest first.
+     */
+    private final EventSampler sampler = EventSampler.fromProperties();
+    private final Set<String> skippedEvents = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+        private static final long serialVersionUID = 1L;
+        private final int maxSkippedEvents = EventLoggerProperties.samplingMaxSkippedEvents();
 
-    public EventLoggerServerImpl(Registry registry) { super(); this.registry = registry; }
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            if (size() <= maxSkippedEvents)
+                return false;
+            metrics.recordForgottenSkippedEvent();
+            return true;
+        }
+    }));
+
+    public EventLoggerServerImpl(ServerTransport transport) { this(transport, null); }
+
+    /**
+     * Creates a server and registers its metrics as a platform MBean (see {@link ServerMetrics#register()}).
+     */
+    public EventLoggerServerImpl(ServerTransport transport, EventJournal journal) {
+        super();
+        this.transport = transport;
+        this.journal = journal;
+        metrics.register();
+    }
+
+    /**
+     * @return the metrics of the requests executed by this server.
+     */
+    public ServerMetrics metrics() {
+        return metrics;
+    }
 
     @Override
     public Response executeQuery(Request request) {
-        logger.info("Received a new request\n" + request.toString());
+        long start = System.nanoTime();
+        logger.info(() -> "Received a new request\n" + request.toString());
+        Response response;
+        batchLock.readLock().lock();
+        try {
+            response = process(request);
+        } finally {
+            batchLock.readLock().unlock();
+        }
+        if (isJournaled(response)) {
+            Optional<String> syncError = syncJournal();
+            if (syncError.isPresent())
+                response = error(ErrorCause.JOURNAL, syncError.get(), request);
+        }
+        metrics.recordRequest(request.requestType(), System.nanoTime() - start);
+        return response;
+    }
+
+    @Override
+    public List<Response> executeBatch(List<Request> requests, BatchMode mode) {
+        long start = System.nanoTime();
+        logger.info("Received a batch of " + requests.size() + " requests (" + mode + ")");
+        boolean allOrNothing = mode.equals(BatchMode.ALL_OR_NOTHING);
+        List<Response> responses;
+        if (allOrNothing)
+            batchLock.writeLock().lock();
+        else
+            batchLock.readLock().lock();
+        try {
+            List<Sampling> samplings = null;
+            if (allOrNothing) {
+                BatchCheck batchCheck = new BatchCheck();
+                Optional<List<Response>> rejection = rejectBatch(requests, batchCheck);
+                if (rejection.isPresent()) {
+                    logger.warning("Batch rejected, sending an ERROR response for each request");
+                    long elapsed = System.nanoTime() - start;
+                    requests.forEach(request -> metrics.recordRequest(request.requestType(), elapsed));
+                    return rejection.get();
+                }
+                samplings = batchCheck.samplings;
+            }
+            responses = executeAll(requests, samplings);
+        } finally {
+            if (allOrNothing)
+                batchLock.writeLock().unlock();
+            else
+                batchLock.readLock().unlock();
+        }
+        if (responses.stream().noneMatch(this::isJournaled))
+            return responses;
+        Optional<String> syncError = syncJournal();
+        if (!syncError.isPresent())
+            return responses;
+        return responses.stream()
+                .map(response -> isJournaled(response) ? error(ErrorCause.JOURNAL, syncError.get(), response.originatingRequest()) : response)
+                .collect(Collectors.toList());
+    }
+
+    private boolean isJournaled(Response response) {
+        return journal != null && !response.error() && response.originatingRequest().isEventStartStop();
+    }
+
+    /**
+     * Waits until the journal has every request executed so far (only if the journal is configured to do so).
+     * @return an error message if the journal can no longer be written.
+     */
+    private Optional<String> syncJournal() {
+        try {
+            journal.sync();
+            return Optional.empty();
+        } catch (IOException journalFailed) {
+            logger.warning("Couldn't sync journal (" + journalFailed.getMessage() + "), sending an ERROR response");
+            return Optional.of("Request executed but it couldn't be written to the journal: " + journalFailed.getMessage());
+        }
+    }
+
+    /**
+     * The time a request was made: its client timestamp mapped onto this server's clock if the client provided the
+     * offset between both clocks, the current time otherwise. Requests are never executed at a future time, so an
+     * overestimated offset can't make an event stop after the request stopping it was answered.
+     */
+    private static long requestTime(Request request) {
+        long now = System.nanoTime();
+        if (request.hasServerTime() && request.serverTime() - now < 0)
+            return request.serverTime();
+        return now;
+    }
+
+    private void journal(Request request, long time) {
+        if (journal != null)
+            journal.append(request, time);
+    }
+
+    /*
+     * How an event start is sampled. It's decided apart from executing the start, so an ALL_OR_NOTHING batch is checked
+     * with the same decisions it's then executed with.
+     */
+    private enum Sampling {
+        NOT_SAMPLED,
+        KEPT_BY_CLIENT,
+        KEPT,
+        SKIPPED,
+        SKIPPED_WITH_PARENT;
+
+        boolean skips() {
+            return this == SKIPPED || this == SKIPPED_WITH_PARENT;
+        }
+    }
+
+    /**
+     * Decides whether an event start is skipped: starts matching a sampling rule are sampled unless the client already
+     * did, children of skipped events are skipped along with them. Nothing is counted until the decision is applied
+     * (see {@link #skip(Request, Sampling)}).
+     * @param parentSkipped : whether the request's parent was skipped.
+     */
+    private Sampling sample(Request request, boolean parentSkipped) {
+        if (parentSkipped)
+            return Sampling.SKIPPED_WITH_PARENT;
+        if (request.isSampled())
+            return Sampling.KEPT_BY_CLIENT;
+        EventSampler.Rule rule = sampler.rule(request.name());
+        if (rule == null)
+            return Sampling.NOT_SAMPLED;
+        return rule.sample() ? Sampling.KEPT : Sampling.SKIPPED;
+    }
+
+    /**
+     * Applies a sampling decision. Kept and skipped events are counted per rule, under {@value #UNMATCHED_PATTERN} when
+     * sampled by the client following a rule this server doesn't have.
+     * @return {@code true} iff the event is not started.
+     */
+    private boolean skip(Request request, Sampling sampling) {
+        if (sampling == Sampling.NOT_SAMPLED)
+            return false;
+        EventSampler.Rule rule = sampler.rule(request.name());
+        String pattern = rule == null ? UNMATCHED_PATTERN : rule.pattern();
+        switch (sampling) {
+            case KEPT_BY_CLIENT:
+                metrics.recordSampling(pattern, true, request.skipped());
+                return false;
+            case KEPT:
+                metrics.recordSampling(pattern, true, 0);
+                return false;
+            case SKIPPED:
+                metrics.recordSampling(pattern, false, rule.takeSkipped());
+                break;
+            default:
+                metrics.recordSampling(pattern, false, 1 + (request.isSampled() ? request.skipped() : 0));
+        }
+        if (request.requestType().equals(Request.RequestType.START_EVENT))
+            skippedEvents.add(request.name());
+        return true;
+    }
+
+    private static final String UNMATCHED_PATTERN = "*";
+
+    private Response error(ErrorCause cause, String message, Request request) {
+        metrics.recordError(cause);
+        return Response.error(message, request);
+    }
+
+    /**
+     * Makes a just started event a child of the request's parent, if any; a new event can't be an ancestor of its parent
+     * nor have a parent already, so linking never fails.
+     */
+    private void linkToParent(Request request) {
+        if (request.hasParent()) {
+            eventLogger.linkToParent(request.name(), request.parent());
+            logger.info("Event (" + request.name() + ") is a child of (" + request.parent() + ")");
+        }
+    }
+
+    /**
+     * @param samplings : the sampling decision of each request, made while checking the batch; {@code null} to decide
+     * each one as it's executed.
+     */
+    private List<Response> executeAll(List<Request> requests, List<Sampling> samplings) {
+        List<Response> responses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Request request = requests.get(i);
+            long start = System.nanoTime();
+            if (request.requestType().equals(Request.RequestType.STOP_SERVER)) {
+                logger.warning("Stop server request found in batch, sending an ERROR response");
+                responses.add(error(ErrorCause.INVALID_REQUEST, STOP_SERVER_IN_BATCH, request));
+            } else {
+                responses.add(process(request, samplings == null ? null : samplings.get(i)));
+            }
+            metrics.recordRequest(request.requestType(), System.nanoTime() - start);
+        }
+        return responses;
+    }
+
+    private Response process(Request request) {
+        return process(request, null);
+    }
+
+    /**
+     * @param sampling : the sampling decision for an event start, {@code null} to decide it now.
+     */
+    private Response process(Request request, Sampling sampling) {
         try {
             switch (request.requestType()) {
                 case START_MAIN_EVENT: {
                     if (eventLogger.getMainEvent().isPresent()) {
                         logger.warning("Main event already exists, sending an ERROR response");
-                        return Response.error("Main event already exists", request);
+                        return error(ErrorCause.CONFLICT, "Main event already exists", request);
                     }
-                    if (request.hasName()) {
-                        logger.info("Started main event with name " + request.name());
-                        eventLogger.startNamedMainEvent(request.name(), request.initialData());
-                    } else {
-                        logger.info("Started main event with default name " + EventLoggerProperties.defaultMainEventName());
-                        eventLogger.startMainEvent(request.initialData());
+                    long time = requestTime(request);
+                    int handle;
+                    try {
+                        if (request.hasName()) {
+                            handle = eventLogger.startNamedMainEventWithPayload(request.name(), request.initialPayload(), time, EventLogger.NO_HANDLE);
+                            logger.info("Started main event with name " + request.name());
+                        } else {
+                            handle = eventLogger.startNamedMainEventWithPayload(null, request.initialPayload(), time, EventLogger.NO_HANDLE);
+                            logger.info("Started main event with default name " + EventLoggerProperties.defaultMainEventName());
+                        }
+                    } catch (IllegalStateException alreadyExists) {
+                        logger.warning(alreadyExists.getMessage() + ", sending an ERROR response");
+                        return error(ErrorCause.CONFLICT, alreadyExists.getMessage(), request);
                     }
+                    journal(request.withHandle(handle), time);
                     logger.info("Sending response (OK)");
-                    return Response.eventStartedStopped(request);
+                    return Response.eventStarted(handle, request);
                 }
                 case START_EVENT:
                 case START_INSTANT_EVENT: {
                     if (!request.hasName()) {
                         logger.warning("No name provided for new event, sending an ERROR response");
-                        return Response.error("No name provided for new event", request);
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided for new event", request);
                     }
-                    if (eventLogger.getEvent(request.name()).isPresent()) {
-                        logger.warning("Event already exists (" + request.name() + "), sending an ERROR response");
-                        return Response.error("Event already exists", request);
+                    if (sampling == null)
+                        sampling = sample(request, request.hasParent() && skippedEvents.contains(request.parent()));
+                    if (skip(request, sampling)) {
+                        logger.info(() -> "Skipped event (" + request.name() + ") by sampling");
+                        return Response.eventStartedStopped(request);
                     }
-                    if (request.requestType().equals(Request.RequestType.START_INSTANT_EVENT)) {
-                        logger.info("Started instant event (" + request.name() + ")");
-                        eventLogger.startInstantEvent(request.name(), request.initialData(), request.finalData(), request.calculateDifference());
-                    } else {
-                        logger.info("Started event (" + request.name() + ")");
-                        eventLogger.startEvent(request.name(), request.initialData());
+                    if (request.hasParent() && !eventLogger.getEvent(request.parent()).isPresent()) {
+                        logger.warning("No event exists with provided parent name (" + request.parent() + "), sending an ERROR response");
+                        return error(ErrorCause.NOT_FOUND, "No corresponding event to provided parent", request);
+                    }
+                    long time = requestTime(request);
+                    int handle;
+                    try {
+                        if (request.requestType().equals(Request.RequestType.START_INSTANT_EVENT)) {
+                            handle = eventLogger.startInstantEventWithPayload(request.name(), request.initialPayload(), request.finalPayload(), request.calculateDifference(), time, EventLogger.NO_HANDLE);
+                            logger.info("Started instant event (" + request.name() + ")");
+                        } else {
+                            handle = eventLogger.startEventWithPayload(request.name(), request.initialPayload(), time, EventLogger.NO_HANDLE);
+                            logger.info("Started event (" + request.name() + ")");
+                        }
+                    } catch (IllegalStateException alreadyExists) {
+                        logger.warning("Event already exists (" + request.name() + "), sending an ERROR response");
+                        return error(ErrorCause.CONFLICT, "Event already exists", request);
                     }
+                    linkToParent(request);
+                    journal(request.withHandle(handle), time);
                     logger.info("Sending response (OK)");
+                    return Response.eventStarted(handle, request);
+                }
+                case START_RECURRING_EVENT: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided for recurring event, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided for recurring event", request);
+                    }
+                    if (request.hasParent() && !eventLogger.getEvent(request.parent()).isPresent()) {
+                        logger.warning("No event exists with provided parent name (" + request.parent() + "), sending an ERROR response");
+                        return error(ErrorCause.NOT_FOUND, "No corresponding event to provided parent", request);
+                    }
+                    long time = requestTime(request);
+                    int handle;
+                    try {
+                        handle = eventLogger.startRecurringEventWithPayload(request.name(), request.initialPayload(), time, EventLogger.NO_HANDLE);
+                    } catch (IllegalStateException cannotStart) {
+                        logger.warning(cannotStart.getMessage() + ", sending an ERROR response");
+                        return error(ErrorCause.CONFLICT, cannotStart.getMessage(), request);
+                    }
+                    if (handle == EventLogger.NO_HANDLE) {
+                        journal(request, time);
+                        logger.info("Started a new cycle of recurring event (" + request.name() + ")");
+                        return Response.eventStartedStopped(request);
+                    }
+                    linkToParent(request);
+                    journal(request.withHandle(handle), time);
+                    logger.info("Started recurring event (" + request.name() + ")");
+                    return Response.eventStarted(handle, request);
+                }
+                case QUERY_EVENT_STATISTICS: {
+                    Optional<Event> event = request.hasHandle() ? eventLogger.getEvent(request.handle()) : request.hasName() ? eventLogger.getEvent(request.name()) : Optional.empty();
+                    if (!event.isPresent()) {
+                        logger.warning("No event exists with provided name or handle, sending an ERROR response");
+                        return error(ErrorCause.NOT_FOUND, "No corresponding event to provided name or handle", request);
+                    }
+                    if (!event.get().isRecurring()) {
+                        logger.warning("Event (" + event.get().name() + ") is not recurring, sending an ERROR response");
+                        return error(ErrorCause.CONFLICT, "Event " + event.get().name() + " is not a recurring event", request);
+                    }
+                    logger.info("Sending statistics of recurring event (" + event.get().name() + ")");
+                    return Response.eventStatistics(event.get().statistics().get().toString(), request);
+                }
+                case SYNC_CLOCK: {
+                    return Response.clockSync(System.nanoTime(), request);
+                }
+                case QUERY_METRICS: {
+                    return Response.metrics(metrics.toString(), request);
+                }
+                case REPORT_SKIPPED: {
+                    EventSampler.Rule rule = sampler.ruleWithPattern(request.name());
+                    metrics.recordSampling(rule == null ? UNMATCHED_PATTERN : rule.pattern(), false, request.skipped());
                     return Response.eventStartedStopped(request);
                 }
+                case QUERY_SPAN_TREE: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided for span tree query, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided for span tree query", request);
+                    }
+                    Optional<EventLogger.SpanTree> spanTree = eventLogger.getSpanTree(request.name());
+                    if (!spanTree.isPresent()) {
+                        logger.warning("No event exists with provided name (" + request.name() + "), sending an ERROR response");
+                        return error(ErrorCause.NOT_FOUND, "No corresponding event to provided name", request);
+                    }
+                    logger.info("Sending span tree of event (" + request.name() + ")");
+                    return Response.spanTree(spanTree.get().toString(), request);
+                }
                 case CHECK_EVENT_NAME: {
                     if (!request.hasName()) {
                         logger.warning("No name provided to check if event exists, sending an ERROR response");
-                        return Response.error("No name provided for event name check", request);
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided for event name check", request);
                     }
                     logger.info("Responding to event check (" + request.name() + ")");
                     return Response.eventNameCheck(eventLogger.getEvent(request.name()).isPresent(), request);
@@ -93,26 +436,47 @@ public class EventLoggerServerImpl implements EventLoggerServer{
                     Optional<Event> mainEvent = eventLogger.getMainEvent();
                     if (!mainEvent.isPresent()) {
                         logger.warning("No main event present, sending an ERROR response");
-                        return Response.error("No main event present", request);
+                        return error(ErrorCause.NOT_FOUND, "No main event present", request);
                     }
                     return stopEvent(mainEvent.get(), request);
                 }
                 case STOP_EVENT: {
+                    if (request.hasHandle()) {
+                        Optional<Event> event = eventLogger.getEvent(request.handle());
+                        if (!event.isPresent()) {
+                            logger.warning("No corresponding event with provided handle (" + request.handle() + ")");
+                            return error(ErrorCause.NOT_FOUND, "No corresponding event to provided handle", request);
+                        }
+                        return stopEvent(event.get(), request);
+                    }
                     if (!request.hasName()) {
                         logger.warning("No name provided to stop event, sending an ERROR response");
-                        return Response.error("No name provided to stop event", request);
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided to stop event", request);
                     }
                     Optional<Event> event = eventLogger.getEvent(request.name());
+                    if (!event.isPresent() && skippedEvents.remove(request.name())) {
+                        logger.info(() -> "Stopped event (" + request.name() + ") skipped by sampling");
+                        return Response.eventStartedStopped(request);
+                    }
                     if (!event.isPresent()) {
                         logger.warning("No corresponding event with provided name (" + request.name() + ")");
-                        return Response.error("No corresponding event to provided name", request);
+                        return error(ErrorCause.NOT_FOUND, "No corresponding event to provided name", request);
                     }
                     return stopEvent(event.get(), request);
                 }
                 case QUERY_EVENT_INFO: {
+                    if (request.hasHandle()) {
+                        Optional<Event> event = eventLogger.getEvent(request.handle());
+                        if (!event.isPresent()) {
+                            logger.warning("No event exists with provided handle (" + request.handle() + "), sending an ERROR response");
+                            return error(ErrorCause.NOT_FOUND, "No corresponding event to provided handle", request);
+                        }
+                        logger.info("Sending information about event (" + event.get().name() + ")");
+                        return Response.eventQuery(event.get().toString(), request);
+                    }
                     if (!request.hasName()) {
                         logger.warning("No name provided to query event's information, sending an ERROR response");
-                        return Response.error("No name provided to query event's information", request);
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided to query event's information", request);
                     }
                     Optional<Event> event = eventLogger.getEvent(request.name());
                     if (event.isPresent()) {
@@ -122,21 +486,110 @@ public class EventLoggerServerImpl implements EventLoggerServer{
                     }
                     return event.map(
                             value -> Response.eventQuery(value.toString(), request)
-                    ).orElseGet(() -> Response.error("No corresponding event to provided name", request));
+                    ).orElseGet(() -> error(ErrorCause.NOT_FOUND, "No corresponding event to provided name", request));
                 }
                 case QUERY_ALL_EVENTS_INFO: {
+                    if (request.isPaged()) {
+                        EventLogger.EventsPage page;
+                        try {
+                            page = eventLogger.getEventsPage(request.pageToken(), request.pageSize());
+                        } catch (IllegalArgumentException invalidToken) {
+                            logger.warning(invalidToken.getMessage() + ", sending an ERROR response");
+                            return error(ErrorCause.INVALID_REQUEST, invalidToken.getMessage(), request);
+                        }
+                        logger.info("Sending a page of " + page.events().size() + " events information");
+                        return Response.eventsQuery(
+                                page.events().stream().map(Event::toString).collect(Collectors.toList()),
+                                page.continuationToken().orElse(null),
+                                request
+                        );
+                    }
                     logger.info("Sending all events information");
                     return Response.eventsQuery(
                             eventLogger.getEvents().stream().map(Event::toString).collect(Collectors.toList()),
                             request
                     );
                 }
+                case QUERY_EVENTS_IN_RANGE: {
+                    List<Event> events;
+                    try {
+                        events = eventLogger.getEventsInRange(request.windowStart(), request.windowEnd());
+                    } catch (IllegalArgumentException invalidWindow) {
+                        logger.warning(invalidWindow.getMessage() + ", sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, invalidWindow.getMessage(), request);
+                    }
+                    logger.info("Sending information about " + events.size() + " events in the requested time window");
+                    return Response.eventsQuery(
+                            events.stream().map(Event::toString).collect(Collectors.toList()),
+                            request
+                    );
+                }
+                case LIST_EVENT_NAMES_UNDER: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided to list the events under it, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided to list the events under it", request);
+                    }
+                    logger.info("Sending the names of the events under (" + request.name() + ")");
+                    return Response.eventNames(
+                            eventLogger.getEventsUnder(request.name()).stream().map(Event::name).collect(Collectors.toList()),
+                            request
+                    );
+                }
+                case QUERY_EVENTS_INFO_UNDER: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided to query the events under it, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided to query the events under it", request);
+                    }
+                    logger.info("Sending information about the events under (" + request.name() + ")");
+                    return Response.eventsQuery(
+                            eventLogger.getEventsUnder(request.name()).stream().map(Event::toString).collect(Collectors.toList()),
+                            request
+                    );
+                }
+                case QUERY_SUMMARY_UNDER: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided to summarize the events under it, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided to summarize the events under it", request);
+                    }
+                    logger.info("Sending the totals of the events under (" + request.name() + ")");
+                    return Response.eventsSummary(eventLogger.summarizeEventsUnder(request.name()).toString(), request);
+                }
+                case IMPORT_EVENT: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided for imported event, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided for imported event", request);
+                    }
+                    if (request.hasParent() && !eventLogger.getEvent(request.parent()).isPresent()) {
+                        logger.warning("No event exists with provided parent name (" + request.parent() + "), sending an ERROR response");
+                        return error(ErrorCause.NOT_FOUND, "No corresponding event to provided parent", request);
+                    }
+                    int handle;
+                    try {
+                        handle = eventLogger.importEventWithPayload(request.name(), request.initialPayload(), request.finalPayload(), request.calculateDifference(), request.windowStart(), request.windowEnd(), EventLogger.NO_HANDLE);
+                    } catch (IllegalStateException | IllegalArgumentException cannotImport) {
+                        logger.warning(cannotImport.getMessage() + ", sending an ERROR response");
+                        return error(cannotImport instanceof IllegalArgumentException ? ErrorCause.INVALID_REQUEST : ErrorCause.CONFLICT, cannotImport.getMessage(), request);
+                    }
+                    linkToParent(request);
+                    journal(request.withHandle(handle), System.nanoTime());
+                    logger.info("Imported event (" + request.name() + ")");
+                    return Response.eventStarted(handle, request);
+                }
+                case STOP_EVENTS_UNDER: {
+                    if (!request.hasName()) {
+                        logger.warning("No name provided to stop the events under it, sending an ERROR response");
+                        return error(ErrorCause.INVALID_REQUEST, "No name provided to stop the events under it", request);
+                    }
+                    skippedEvents.removeIf(name -> name.equals(request.name()) || name.startsWith(request.name() + EventLogger.NAME_SEPARATOR));
+                    return stopEventsUnder(request);
+                }
                 case STOP_SERVER: {
-                    if (!UnicastRemoteObject.unexportObject(this, true)) {
-                        logger.warning("Couldn't un-export server, sending an ERROR response");
-                        return Response.error("Couldn't un-export server, maybe try again?", request);
+                    try {
+                        transport.stop();
+                    } catch (IOException stopFailed) {
+                        logger.warning("Couldn't stop transport (" + stopFailed.getMessage() + "), sending an ERROR response");
+                        return error(ErrorCause.INTERNAL, stopFailed.getMessage(), request);
                     }
-                    registry.unbind(EventLoggerServer.name);
                     delayedShutdown();
                     logger.info("Server stopped, sending last response");
                     return Response.stopServer(request);
@@ -148,10 +601,277 @@ public class EventLoggerServerImpl implements EventLoggerServer{
             exc.printStackTrace(pw);
             String sStackTrace = sw.toString();
             logger.warning("An error occurred while shutting down the server, sending an ERROR response\n" + sStackTrace);
-            return Response.error(sStackTrace, request);
+            return error(ErrorCause.INTERNAL, sStackTrace, request);
         }
         logger.warning("Unknown request, sending an ERROR response");
-        return Response.error("Unknown request", request);
+        return error(ErrorCause.INVALID_REQUEST, "Unknown request", request);
+    }
+
+    private static final String STOP_SERVER_IN_BATCH = "Stopping the server is not allowed in a batch";
+
+    /**
+     * Checks a whole batch against the current events without modifying them.
+     * @return an error response for each request if any request in the batch would fail, an empty value otherwise.
+     */
+    private Optional<List<Response>> rejectBatch(List<Request> requests, BatchCheck batchCheck) {
+        for (int i = 0; i < requests.size(); i++) {
+            Optional<String> error = batchCheck.check(requests.get(i));
+            if (error.isPresent()) {
+                List<Response> responses = new ArrayList<>(requests.size());
+                for (int j = 0; j < requests.size(); j++) {
+                    String message = i == j ? error.get() : "Batch aborted, request " + i + " would fail: " + error.get();
+                    responses.add(error(ErrorCause.BATCH_ABORTED, message, requests.get(j)));
+                }
+                return Optional.of(responses);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Simulates a batch of requests, keeping track of the events that would be started or stopped by previous requests
+     * of the same batch. Event starts are sampled while checking them, and executed with the same decision, so a start
+     * skipped by sampling is known not to create its event. A batch that is then rejected still moves its rules along,
+     * as if its starts were sampled out.
+     */
+    private class BatchCheck {
+
+        private final Map<String, Boolean> running = new HashMap<>();
+        private final Set<String> recurring = new HashSet<>();
+        private final Set<String> skipped = new HashSet<>();
+        private final List<Sampling> samplings = new ArrayList<>();
+        // prefixes stopped by STOP_EVENTS_UNDER, which forgets the skipped events under them
+        private final List<String> stoppedPrefixes = new ArrayList<>();
+        private String mainEventName = eventLogger.getMainEvent().map(Event::name).orElse(null);
+
+        private Optional<Boolean> isRunning(String name) {
+            if (running.containsKey(name))
+                return Optional.of(running.get(name));
+            if (skippedEvents.contains(name) && !eventLogger.getEvent(name).isPresent() && !isForgotten(name))
+                return Optional.of(true);
+            return eventLogger.getEvent(name).map(Event::isRunning);
+        }
+
+        private Optional<String> check(Request request, Sampling sampling) {
+            switch (request.requestType()) {
+                case START_MAIN_EVENT: {
+                    if (mainEventName != null)
+                        return Optional.of("Main event already exists");
+                    String name = request.hasName() ? request.name() : EventLoggerProperties.defaultMainEventName();
+                    if (isRunning(name).isPresent())
+                        return Optional.of("Event already exists");
+                    mainEventName = name;
+                    running.put(name, true);
+                    return Optional.empty();
+                }
+                case START_EVENT:
+                case START_INSTANT_EVENT: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided for new event");
+                    if (isRunning(request.name()).isPresent())
+                        return Optional.of("Event already exists");
+                    boolean startEvent = request.requestType().equals(Request.RequestType.START_EVENT);
+                    if (sampling.skips()) {
+                        // a skipped event can be stopped by name, a skipped instant event leaves nothing behind
+                        if (startEvent) {
+                            skipped.add(request.name());
+                            running.put(request.name(), true);
+                        }
+                        return Optional.empty();
+                    }
+                    if (request.hasParent() && !exists(request.parent()))
+                        return Optional.of("No corresponding event to provided parent");
+                    running.put(request.name(), startEvent);
+                    return Optional.empty();
+                }
+                case START_RECURRING_EVENT: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided for recurring event");
+                    if (request.hasParent() && !exists(request.parent()))
+                        return Optional.of("No corresponding event to provided parent");
+                    Optional<Boolean> eventRunning = isRunning(request.name());
+                    if (eventRunning.isPresent()) {
+                        if (!isRecurring(request.name()))
+                            return Optional.of("There is already an event with name " + request.name());
+                        if (eventRunning.get())
+                            return Optional.of("Event " + request.name() + " is already running");
+                    } else {
+                        recurring.add(request.name());
+                    }
+                    running.put(request.name(), true);
+                    return Optional.empty();
+                }
+                case STOP_MAIN_EVENT: {
+                    if (mainEventName == null)
+                        return Optional.of("No main event present");
+                    return checkStop(mainEventName);
+                }
+                case STOP_EVENT: {
+                    if (request.hasHandle()) {
+                        Optional<Event> event = eventLogger.getEvent(request.handle());
+                        if (!event.isPresent())
+                            return Optional.of("No corresponding event to provided handle");
+                        return checkStop(event.get().name());
+                    }
+                    if (!request.hasName())
+                        return Optional.of("No name provided to stop event");
+                    return checkStop(request.name());
+                }
+                case CHECK_EVENT_NAME: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided for event name check");
+                    return Optional.empty();
+                }
+                case QUERY_EVENT_STATISTICS: {
+                    String name;
+                    if (request.hasHandle()) {
+                        Optional<Event> event = eventLogger.getEvent(request.handle());
+                        if (!event.isPresent())
+                            return Optional.of("No corresponding event to provided name or handle");
+                        name = event.get().name();
+                    } else if (request.hasName() && exists(request.name())) {
+                        name = request.name();
+                    } else {
+                        return Optional.of("No corresponding event to provided name or handle");
+                    }
+                    if (!isRecurring(name))
+                        return Optional.of("Event " + name + " is not a recurring event");
+                    return Optional.empty();
+                }
+                case QUERY_SPAN_TREE: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided for span tree query");
+                    if (!exists(request.name()))
+                        return Optional.of("No corresponding event to provided name");
+                    return Optional.empty();
+                }
+                case QUERY_EVENT_INFO: {
+                    if (request.hasHandle()) {
+                        if (!eventLogger.getEvent(request.handle()).isPresent())
+                            return Optional.of("No corresponding event to provided handle");
+                        return Optional.empty();
+                    }
+                    if (!request.hasName())
+                        return Optional.of("No name provided to query event's information");
+                    if (!exists(request.name()))
+                        return Optional.of("No corresponding event to provided name");
+                    return Optional.empty();
+                }
+                case QUERY_ALL_EVENTS_INFO: {
+                    if (request.hasPageToken()) {
+                        try {
+                            eventLogger.getEventsPage(request.pageToken(), 1);
+                        } catch (IllegalArgumentException invalidToken) {
+                            return Optional.of(invalidToken.getMessage());
+                        }
+                    }
+                    return Optional.empty();
+                }
+                case QUERY_EVENTS_IN_RANGE: {
+                    if (request.windowStart() > request.windowEnd())
+                        return Optional.of("Invalid time window, it starts after it ends");
+                    return Optional.empty();
+                }
+                case LIST_EVENT_NAMES_UNDER:
+                case QUERY_EVENTS_INFO_UNDER:
+                case QUERY_SUMMARY_UNDER: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided for the events under it");
+                    return Optional.empty();
+                }
+                case IMPORT_EVENT: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided for imported event");
+                    if (request.hasParent() && !exists(request.parent()))
+                        return Optional.of("No corresponding event to provided parent");
+                    if (isRunning(request.name()).isPresent())
+                        return Optional.of("There is already an event with name " + request.name());
+                    if (request.windowEnd() < request.windowStart())
+                        return Optional.of("Event " + request.name() + " stops before it starts");
+                    running.put(request.name(), request.windowEnd() == EventLogger.STILL_RUNNING);
+                    return Optional.empty();
+                }
+                case STOP_EVENTS_UNDER: {
+                    if (!request.hasName())
+                        return Optional.of("No name provided to stop the events under it");
+                    return checkStopUnder(request.name());
+                }
+                case STOP_SERVER:
+                    return Optional.of(STOP_SERVER_IN_BATCH);
+                default:
+                    return Optional.empty();
+            }
+        }
+
+        /*
+         * Unlike isRunning, events skipped by sampling don't exist, queries about them (or children of them that aren't
+         * skipped along) fail.
+         */
+        private boolean exists(String name) {
+            return (running.containsKey(name) && !skipped.contains(name)) || eventLogger.getEvent(name).isPresent();
+        }
+
+        private Optional<String> check(Request request) {
+            Sampling sampling = null;
+            if (request.hasName() && (request.requestType().equals(Request.RequestType.START_EVENT) || request.requestType().equals(Request.RequestType.START_INSTANT_EVENT))
+                    && !isRunning(request.name()).isPresent()) {
+                boolean parentSkipped = request.hasParent() && (skipped.contains(request.parent()) || (skippedEvents.contains(request.parent()) && !isForgotten(request.parent())));
+                sampling = sample(request, parentSkipped);
+            }
+            samplings.add(sampling);
+            return check(request, sampling);
+        }
+
+        private boolean isForgotten(String name) {
+            for (String prefix : stoppedPrefixes) {
+                if (name.equals(prefix) || name.startsWith(prefix + EventLogger.NAME_SEPARATOR))
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean isRecurring(String name) {
+            return recurring.contains(name) || eventLogger.getEvent(name).map(Event::isRecurring).orElse(false);
+        }
+
+        private Optional<String> checkStop(String name) {
+            Optional<Boolean> eventRunning = isRunning(name);
+            if (!eventRunning.isPresent())
+                return Optional.of("No corresponding event to provided name");
+            if (!eventRunning.get())
+                return Optional.of("Event " + name + " is not running");
+            running.put(name, false);
+            return Optional.empty();
+        }
+
+        /*
+         * Stopping the events under a name only fails if there are none, events started by previous requests of the
+         * batch are also stopped.
+         */
+        private Optional<String> checkStopUnder(String prefix) {
+            String descendantsPrefix = prefix + EventLogger.NAME_SEPARATOR;
+            boolean found = false;
+            for (Event event : eventLogger.getEventsUnder(prefix)) {
+                found = true;
+                running.put(event.name(), false);
+            }
+            for (Iterator<Map.Entry<String, Boolean>> iterator = running.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, Boolean> event = iterator.next();
+                if (!event.getKey().equals(prefix) && !event.getKey().startsWith(descendantsPrefix))
+                    continue;
+                if (skipped.remove(event.getKey())) {
+                    iterator.remove();
+                } else {
+                    found = true;
+                    event.setValue(false);
+                }
+            }
+            stoppedPrefixes.add(prefix);
+            if (!found)
+                return Optional.of("No events under provided name");
+            return Optional.empty();
+        }
+
     }
 
     private void delayedShutdown() {
@@ -164,41 +884,62 @@ public class EventLoggerServerImpl implements EventLoggerServer{
         scheduler.schedule(task, 5, TimeUnit.SECONDS);
     }
 
-    private Response stopEvent(Event event, Request request) {
-        if (!event.hasBeenStarted()) {
-            logger.warning("Trying to stop an event ( " + request.name() + " ) that has not yet started, sending an ERROR response");
-            return Response.error("Event " + event.name() + " has not been started yet", request);
+    /*
+     * Stops every running event under the request's name at the same time, each stopped event is journaled as a
+     * separate request stopping it.
+     */
+    private Response stopEventsUnder(Request request) {
+        List<Event> events = eventLogger.getEventsUnder(request.name());
+        if (events.isEmpty()) {
+            logger.warning("No events under provided name (" + request.name() + "), sending an ERROR response");
+            return error(ErrorCause.NOT_FOUND, "No events under provided name", request);
         }
-        if (!event.isRunning()) {
-            logger.warning("Trying to stop an event ( " +  request.name() + " ) that has already been stopped, sending an ERROR response");
-            return Response.error("Event " + event.name() + " is already stopped", request);
+        long time = requestTime(request);
+        List<String> stopped = new ArrayList<>();
+        for (Event event : events) {
+            if (!event.isRunning())
+                continue;
+            try {
+                event.stopEventWithPayload(request.initialPayload(), request.calculateDifference(), time);
+            } catch (IllegalStateException alreadyStopped) {
+                continue;
+            }
+            journal(request.asStopEvent(event.name()), time);
+            stopped.add(event.name());
         }
-        event.stopEvent(request.initialData(), request.calculateDifference());
-        logger.info("Event (" + request.name() + ") has been successfully stopped");
-        return Response.eventStartedStopped(request);
+        logger.info(stopped.size() + " events under (" + request.name() + ") have been successfully stopped");
+        return Response.eventsStopped(stopped, request);
     }
 
-    public static void main(String[] args) {
-        if (EventLoggerProperties.securityManagerEnabled()) {
-            if (System.getSecurityManager() == null) {
-                URL policyPath = EventLoggerServerMain.class.getClassLoader().getResource(EventLoggerProperties.serverPolicy());
-                if (policyPath == null) {
-                    logger.severe("No policy could be found at " + EventLoggerProperties.serverPolicy());
-                    throw new RuntimeException("No policy could be found at " + EventLoggerProperties.serverPolicy());
-                }
-                System.setProperty("java.security.policy", policyPath.toString());
-                Policy.getPolicy().refresh();
-                System.setSecurityManager(new SecurityManager());
+    private Response stopEvent(Event event, Request request) {
+        long time = requestTime(request);
+        try {
+            event.stopEventWithPayload(request.initialPayload(), request.calculateDifference(), time);
+        } catch (IllegalStateException notRunning) {
+            if (!event.hasBeenStarted()) {
+                logger.warning("Trying to stop an event ( " + event.name() + " ) that has not yet started, sending an ERROR response");
+                return error(ErrorCause.CONFLICT, "Event " + event.name() + " has not been started yet", request);
             }
+            logger.warning("Trying to stop an event ( " + event.name() + " ) that has already been stopped, sending an ERROR response");
+            return error(ErrorCause.CONFLICT, "Event " + event.name() + " is already stopped", request);
         }
-        logger.info("Starting server");
+        // the journal only identifies events by name
+        journal(request.hasHandle() ? request.asStopEvent(event.name()) : request, time);
+        logger.info("Event (" + event.name() + ") has been successfully stopped");
+        return Response.eventStartedStopped(request);
+    }
+
+    public static void main(String[] args) {
+        logger.info("Starting server (" + EventLoggerProperties.transport() + " transport)");
         try {
-            String name = EventLoggerServer.name;
-            Registry registry = java.rmi.registry.LocateRegistry.createRegistry(EventLoggerProperties.registryPort());
-            EventLoggerServer engine = new EventLoggerServerImpl(registry);
-            EventLoggerServer stub = (EventLoggerServer) UnicastRemoteObject.exportObject(engine, EventLoggerProperties.port());
-            registry.rebind(name, stub);
-            logger.info("EventLoggerServer started and bound\nGot server handle: " + stub);
+            EventJournal journal = null;
+            if (EventLoggerProperties.journalEnabled()) {
+                journal = EventJournal.open();
+                journal.replay(EventLogger.instance());
+                Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "EventLoggerServer-journal-close"));
+            }
+            ServerTransport transport = ServerTransport.create(EventLoggerProperties.transport());
+            transport.start(new EventLoggerServerImpl(transport, journal));
         } catch (Exception e) {
             logger.log(Level.SEVERE,"An error occurred while starting server", e);
         }
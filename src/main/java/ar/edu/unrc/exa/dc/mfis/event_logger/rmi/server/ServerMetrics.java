@@ -0,0 +1,313 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.text_diff.TextDiffUtils;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.LatencyHistogram;
+
+import org.json.simple.JSONObject;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Logger;
+
+/**
+ * Counters and latency histograms of the requests executed by a server, along with the size of the events it holds,
+ * the time spent calculating differences, the events kept and skipped by each sampling rule (and the skipped events
+ * forgotten) and the runtime logging records dropped.
+ * <p>
+ * Recording a request or an error is a few uncontended increments and never blocks. The event count is read from the
+ * {@link EventLogger} and the payload held is summed over every event, both only when the metrics are read. Metrics
+ * are read through JMX ({@link #register()}) or with a {@link Request.RequestType#QUERY_METRICS} request.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    /**
+     * Why a request was answered with an error.
+     */
+    public enum ErrorCause {
+        /**
+         * The request lacks a required value or has an invalid one.
+         */
+        INVALID_REQUEST,
+        /**
+         * There is no event with the given name, handle or parent.
+         */
+        NOT_FOUND,
+        /**
+         * The event's current state doesn't allow the request (e.g.: it already exists or is already stopped).
+         */
+        CONFLICT,
+        /**
+         * The request was part of an all-or-nothing batch with a request that would fail.
+         */
+        BATCH_ABORTED,
+        /**
+         * The request was executed but couldn't be written to the journal.
+         */
+        JOURNAL,
+        /**
+         * An unexpected failure while executing the request.
+         */
+        INTERNAL
+    }
+
+    public static final String OBJECT_NAME = "ar.edu.unrc.exa.dc.mfis.event_logger:type=ServerMetrics";
+
+    private static final Logger logger = LocalLogging.getLogger(ServerMetrics.class);
+    private static final Request.RequestType[] REQUEST_TYPES = Request.RequestType.values();
+    private static final ErrorCause[] ERROR_CAUSES = ErrorCause.values();
+
+    private final EventLogger eventLogger;
+    private final LongAdder[] requests = new LongAdder[REQUEST_TYPES.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[REQUEST_TYPES.length];
+    private final LongAdder[] errors = new LongAdder[ERROR_CAUSES.length];
+    /*
+     * Events kept and skipped, keyed by the pattern of the sampling rule they matched.
+     */
+    private final Map<String, LongAdder> sampledEvents = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> skippedEvents = new ConcurrentHashMap<>();
+    private final LongAdder forgottenSkippedEvents = new LongAdder();
+
+    public ServerMetrics(EventLogger eventLogger) {
+        this.eventLogger = eventLogger;
+        for (int i = 0; i < REQUEST_TYPES.length; i++) {
+            requests[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < ERROR_CAUSES.length; i++)
+            errors[i] = new LongAdder();
+    }
+
+    /**
+     * Registers these metrics on the platform MBean server, only the metrics of one server per process can be
+     * registered.
+     * @return {@code true} if the metrics were registered.
+     */
+    public boolean register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException alreadyRegistered) {
+            logger.warning("Metrics of another server are already registered (" + OBJECT_NAME + ")");
+        } catch (JMException registrationFailed) {
+            logger.warning("Couldn't register server metrics (" + registrationFailed + ")");
+        }
+        return false;
+    }
+
+    /**
+     * @param nanoseconds : the time it took to execute the request.
+     */
+    void recordRequest(Request.RequestType requestType, long nanoseconds) {
+        requests[requestType.ordinal()].increment();
+        latencies[requestType.ordinal()].record(nanoseconds);
+    }
+
+    void recordError(ErrorCause cause) {
+        errors[cause.ordinal()].increment();
+    }
+
+    /**
+     * @param pattern : the pattern of the sampling rule the event matched.
+     * @param kept : {@code true} if the event was recorded.
+     * @param skipped : how many events matching the rule were skipped, by the client or by this server.
+     */
+    void recordSampling(String pattern, boolean kept, long skipped) {
+        if (kept)
+            sampledEvents.computeIfAbsent(pattern, key -> new LongAdder()).increment();
+        if (skipped > 0)
+            skippedEvents.computeIfAbsent(pattern, key -> new LongAdder()).add(skipped);
+    }
+
+    /**
+     * Counts a skipped event the server no longer remembers, so stopping it by name fails.
+     */
+    void recordForgottenSkippedEvent() {
+        forgottenSkippedEvents.increment();
+    }
+
+    @Override
+    public long getRequestCount() {
+        long count = 0;
+        for (LongAdder adder : requests)
+            count += adder.sum();
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Request.RequestType requestType : REQUEST_TYPES) {
+            long count = requests[requestType.ordinal()].sum();
+            if (count > 0)
+                counts.put(requestType.toString(), count);
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP50() {
+        return latencies(histogram -> micros(histogram.percentile(0.5)));
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP99() {
+        return latencies(histogram -> micros(histogram.percentile(0.99)));
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP999() {
+        return latencies(histogram -> micros(histogram.percentile(0.999)));
+    }
+
+    @Override
+    public long getErrorCount() {
+        long count = 0;
+        for (LongAdder adder : errors)
+            count += adder.sum();
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (ErrorCause cause : ERROR_CAUSES)
+            counts.put(cause.toString(), errors[cause.ordinal()].sum());
+        return counts;
+    }
+
+    @Override
+    public long getEventCount() {
+        return eventLogger.eventCount();
+    }
+
+    @Override
+    public long getPayloadCharacters() {
+        return eventLogger.payloadSize();
+    }
+
+    @Override
+    public long getDiffCount() {
+        return TextDiffUtils.durations().count();
+    }
+
+    @Override
+    public double getDiffP50() {
+        return micros(TextDiffUtils.durations().percentile(0.5));
+    }
+
+    @Override
+    public double getDiffP99() {
+        return micros(TextDiffUtils.durations().percentile(0.99));
+    }
+
+    @Override
+    public double getDiffMax() {
+        return micros(TextDiffUtils.durations().percentile(1));
+    }
+
+    @Override
+    public Map<String, Long> getSampledEvents() {
+        return sums(sampledEvents);
+    }
+
+    @Override
+    public Map<String, Long> getSkippedEvents() {
+        return sums(skippedEvents);
+    }
+
+    @Override
+    public long getForgottenSkippedEvents() {
+        return forgottenSkippedEvents.sum();
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> adders) {
+        Map<String, Long> sums = new TreeMap<>();
+        adders.forEach((key, adder) -> sums.put(key, adder.sum()));
+        return sums;
+    }
+
+    @Override
+    public long getDroppedLogRecords() {
+        return LocalLogging.droppedRecords();
+    }
+
+    private Map<String, Double> latencies(ToDoubleFunction<LatencyHistogram> percentile) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Request.RequestType requestType : REQUEST_TYPES) {
+            if (requests[requestType.ordinal()].sum() > 0)
+                values.put(requestType.toString(), percentile.applyAsDouble(latencies[requestType.ordinal()]));
+        }
+        return values;
+    }
+
+    private static double micros(long nanoseconds) {
+        return nanoseconds / 1000d;
+    }
+
+    /**
+     * @return every metric as a JSON object, latencies in microseconds.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("\t\"requests\":").append("\"").append(getRequestCount()).append("\"").append(",\n");
+        sb.append("\t\"errors\":").append("\"").append(getErrorCount()).append("\"").append(",\n");
+        sb.append("\t\"events\":").append("\"").append(getEventCount()).append("\"").append(",\n");
+        sb.append("\t\"payloadCharacters\":").append("\"").append(getPayloadCharacters()).append("\"").append(",\n");
+        sb.append("\t\"diffs\":").append("\"").append(getDiffCount()).append("\"").append(",\n");
+        sb.append("\t\"diffP50(us)\":").append("\"").append(getDiffP50()).append("\"").append(",\n");
+        sb.append("\t\"diffP99(us)\":").append("\"").append(getDiffP99()).append("\"").append(",\n");
+        sb.append("\t\"diffMax(us)\":").append("\"").append(getDiffMax()).append("\"").append(",\n");
+        sb.append("\t\"droppedLogRecords\":").append("\"").append(getDroppedLogRecords()).append("\"").append(",\n");
+        sb.append("\t\"forgottenSkippedEvents\":").append("\"").append(getForgottenSkippedEvents()).append("\"").append(",\n");
+        sb.append("\t\"errorCauses\":{");
+        String separator = "\n";
+        for (Map.Entry<String, Long> errorCount : getErrorCounts().entrySet()) {
+            sb.append(separator).append("\t\t\"").append(errorCount.getKey()).append("\":\"").append(errorCount.getValue()).append("\"");
+            separator = ",\n";
+        }
+        sb.append("\n\t},\n");
+        sb.append("\t\"sampling\":{");
+        separator = "\n";
+        Map<String, Long> sampled = getSampledEvents();
+        Map<String, Long> skipped = getSkippedEvents();
+        Map<String, Long> patterns = new TreeMap<>(sampled);
+        skipped.keySet().forEach(pattern -> patterns.putIfAbsent(pattern, 0L));
+        for (String pattern : patterns.keySet()) {
+            sb.append(separator).append("\t\t\"").append(JSONObject.escape(pattern)).append("\":{");
+            sb.append("\"kept\":\"").append(sampled.getOrDefault(pattern, 0L)).append("\",");
+            sb.append("\"skipped\":\"").append(skipped.getOrDefault(pattern, 0L)).append("\"}");
+            separator = ",\n";
+        }
+        sb.append("\n\t},\n");
+        sb.append("\t\"requestTypes\":{");
+        separator = "\n";
+        for (Request.RequestType requestType : REQUEST_TYPES) {
+            long count = requests[requestType.ordinal()].sum();
+            if (count == 0)
+                continue;
+            LatencyHistogram histogram = latencies[requestType.ordinal()];
+            sb.append(separator).append("\t\t\"").append(requestType).append("\":{");
+            sb.append("\"count\":\"").append(count).append("\",");
+            sb.append("\"p50(us)\":\"").append(micros(histogram.percentile(0.5))).append("\",");
+            sb.append("\"p99(us)\":\"").append(micros(histogram.percentile(0.99))).append("\",");
+            sb.append("\"p999(us)\":\"").append(micros(histogram.percentile(0.999))).append("\"}");
+            separator = ",\n";
+        }
+        sb.append("\n\t}\n");
+        sb.append("}");
+        return sb.toString();
+    }
+
+}
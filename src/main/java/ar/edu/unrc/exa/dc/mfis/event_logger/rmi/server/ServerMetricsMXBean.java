@@ -0,0 +1,46 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ServerMetrics}, registered on the platform MBean server as
+ * {@value ServerMetrics#OBJECT_NAME}. Maps are keyed by request type, error cause or sampling rule pattern, latencies
+ * are in microseconds.
+ */
+public interface ServerMetricsMXBean {
+
+    long getRequestCount();
+
+    Map<String, Long> getRequestCounts();
+
+    Map<String, Double> getLatencyP50();
+
+    Map<String, Double> getLatencyP99();
+
+    Map<String, Double> getLatencyP999();
+
+    long getErrorCount();
+
+    Map<String, Long> getErrorCounts();
+
+    long getEventCount();
+
+    long getPayloadCharacters();
+
+    long getDiffCount();
+
+    double getDiffP50();
+
+    double getDiffP99();
+
+    double getDiffMax();
+
+    Map<String, Long> getSampledEvents();
+
+    Map<String, Long> getSkippedEvents();
+
+    long getForgottenSkippedEvents();
+
+    long getDroppedLogRecords();
+
+}
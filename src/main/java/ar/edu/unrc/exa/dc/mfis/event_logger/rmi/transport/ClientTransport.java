@@ -0,0 +1,66 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client side of the connection with an {@link EventLoggerServer}, the server is started when none is running.
+ */
+public interface ClientTransport {
+
+    /**
+     * Connects to the server using the given transport, starting a server if none is running.
+     * @param transport : the transport to use, the server must be using the same one.
+     * @param serverURL : the server's host, not used by {@link EventLoggerProperties.Transport#SHM} nor
+     * {@link EventLoggerProperties.Transport#EMBEDDED}.
+     */
+    static ClientTransport connect(EventLoggerProperties.Transport transport, String serverURL) throws IOException {
+        switch (transport) {
+            case NIO: return NioClientTransport.connect(serverURL, EventLoggerProperties.nioPort());
+            case EMBEDDED: return EmbeddedClientTransport.create();
+            case SHM: return SharedMemoryClientTransport.connect(Paths.get(EventLoggerProperties.shmDirectory()), EventLoggerProperties.shmRingCapacity());
+            case RMI:
+            default: return RmiClientTransport.connect(serverURL);
+        }
+    }
+
+    /**
+     * Sends a request and waits for its response.
+     */
+    Response send(Request request) throws IOException;
+
+    /**
+     * Sends a request without waiting for its response, responses to requests sent from the same transport are
+     * received in the same order the requests were sent.
+     * <p>
+     * By default the request is sent with {@link #send(Request)} and an already completed future is returned.
+     */
+    default CompletableFuture<Response> sendAsync(Request request) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        try {
+            response.complete(send(request));
+        } catch (IOException | RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * Sends several requests in a single call and waits for their responses.
+     * @see EventLoggerServer#executeBatch(List, EventLoggerServer.BatchMode)
+     */
+    List<Response> sendBatch(List<Request> requests, EventLoggerServer.BatchMode mode) throws IOException;
+
+    /**
+     * Closes the connection, pending requests fail.
+     */
+    void close();
+
+}
@@ -0,0 +1,161 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Event;
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLogger;
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServerImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes requests on an {@link EventLoggerServerImpl} living in the client's process, calls are plain method calls so
+ * no server process, serialization nor connection is involved.
+ * <p>
+ * Events are only kept in this process, when export is enabled ({@link EventLoggerProperties#embeddedExportEnabled()})
+ * they are sent to a server, with their original times, when this transport is closed or the process ends. A stop
+ * request closes this transport instead of stopping the process.
+ */
+final class EmbeddedClientTransport implements ClientTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(EmbeddedClientTransport.class);
+
+    private static final int EXPORT_BATCH_SIZE = 1024;
+
+    private final EventLoggerServer server = new EventLoggerServerImpl(new LocalServerTransport());
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private EmbeddedClientTransport() {}
+
+    static EmbeddedClientTransport create() {
+        EmbeddedClientTransport transport = new EmbeddedClientTransport();
+        if (EventLoggerProperties.embeddedExportEnabled())
+            Runtime.getRuntime().addShutdownHook(new Thread(transport::close, "EventLoggerClient-embedded-export"));
+        return transport;
+    }
+
+    @Override
+    public Response send(Request request) throws IOException {
+        checkOpen();
+        if (request.requestType().equals(Request.RequestType.STOP_SERVER)) {
+            close();
+            return Response.stopServer(request);
+        }
+        return server.executeQuery(request);
+    }
+
+    @Override
+    public List<Response> sendBatch(List<Request> requests, EventLoggerServer.BatchMode mode) throws IOException {
+        checkOpen();
+        return server.executeBatch(requests, mode);
+    }
+
+    /**
+     * Closes this transport, exporting every event if export is enabled.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true))
+            return;
+        if (EventLoggerProperties.embeddedExportEnabled())
+            export();
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed.get())
+            throw new IOException("Embedded client transport is closed");
+    }
+
+    /*
+     * Events are sent in timestamp order so parents are imported before their children, running events are imported as
+     * still running. Recurring events are not exported since their statistics can't be imported.
+     */
+    private void export() {
+        EventLogger eventLogger = EventLogger.instance();
+        List<Event> events = eventLogger.getEvents();
+        EventLoggerProperties.Transport transport = EventLoggerProperties.embeddedExportTransport();
+        logger.info("Exporting " + events.size() + " events (" + transport + " transport)");
+        ClientTransport remote;
+        try {
+            remote = ClientTransport.connect(transport, EventLoggerProperties.serverURL());
+        } catch (IOException | RuntimeException connectionFailed) {
+            logger.log(Level.SEVERE, "Couldn't connect to server, no event was exported\n", connectionFailed);
+            return;
+        }
+        int skipped = 0;
+        int failed = 0;
+        long now = System.nanoTime();
+        List<Request> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+        try {
+            for (Event event : events) {
+                if (event.isRecurring()) {
+                    skipped++;
+                    continue;
+                }
+                batch.add(importRequest(eventLogger, event, now));
+                if (batch.size() == EXPORT_BATCH_SIZE) {
+                    failed += sendImports(remote, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty())
+                failed += sendImports(remote, batch);
+        } catch (IOException exportFailed) {
+            logger.log(Level.SEVERE, "Error while exporting events\n", exportFailed);
+            return;
+        } finally {
+            remote.close();
+        }
+        if (skipped > 0)
+            logger.warning(skipped + " recurring events were not exported");
+        if (failed > 0)
+            logger.warning(failed + " events could not be imported by the server");
+        logger.info("Exported " + (events.size() - skipped - failed) + " events");
+    }
+
+    private static Request importRequest(EventLogger eventLogger, Event event, long now) {
+        long startTime = event.timestampNanos();
+        long stopTime;
+        switch (event.state()) {
+            case INSTANT: { stopTime = startTime; break; }
+            case STOPPED: { stopTime = startTime + event.elapsedNanos(now); break; }
+            default: stopTime = EventLogger.STILL_RUNNING;
+        }
+        Request request = Request.importEvent(event.name(), event.associatedStartingData().orElse(null),
+                event.associatedEndingData().orElse(null), event.calculatesDifference(), startTime, stopTime);
+        return eventLogger.getParent(event.name()).map(request::withParent).orElse(request);
+    }
+
+    private static int sendImports(ClientTransport remote, List<Request> imports) throws IOException {
+        int failed = 0;
+        for (Response response : remote.sendBatch(imports, EventLoggerServer.BatchMode.BEST_EFFORT)) {
+            if (response.error()) {
+                failed++;
+                logger.warning("Couldn't export event " + response.originatingRequest().name() + "\n" + response.simpleTextData());
+            }
+        }
+        return failed;
+    }
+
+    /*
+     * The embedded server is not reachable from other processes, a stop request is answered by the client transport.
+     */
+    private static final class LocalServerTransport implements ServerTransport {
+
+        @Override
+        public void start(EventLoggerServer server) {}
+
+        @Override
+        public void stop() {}
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Raw access to memory mapped files shared between processes. {@link #putOrderedLong(long, long)} and
+ * {@link #getLongVolatile(long)} are used to publish positions, making every write done before the ordered put visible
+ * to a process reading the position with the volatile get.
+ * <p>
+ * Addresses are absolute, callers must keep the mapped buffer reachable while using them.
+ * <p>
+ * This is the only class using {@code sun.misc.Unsafe}, as Java 8 has no other way of doing ordered puts on a mapped
+ * buffer. javac reports each reference to it as an internal proprietary API, a warning that can't be suppressed with
+ * {@link SuppressWarnings}, so those warnings are expected and confined to this file.
+ */
+final class MappedMemory {
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_FIELD_OFFSET;
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+
+    static {
+        try {
+            Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            UNSAFE = (Unsafe) theUnsafe.get(null);
+            ADDRESS_FIELD_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MappedMemory() {}
+
+    static long address(MappedByteBuffer buffer) {
+        return UNSAFE.getLong(buffer, ADDRESS_FIELD_OFFSET);
+    }
+
+    static int getInt(long address) {
+        return UNSAFE.getInt(address);
+    }
+
+    static void putInt(long address, int value) {
+        UNSAFE.putInt(address, value);
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    static void putOrderedLong(long address, long value) {
+        UNSAFE.putOrderedLong(null, address, value);
+    }
+
+    static void copy(byte[] source, int offset, long address, int length) {
+        UNSAFE.copyMemory(source, BYTE_ARRAY_BASE_OFFSET + offset, null, address, length);
+    }
+
+    static void copy(long address, byte[] target, int offset, int length) {
+        UNSAFE.copyMemory(null, address, target, BYTE_ARRAY_BASE_OFFSET + offset, length);
+    }
+
+}
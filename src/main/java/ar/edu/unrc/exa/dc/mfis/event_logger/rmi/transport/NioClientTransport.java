@@ -0,0 +1,100 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends requests to a {@link NioServerTransport} as {@link NioFrames} over a single connection without waiting for the
+ * previous responses, a background thread reads the responses and completes the corresponding futures.
+ */
+final class NioClientTransport extends PipelinedClientTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(NioClientTransport.class);
+
+    private final Socket socket;
+    private final OutputStream output;
+    private final DataInputStream input;
+
+    private NioClientTransport(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        output = socket.getOutputStream();
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        Thread reader = new Thread(this::readResponses, "EventLoggerClient-nio-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    static NioClientTransport connect(String host, int port) throws IOException {
+        logger.info("Connecting to server at " + host + ":" + port);
+        try {
+            return new NioClientTransport(new Socket(host, port));
+        } catch (ConnectException e) {
+            logger.warning("No server found, will try to start server and retry ...");
+            ServerLauncher.startServer();
+        }
+        int retries = EventLoggerProperties.connectionRetries();
+        long delaySeconds = EventLoggerProperties.reconnectionDelay();
+        for (int currentRetries = 1; ; currentRetries++) {
+            try {
+                Thread.sleep(delaySeconds * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while retrying to connect to server");
+            }
+            try {
+                NioClientTransport transport = new NioClientTransport(new Socket(host, port));
+                logger.info("Connected to server after " + currentRetries + " retries");
+                return transport;
+            } catch (ConnectException e) {
+                if (currentRetries >= retries) {
+                    logger.log(Level.SEVERE, "Error while retrying to connect to server\n", e);
+                    throw e;
+                }
+                logger.warning("Connection failed, retrying in " + delaySeconds + "s, retries left " + (retries - currentRetries));
+            }
+        }
+    }
+
+    @Override
+    protected void writeFrame(byte[] frame, int length) throws IOException {
+        output.write(frame, 0, length);
+    }
+
+    @Override
+    protected void closeConnection() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while closing connection\n", e);
+        }
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                int length = input.readInt();
+                if (!NioFrames.isValidLength(length))
+                    throw new IOException("Invalid frame length " + length);
+                byte[] frame = new byte[length];
+                input.readFully(frame);
+                onFrame(frame, 0, length);
+            }
+        } catch (IOException e) {
+            if (!hasFailed())
+                logger.log(Level.SEVERE, "Error while reading responses, closing connection\n", e);
+            fail(e);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames used by the NIO transport: a 4 bytes big endian length (of what follows), a kind byte and a payload encoded
+ * with {@link BinaryCodec}.
+ * <ul>
+ *     <li>{@link #SINGLE}: a request, or its response.</li>
+ *     <li>{@link #BATCH}: the batch mode's ordinal, the amount of requests and each request; or the amount of responses
+ *     and each response.</li>
+ * </ul>
+ * Responses are sent in the same order requests were received on each connection.
+ */
+final class NioFrames {
+
+    static final byte SINGLE = 0;
+    static final byte BATCH = 1;
+
+    static final int LENGTH_SIZE = 4;
+    static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    private static final EventLoggerServer.BatchMode[] BATCH_MODES = EventLoggerServer.BatchMode.values();
+
+    private NioFrames() {}
+
+    static void writeRequest(Request request, BinaryCodec.Writer writer) {
+        begin(SINGLE, writer);
+        BinaryCodec.write(request, writer);
+        end(writer);
+    }
+
+    static void writeBatch(List<Request> requests, EventLoggerServer.BatchMode mode, BinaryCodec.Writer writer) {
+        begin(BATCH, writer);
+        writer.writeVarInt(mode.ordinal());
+        writer.writeVarInt(requests.size());
+        for (Request request : requests) {
+            BinaryCodec.write(request, writer);
+        }
+        end(writer);
+    }
+
+    static void writeResponse(Response response, BinaryCodec.Writer writer) {
+        begin(SINGLE, writer);
+        BinaryCodec.write(response, writer);
+        end(writer);
+    }
+
+    static void writeResponses(List<Response> responses, BinaryCodec.Writer writer) {
+        begin(BATCH, writer);
+        writer.writeVarInt(responses.size());
+        for (Response response : responses) {
+            BinaryCodec.write(response, writer);
+        }
+        end(writer);
+    }
+
+    static EventLoggerServer.BatchMode readBatchMode(BinaryCodec.Reader reader) {
+        return reader.readEnum(BATCH_MODES);
+    }
+
+    static List<Request> readRequests(BinaryCodec.Reader reader) {
+        int size = reader.readLength();
+        List<Request> requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            requests.add(BinaryCodec.readRequest(reader));
+        }
+        return requests;
+    }
+
+    static List<Response> readResponses(BinaryCodec.Reader reader) {
+        int size = reader.readLength();
+        List<Response> responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            responses.add(BinaryCodec.readResponse(reader));
+        }
+        return responses;
+    }
+
+    /**
+     * Executes a request or batch frame (without its length prefix) and writes the response frame.
+     */
+    static void execute(EventLoggerServer server, ByteBuffer frame, BinaryCodec.Writer writer) throws IOException {
+        byte kind = frame.get();
+        BinaryCodec.Reader reader = new BinaryCodec.Reader(frame);
+        switch (kind) {
+            case SINGLE: {
+                Request request = BinaryCodec.readRequest(reader);
+                writeResponse(server.executeQuery(request), writer);
+                break;
+            }
+            case BATCH: {
+                EventLoggerServer.BatchMode mode = readBatchMode(reader);
+                writeResponses(server.executeBatch(readRequests(reader), mode), writer);
+                break;
+            }
+            default: throw new IOException("Unknown frame kind " + kind);
+        }
+    }
+
+    /**
+     * Writes an error response (or one for each request of a batch) to a request or batch frame, without executing it.
+     */
+    static void writeError(ByteBuffer frame, String message, BinaryCodec.Writer writer) throws IOException {
+        byte kind = frame.get();
+        BinaryCodec.Reader reader = new BinaryCodec.Reader(frame);
+        switch (kind) {
+            case SINGLE: {
+                writeResponse(Response.error(message, BinaryCodec.readRequest(reader)), writer);
+                break;
+            }
+            case BATCH: {
+                readBatchMode(reader);
+                List<Request> requests = readRequests(reader);
+                List<Response> responses = new ArrayList<>(requests.size());
+                for (Request request : requests) {
+                    responses.add(Response.error(message, request));
+                }
+                writeResponses(responses, writer);
+                break;
+            }
+            default: throw new IOException("Unknown frame kind " + kind);
+        }
+    }
+
+    static boolean isValidLength(int length) {
+        return length > 0 && length <= MAX_FRAME_SIZE;
+    }
+
+    private static void begin(byte kind, BinaryCodec.Writer writer) {
+        writer.reset();
+        for (int i = 0; i < LENGTH_SIZE; i++) {
+            writer.writeByte(0);
+        }
+        writer.writeByte(kind);
+    }
+
+    private static void end(BinaryCodec.Writer writer) {
+        int length = writer.size() - LENGTH_SIZE;
+        byte[] buffer = writer.buffer();
+        buffer[0] = (byte) (length >>> 24);
+        buffer[1] = (byte) (length >>> 16);
+        buffer[2] = (byte) (length >>> 8);
+        buffer[3] = (byte) length;
+    }
+
+}
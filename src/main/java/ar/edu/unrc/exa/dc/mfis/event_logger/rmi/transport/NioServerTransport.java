@@ -0,0 +1,185 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves every client connection from a single thread using non-blocking sockets, requests are read as
+ * {@link NioFrames} and executed in the order they arrive.
+ * <p>
+ * Clients may send several requests without waiting for their responses, every complete frame read from a connection
+ * is executed and all the responses are written back together.
+ */
+final class NioServerTransport implements ServerTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(NioServerTransport.class);
+
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+    private EventLoggerServer server;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean stopRequested = false;
+    /*
+     * Only used from the I/O thread.
+     */
+    private final BinaryCodec.Writer writer = new BinaryCodec.Writer(4096);
+
+    @Override
+    public void start(EventLoggerServer server) throws IOException {
+        this.server = server;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(EventLoggerProperties.serverURL(), EventLoggerProperties.nioPort()));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        Thread ioThread = new Thread(this::run, "EventLoggerServer-nio");
+        ioThread.start();
+        logger.info("EventLoggerServer listening at " + serverChannel.getLocalAddress());
+    }
+
+    /**
+     * Stops accepting connections, already connected clients are still served until the server shuts down.
+     */
+    @Override
+    public void stop() {
+        stopRequested = true;
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                if (stopRequested && serverChannel.isOpen()) {
+                    serverChannel.close();
+                    logger.info("No longer accepting connections");
+                }
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable())
+                                connection.read();
+                            if (key.isValid() && key.isWritable())
+                                connection.write();
+                        } catch (IOException | RuntimeException e) {
+                            logger.log(Level.WARNING, "Closing connection with " + connection.remoteAddress + "\n", e);
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error on the I/O loop\n", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        logger.info("Accepted connection from " + connection.remoteAddress);
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final String remoteAddress;
+        private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remoteAddress = String.valueOf(channel.getRemoteAddress());
+        }
+
+        private void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                logger.info("Connection closed by " + remoteAddress);
+                close();
+                return;
+            }
+            readBuffer.flip();
+            int missing = 0;
+            while (readBuffer.remaining() >= NioFrames.LENGTH_SIZE) {
+                int frameStart = readBuffer.position();
+                int length = readBuffer.getInt(frameStart);
+                if (!NioFrames.isValidLength(length))
+                    throw new IOException("Invalid frame length " + length);
+                if (readBuffer.remaining() < NioFrames.LENGTH_SIZE + length) {
+                    missing = NioFrames.LENGTH_SIZE + length;
+                    break;
+                }
+                readBuffer.position(frameStart + NioFrames.LENGTH_SIZE);
+                ByteBuffer frame = readBuffer.slice();
+                frame.limit(length);
+                readBuffer.position(frameStart + NioFrames.LENGTH_SIZE + length);
+                execute(frame);
+            }
+            readBuffer.compact();
+            if (missing > readBuffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(missing);
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+            write();
+        }
+
+        private void execute(ByteBuffer frame) throws IOException {
+            NioFrames.execute(server, frame, writer);
+            pendingWrites.add(ByteBuffer.wrap(writer.toByteArray()));
+        }
+
+        private void write() throws IOException {
+            while (!pendingWrites.isEmpty()) {
+                ByteBuffer next = pendingWrites.peek();
+                channel.write(next);
+                if (next.hasRemaining())
+                    break;
+                pendingWrites.poll();
+            }
+            // stop reading from a client that is not reading its responses until they are written
+            key.interestOps(pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error while closing connection with " + remoteAddress + "\n", e);
+            }
+        }
+
+    }
+
+}
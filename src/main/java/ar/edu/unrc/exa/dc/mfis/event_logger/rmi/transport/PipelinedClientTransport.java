@@ -0,0 +1,173 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Base for transports sending {@link NioFrames} without waiting for the previous responses, which the server sends
+ * back in the same order requests were received. Each sent frame adds a future to a queue, and each received frame
+ * completes the oldest one.
+ */
+abstract class PipelinedClientTransport implements ClientTransport {
+
+    /*
+     * Guards writing a frame together with adding to awaitingResponse, so both happen in the same order.
+     */
+    private final Object writeLock = new Object();
+    private final BinaryCodec.Writer writer = new BinaryCodec.Writer(4096);
+    private final ConcurrentLinkedQueue<PendingResponse> awaitingResponse = new ConcurrentLinkedQueue<>();
+    private volatile IOException failure;
+
+    private static final class PendingResponse {
+        private final CompletableFuture<Response> response;
+        private final CompletableFuture<List<Response>> batchResponses;
+
+        private PendingResponse(CompletableFuture<Response> response, CompletableFuture<List<Response>> batchResponses) {
+            this.response = response;
+            this.batchResponses = batchResponses;
+        }
+
+        private void fail(IOException cause) {
+            if (response != null)
+                response.completeExceptionally(cause);
+            else
+                batchResponses.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Sends a frame (length prefix included) to the server, only called by one thread at a time.
+     * @param frame : a buffer holding the frame from index 0.
+     * @param length : the frame's size in bytes.
+     */
+    protected abstract void writeFrame(byte[] frame, int length) throws IOException;
+
+    /**
+     * Releases the underlying connection, called once when the transport fails or is closed.
+     */
+    protected abstract void closeConnection();
+
+    @Override
+    public Response send(Request request) throws IOException {
+        return await(sendAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request request) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        PendingResponse pending = new PendingResponse(response, null);
+        synchronized (writeLock) {
+            NioFrames.writeRequest(request, writer);
+            write(pending);
+        }
+        return response;
+    }
+
+    @Override
+    public List<Response> sendBatch(List<Request> requests, EventLoggerServer.BatchMode mode) throws IOException {
+        CompletableFuture<List<Response>> responses = new CompletableFuture<>();
+        PendingResponse pending = new PendingResponse(null, responses);
+        synchronized (writeLock) {
+            NioFrames.writeBatch(requests, mode, writer);
+            write(pending);
+        }
+        return await(responses);
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Connection closed"));
+    }
+
+    /*
+     * Must be called holding writeLock, with the frame on writer.
+     */
+    private void write(PendingResponse pending) {
+        awaitingResponse.add(pending);
+        if (failure == null) {
+            try {
+                writeFrame(writer.buffer(), writer.size());
+                return;
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        // the connection may have failed pending responses before this one was added
+        failAwaiting();
+    }
+
+    /**
+     * Completes the oldest pending request with a received frame (without its length prefix).
+     */
+    protected final void onFrame(byte[] frame, int offset, int length) throws IOException {
+        BinaryCodec.Reader reader = new BinaryCodec.Reader(ByteBuffer.wrap(frame, offset + 1, length - 1));
+        PendingResponse pending = awaitingResponse.poll();
+        if (pending == null)
+            throw new IOException("Received a response without a pending request");
+        try {
+            if (frame[offset] == NioFrames.SINGLE && pending.response != null)
+                pending.response.complete(BinaryCodec.readResponse(reader));
+            else if (frame[offset] == NioFrames.BATCH && pending.batchResponses != null)
+                pending.batchResponses.complete(NioFrames.readResponses(reader));
+            else
+                throw new IOException("Unexpected frame kind " + frame[offset]);
+        } catch (RuntimeException malformed) {
+            throw new IOException("Malformed response", malformed);
+        }
+    }
+
+    protected final boolean isAwaitingResponses() {
+        return !awaitingResponse.isEmpty();
+    }
+
+    protected final boolean hasFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Closes the connection and fails every pending request.
+     */
+    protected final void fail(IOException cause) {
+        boolean firstFailure = false;
+        synchronized (awaitingResponse) {
+            if (failure == null) {
+                failure = cause;
+                firstFailure = true;
+            }
+        }
+        if (firstFailure)
+            closeConnection();
+        failAwaiting();
+    }
+
+    private void failAwaiting() {
+        PendingResponse pending;
+        while ((pending = awaitingResponse.poll()) != null) {
+            pending.fail(failure);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLoggerServerMain;
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Request;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.Response;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.net.URL;
+import java.rmi.ConnectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.security.Policy;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Calls a remote {@link EventLoggerServer} found on the RMI registry, each call waits for its response.
+ */
+final class RmiClientTransport implements ClientTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(RmiClientTransport.class);
+
+    private final EventLoggerServer eventLoggerServer;
+
+    private RmiClientTransport(EventLoggerServer eventLoggerServer) {
+        this.eventLoggerServer = eventLoggerServer;
+    }
+
+    static RmiClientTransport connect(String serverURL) throws RemoteException {
+        if (EventLoggerProperties.securityManagerEnabled()) {
+            if (System.getSecurityManager() == null) {
+                URL policyPath = EventLoggerServerMain.class.getClassLoader().getResource(EventLoggerProperties.clientPolicy());
+                if (policyPath == null) {
+                    logger.severe("No policy could be found at " + EventLoggerProperties.clientPolicy());
+                    throw new RuntimeException("No policy could be found at " + EventLoggerProperties.clientPolicy());
+                }
+                System.setProperty("java.security.policy", policyPath.toString());
+                Policy.getPolicy().refresh();
+                System.setSecurityManager(new SecurityManager());
+            }
+        }
+        return new RmiClientTransport(getServer(serverURL));
+    }
+
+    @Override
+    public Response send(Request request) throws RemoteException {
+        return eventLoggerServer.executeQuery(request);
+    }
+
+    @Override
+    public List<Response> sendBatch(List<Request> requests, EventLoggerServer.BatchMode mode) throws RemoteException {
+        return eventLoggerServer.executeBatch(requests, mode);
+    }
+
+    @Override
+    public void close() {}
+
+    private static EventLoggerServer getServer(String serverURL) throws RemoteException {
+        logger.info("Getting server at " + serverURL);
+        Registry registry = LocateRegistry.getRegistry(serverURL);
+        logger.info("Got registry " + registry.toString());
+        EventLoggerServer eventLoggerServer;
+        try {
+            eventLoggerServer = lookupServer(registry);
+            logger.info("Got server " +  eventLoggerServer);
+        } catch (NotBoundException | ConnectException e) {
+            logger.warning("No server found, will try to start server and retry ...");
+            ServerLauncher.startServer();
+            try {
+                eventLoggerServer = retryLookup(registry, EventLoggerProperties.connectionRetries(), EventLoggerProperties.reconnectionDelay());
+            } catch (InterruptedException ex) {
+                logger.log(Level.SEVERE, "Error while retrying to connect to server\n", ex);
+                throw new RuntimeException(ex);
+            }
+        }
+        return eventLoggerServer;
+    }
+
+    private static EventLoggerServer retryLookup(Registry registry, int retries, long delaySeconds) throws RemoteException, InterruptedException {
+        EventLoggerServer eventLoggerServer;
+        int currentRetries = 1;
+        do {
+            try {
+                eventLoggerServer = lookupServer(registry);
+                logger.info("Got server after " +  currentRetries + " retries " +  eventLoggerServer);
+                return eventLoggerServer;
+            } catch (NotBoundException | ConnectException e) {
+                if (retries == currentRetries) {
+                    logger.log(Level.SEVERE,"Error while retrying a server lookup\n", e);
+                    throw new RuntimeException(e);
+                }
+                logger.warning("Server lookup fail, retrying in " + delaySeconds + "s, retries left " + (retries - currentRetries));
+                Thread.sleep(delaySeconds*1000);
+            }
+        } while (currentRetries++ < retries);
+        throw new IllegalStateException("Could not get a server");
+    }
+
+    private static EventLoggerServer lookupServer(Registry registry) throws NotBoundException, RemoteException {
+        return (EventLoggerServer) registry.lookup(EventLoggerServer.name);
+    }
+
+}
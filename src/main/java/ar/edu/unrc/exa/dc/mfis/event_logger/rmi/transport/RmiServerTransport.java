@@ -0,0 +1,60 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.EventLoggerServerMain;
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.rmi.NotBoundException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.security.Policy;
+import java.util.logging.Logger;
+
+/**
+ * Exports the server as a remote object bound on a new RMI registry, RMI executes each call on its own thread.
+ */
+final class RmiServerTransport implements ServerTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(RmiServerTransport.class);
+
+    private Registry registry;
+    private EventLoggerServer server;
+
+    @Override
+    public void start(EventLoggerServer server) throws IOException {
+        if (EventLoggerProperties.securityManagerEnabled()) {
+            if (System.getSecurityManager() == null) {
+                URL policyPath = EventLoggerServerMain.class.getClassLoader().getResource(EventLoggerProperties.serverPolicy());
+                if (policyPath == null) {
+                    logger.severe("No policy could be found at " + EventLoggerProperties.serverPolicy());
+                    throw new RuntimeException("No policy could be found at " + EventLoggerProperties.serverPolicy());
+                }
+                System.setProperty("java.security.policy", policyPath.toString());
+                Policy.getPolicy().refresh();
+                System.setSecurityManager(new SecurityManager());
+            }
+        }
+        String name = EventLoggerServer.name;
+        registry = LocateRegistry.createRegistry(EventLoggerProperties.registryPort());
+        EventLoggerServer stub = (EventLoggerServer) UnicastRemoteObject.exportObject(server, EventLoggerProperties.port());
+        registry.rebind(name, stub);
+        this.server = server;
+        logger.info("EventLoggerServer started and bound\nGot server handle: " + stub);
+    }
+
+    @Override
+    public void stop() throws IOException {
+        if (!UnicastRemoteObject.unexportObject(server, true))
+            throw new IOException("Couldn't un-export server, maybe try again?");
+        try {
+            registry.unbind(EventLoggerServer.name);
+        } catch (NotBoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServerImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts a server on a new process, using the same classpath and properties as the current one.
+ */
+final class ServerLauncher {
+
+    private static final Logger logger = LocalLogging.getLogger(ServerLauncher.class);
+
+    private ServerLauncher() {}
+
+    static void startServer() {
+        String[] args = getServerArguments();
+        logger.info("Starting server\n" + Arrays.toString(args));
+        ProcessBuilder pb = new ProcessBuilder(args);
+        Path currentDir = Paths.get("");
+        File serverErrorLog = currentDir.resolve("logs/serverError.log").toAbsolutePath().toFile();
+        File serverOutputLog = currentDir.resolve("logs/serverOutput.log").toAbsolutePath().toFile();
+        pb.redirectError(ProcessBuilder.Redirect.appendTo(serverErrorLog));
+        pb.redirectOutput(ProcessBuilder.Redirect.appendTo(serverOutputLog));
+        try {
+            pb.start();
+            logger.info("Server started");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error while trying to start server process\n", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String[] getServerArguments() {
+        String[] properties = EventLoggerProperties.asArgs();
+        String[] args = new String[properties.length + 4];
+        args[0] = "java";
+        args[1] = "-cp";
+        args[2] = System.getProperty("java.class.path");
+        int idx = 3;
+        for (String property : properties) {
+            args[idx++] = property;
+        }
+        args[args.length - 1] = EventLoggerServerImpl.class.getCanonicalName();
+        return args;
+    }
+
+}
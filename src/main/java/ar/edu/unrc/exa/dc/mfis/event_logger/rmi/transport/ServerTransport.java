@@ -0,0 +1,34 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+
+/**
+ * Makes an {@link EventLoggerServer} reachable by clients using a matching {@link ClientTransport}.
+ */
+public interface ServerTransport {
+
+    static ServerTransport create(EventLoggerProperties.Transport transport) {
+        switch (transport) {
+            case NIO: return new NioServerTransport();
+            case SHM: return new SharedMemoryServerTransport();
+            case EMBEDDED: throw new IllegalArgumentException("The " + transport + " transport runs the server inside the client's process");
+            case RMI:
+            default: return new RmiServerTransport();
+        }
+    }
+
+    /**
+     * Starts accepting requests, which are executed by {@code server}.
+     */
+    void start(EventLoggerServer server) throws IOException;
+
+    /**
+     * Stops accepting new requests, this can be called while executing a request (to answer a stop request) so it
+     * must not wait for requests being executed.
+     */
+    void stop() throws IOException;
+
+}
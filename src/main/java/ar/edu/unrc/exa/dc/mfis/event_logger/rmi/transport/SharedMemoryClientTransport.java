@@ -0,0 +1,136 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends requests to a {@link SharedMemoryServerTransport} running on the same host by writing them on this process'
+ * {@link SharedMemorySegment}, without waiting for the previous responses. Writing a request involves no system call
+ * unless the request ring is full. A background thread polls the response ring and completes the corresponding futures.
+ */
+final class SharedMemoryClientTransport extends PipelinedClientTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(SharedMemoryClientTransport.class);
+
+    private static final long SERVER_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path directory;
+    private final SharedMemorySegment segment;
+
+    private SharedMemoryClientTransport(Path directory, SharedMemorySegment segment) {
+        this.directory = directory;
+        this.segment = segment;
+        Thread reader = new Thread(this::readResponses, "EventLoggerClient-shm-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    static SharedMemoryClientTransport connect(Path directory, int ringCapacity) throws IOException {
+        logger.info("Connecting to server at " + directory);
+        if (!SharedMemoryServerTransport.isRunning(directory)) {
+            logger.warning("No server found, will try to start server and retry ...");
+            ServerLauncher.startServer();
+            waitForServer(directory, EventLoggerProperties.connectionRetries(), EventLoggerProperties.reconnectionDelay());
+        }
+        SharedMemorySegment segment = SharedMemorySegment.create(directory, ringCapacity);
+        logger.info("Created segment " + segment.path());
+        return new SharedMemoryClientTransport(directory, segment);
+    }
+
+    private static void waitForServer(Path directory, int retries, long delaySeconds) throws IOException {
+        for (int currentRetries = 1; ; currentRetries++) {
+            try {
+                Thread.sleep(delaySeconds * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the server to start");
+            }
+            if (SharedMemoryServerTransport.isRunning(directory)) {
+                logger.info("Server running after " + currentRetries + " retries");
+                return;
+            }
+            if (currentRetries >= retries) {
+                logger.severe("Server is still not running after " + retries + " retries");
+                throw new IOException("Could not start a server on " + directory);
+            }
+            logger.warning("Server not running yet, retrying in " + delaySeconds + "s, retries left " + (retries - currentRetries));
+        }
+    }
+
+    /*
+     * Waits for space on the request ring while the server is running.
+     */
+    @Override
+    protected void writeFrame(byte[] frame, int length) throws IOException {
+        int frameSize = length - NioFrames.LENGTH_SIZE;
+        int maxFrameSize = segment.requests().maxFrameSize();
+        if (frameSize > maxFrameSize)
+            throw new IOException("Request of " + frameSize + " bytes exceeds the maximum of " + maxFrameSize + " bytes, try a larger " + EventLoggerProperties.ConfigKey.EVENT_LOGGER_SHM_RING_CAPACITY.getKey());
+        long nextCheck = System.nanoTime() + SERVER_CHECK_INTERVAL_NANOS;
+        int idleCount = 0;
+        while (!segment.requests().offer(frame, NioFrames.LENGTH_SIZE, frameSize)) {
+            if (System.nanoTime() - nextCheck >= 0) {
+                checkServer();
+                nextCheck = System.nanoTime() + SERVER_CHECK_INTERVAL_NANOS;
+            }
+            SharedMemoryRing.idle(idleCount++);
+        }
+    }
+
+    @Override
+    protected void closeConnection() {
+        segment.markClosed();
+        try {
+            segment.release();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while releasing segment\n", e);
+        }
+    }
+
+    private void readResponses() {
+        long nextCheck = System.nanoTime() + SERVER_CHECK_INTERVAL_NANOS;
+        int idleCount = 0;
+        try {
+            while (!hasFailed()) {
+                byte[] frame = pollResponse();
+                if (frame != null) {
+                    onFrame(frame, 0, frame.length);
+                    idleCount = 0;
+                    continue;
+                }
+                if (isAwaitingResponses() && System.nanoTime() - nextCheck >= 0) {
+                    checkServer();
+                    nextCheck = System.nanoTime() + SERVER_CHECK_INTERVAL_NANOS;
+                }
+                SharedMemoryRing.idle(idleCount++);
+            }
+        } catch (IOException e) {
+            if (!hasFailed())
+                logger.log(Level.SEVERE, "Error while reading responses, closing segment\n", e);
+            fail(e);
+        }
+    }
+
+    private byte[] pollResponse() throws IOException {
+        try {
+            return segment.responses().poll();
+        } catch (IllegalStateException corrupted) {
+            throw new IOException("Corrupted response ring", corrupted);
+        }
+    }
+
+    private void checkServer() throws IOException {
+        if (segment.isClosed())
+            throw new IOException("Segment closed");
+        if (!SharedMemoryServerTransport.isRunning(directory))
+            throw new IOException("Server is no longer running");
+    }
+
+}
@@ -0,0 +1,146 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single producer, single consumer ring of frames on memory shared between two processes.
+ * <p>
+ * The producer and consumer positions only grow, each one is written by its owner with an ordered put after writing
+ * (or reading) a record, so the other side sees complete records. Records are a 4 bytes length followed by the frame,
+ * aligned to 8 bytes. A record that doesn't fit before the end of the ring is preceded by a padding marker and written
+ * at the beginning.
+ * <p>
+ * An instance must only be used as a producer ({@link #offer(byte[], int, int)}) or as a consumer ({@link #poll()}),
+ * and only by one thread at a time.
+ */
+final class SharedMemoryRing {
+
+    private static final int RECORD_HEADER_SIZE = 4;
+    private static final int ALIGNMENT = 8;
+    private static final int PADDING = -1;
+    // spinning only helps when the other process can run at the same time
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 10_000 : 0;
+
+    // keeps the mapping alive while its addresses are used
+    private final MappedByteBuffer mapping;
+    private final long dataAddress;
+    private final int capacity;
+    private final int mask;
+    private final long tailAddress;
+    private final long headAddress;
+
+    private long producerTail;
+    private long producerHeadCache;
+    private long consumerHead;
+    private long consumerTailCache;
+
+    /**
+     * @param mapping : the mapped memory holding the ring.
+     * @param dataAddress : where the ring's records start.
+     * @param capacity : the ring's size in bytes, a power of two.
+     * @param tailAddress : where the producer position is stored.
+     * @param headAddress : where the consumer position is stored.
+     */
+    SharedMemoryRing(MappedByteBuffer mapping, long dataAddress, int capacity, long tailAddress, long headAddress) {
+        this.mapping = mapping;
+        this.dataAddress = dataAddress;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.tailAddress = tailAddress;
+        this.headAddress = headAddress;
+        producerTail = consumerTailCache = MappedMemory.getLongVolatile(tailAddress);
+        consumerHead = producerHeadCache = MappedMemory.getLongVolatile(headAddress);
+    }
+
+    /**
+     * The largest frame that can be written, half the capacity so a record always fits once the ring is empty.
+     */
+    int maxFrameSize() {
+        return capacity / 2 - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Writes a frame, if there is enough free space.
+     * @return {@code true} if the frame was written, {@code false} if the ring is full.
+     */
+    boolean offer(byte[] frame, int offset, int length) {
+        if (length > maxFrameSize())
+            throw new IllegalArgumentException("Frame of " + length + " bytes exceeds the maximum of " + maxFrameSize());
+        int recordSize = align(RECORD_HEADER_SIZE + length);
+        int index = (int) (producerTail & mask);
+        int untilEnd = capacity - index;
+        int required = recordSize <= untilEnd ? recordSize : untilEnd + recordSize;
+        if (producerTail + required - producerHeadCache > capacity) {
+            producerHeadCache = MappedMemory.getLongVolatile(headAddress);
+            if (producerTail + required - producerHeadCache > capacity)
+                return false;
+        }
+        long tail = producerTail;
+        if (recordSize > untilEnd) {
+            MappedMemory.putInt(dataAddress + index, PADDING);
+            tail += untilEnd;
+            index = 0;
+        }
+        MappedMemory.copy(frame, offset, dataAddress + index + RECORD_HEADER_SIZE, length);
+        MappedMemory.putInt(dataAddress + index, length);
+        producerTail = tail + recordSize;
+        MappedMemory.putOrderedLong(tailAddress, producerTail);
+        return true;
+    }
+
+    /**
+     * Reads the next frame.
+     * <p>
+     * The ring is written by another process, so a record's length is checked before copying the frame: a record must
+     * fit between its position and the end of the ring and can't be larger than {@link #maxFrameSize()}.
+     * @return the frame, or {@code null} if the ring is empty.
+     * @throws IllegalStateException if the next record is corrupted, the ring can't be read any further.
+     */
+    byte[] poll() {
+        if (consumerHead == consumerTailCache) {
+            consumerTailCache = MappedMemory.getLongVolatile(tailAddress);
+            if (consumerHead == consumerTailCache)
+                return null;
+        }
+        long head = consumerHead;
+        int index = (int) (head & mask);
+        int length = MappedMemory.getInt(dataAddress + index);
+        if (length == PADDING) {
+            head += capacity - index;
+            index = 0;
+            length = MappedMemory.getInt(dataAddress);
+        }
+        if (length < 0 || length > maxFrameSize() || index + RECORD_HEADER_SIZE + length > capacity)
+            throw new IllegalStateException("Corrupted ring, record of " + length + " bytes at " + index + " on a ring of " + capacity + " bytes");
+        byte[] frame = new byte[length];
+        MappedMemory.copy(dataAddress + index + RECORD_HEADER_SIZE, frame, 0, length);
+        consumerHead = head + align(RECORD_HEADER_SIZE + length);
+        MappedMemory.putOrderedLong(headAddress, consumerHead);
+        return frame;
+    }
+
+    boolean isEmpty() {
+        return MappedMemory.getLongVolatile(headAddress) == MappedMemory.getLongVolatile(tailAddress);
+    }
+
+    /**
+     * Waits before polling again, spinning at first, then yielding and then parking for increasingly longer times.
+     * @param idleCount : how many times in a row there was nothing to do.
+     */
+    static void idle(int idleCount) {
+        if (idleCount < SPINS)
+            return;
+        if (idleCount < SPINS + 100)
+            Thread.yield();
+        else if (idleCount < SPINS + 1100)
+            LockSupport.parkNanos(50_000);
+        else
+            LockSupport.parkNanos(1_000_000);
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+}
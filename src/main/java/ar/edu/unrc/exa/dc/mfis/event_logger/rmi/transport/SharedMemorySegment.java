@@ -0,0 +1,158 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * A memory mapped file shared by one client process and the server, holding a ring for requests (written by the
+ * client) and a ring for responses (written by the server).
+ * <p>
+ * The file starts with a header holding a magic number, the capacity of each ring, a flag set when the client closes
+ * the segment, and the position of each ring (each on its own cache line). The client holds a lock on the file while
+ * it's alive, so the server can tell when a client process ended without closing its segment.
+ */
+final class SharedMemorySegment {
+
+    static final String FILE_EXTENSION = ".ring";
+
+    private static final int MAGIC = 0x454C5247;
+    private static final int VERSION = 1;
+    private static final int MIN_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int CLOSED_OFFSET = 64;
+    private static final int REQUESTS_TAIL_OFFSET = 128;
+    private static final int REQUESTS_HEAD_OFFSET = 256;
+    private static final int RESPONSES_TAIL_OFFSET = 384;
+    private static final int RESPONSES_HEAD_OFFSET = 512;
+    private static final int HEADER_SIZE = 4096;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock ownerLock;
+    private final long address;
+    private final SharedMemoryRing requests;
+    private final SharedMemoryRing responses;
+
+    private SharedMemorySegment(Path path, FileChannel channel, FileLock ownerLock, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.channel = channel;
+        this.ownerLock = ownerLock;
+        this.address = MappedMemory.address(buffer);
+        this.requests = new SharedMemoryRing(buffer, address + HEADER_SIZE, capacity, address + REQUESTS_TAIL_OFFSET, address + REQUESTS_HEAD_OFFSET);
+        this.responses = new SharedMemoryRing(buffer, address + HEADER_SIZE + capacity, capacity, address + RESPONSES_TAIL_OFFSET, address + RESPONSES_HEAD_OFFSET);
+    }
+
+    /**
+     * Creates a new segment for a client, the file only appears with its final name once it's initialized.
+     * @param directory : where the server looks for segments.
+     * @param requestedCapacity : the size of each ring, rounded up to a power of two.
+     */
+    static SharedMemorySegment create(Path directory, int requestedCapacity) throws IOException {
+        int capacity = Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, Integer.highestOneBit(requestedCapacity - 1) << 1));
+        String name = "client-" + UUID.randomUUID();
+        Path temporary = directory.resolve(name + ".tmp");
+        Path path = directory.resolve(name + FILE_EXTENSION);
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock ownerLock = channel.lock();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 2L * capacity);
+            long address = MappedMemory.address(buffer);
+            MappedMemory.putInt(address + VERSION_OFFSET, VERSION);
+            MappedMemory.putInt(address + CAPACITY_OFFSET, capacity);
+            MappedMemory.putInt(address + MAGIC_OFFSET, MAGIC);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            return new SharedMemorySegment(path, channel, ownerLock, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a segment created by a client.
+     */
+    static SharedMemorySegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a segment file " + path);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.nativeOrder());
+            if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+                throw new IOException("Not a segment file " + path);
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            if (Integer.bitCount(capacity) != 1 || channel.size() < HEADER_SIZE + 2L * capacity)
+                throw new IOException("Invalid ring capacity on " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 2L * capacity);
+            return new SharedMemorySegment(path, channel, null, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    SharedMemoryRing requests() {
+        return requests;
+    }
+
+    SharedMemoryRing responses() {
+        return responses;
+    }
+
+    boolean isClosed() {
+        return MappedMemory.getLongVolatile(address + CLOSED_OFFSET) != 0;
+    }
+
+    /**
+     * Checks whether the client that created this segment is still running, only used by the server.
+     */
+    boolean isOwnerAlive() {
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null)
+                return true;
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException sameProcess) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Marks the segment as closed, the server stops executing requests from it and the client stops waiting for
+     * responses.
+     */
+    void markClosed() {
+        MappedMemory.putOrderedLong(address + CLOSED_OFFSET, 1);
+    }
+
+    /**
+     * Releases the file (and the client's lock on it), the segment must not be used after this.
+     */
+    void release() throws IOException {
+        if (ownerLock != null && ownerLock.isValid())
+            ownerLock.release();
+        channel.close();
+    }
+
+}
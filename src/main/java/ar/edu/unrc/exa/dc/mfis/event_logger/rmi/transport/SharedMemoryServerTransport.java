@@ -0,0 +1,223 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi.transport;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.LocalLogging;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.BinaryCodec;
+import ar.edu.unrc.exa.dc.mfis.event_logger.rmi.server.EventLoggerServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves clients running on the same host through {@link SharedMemorySegment}s, created by each client on a shared
+ * directory. A single thread polls every client's request ring, executes the requests in order and writes the
+ * responses on the client's response ring. When there are no requests it spins for a short while, then parks for
+ * increasingly longer times (up to a millisecond).
+ * <p>
+ * The server holds a lock on a file on the same directory while it's running, which is how clients know whether a
+ * server is running.
+ */
+final class SharedMemoryServerTransport implements ServerTransport {
+
+    private static final Logger logger = LocalLogging.getLogger(SharedMemoryServerTransport.class);
+
+    private static final String SERVER_LOCK_FILE = "server.lock";
+    private static final long SCAN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_REQUESTS_PER_CLIENT = 64;
+
+    private final Path directory = Paths.get(EventLoggerProperties.shmDirectory());
+    /*
+     * Only used from the polling thread.
+     */
+    private final BinaryCodec.Writer writer = new BinaryCodec.Writer(4096);
+    private final List<Client> clients = new ArrayList<>();
+    private final Set<Path> knownSegments = new HashSet<>();
+    private EventLoggerServer server;
+    private FileChannel lockChannel;
+    private FileLock serverLock;
+    private volatile boolean stopRequested = false;
+
+    /**
+     * Checks whether a server is running using {@code directory}.
+     */
+    static boolean isRunning(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(SERVER_LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null)
+                return true;
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException sameProcess) {
+            return true;
+        }
+    }
+
+    @Override
+    public void start(EventLoggerServer server) throws IOException {
+        this.server = server;
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(SERVER_LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        serverLock = lockChannel.tryLock();
+        if (serverLock == null) {
+            lockChannel.close();
+            throw new IOException("Another server is already running on " + directory);
+        }
+        Thread pollingThread = new Thread(this::run, "EventLoggerServer-shm");
+        pollingThread.start();
+        logger.info("EventLoggerServer polling segments at " + directory);
+    }
+
+    /**
+     * Stops attaching new clients and lets a new server start, already attached clients are still served until the
+     * server shuts down.
+     */
+    @Override
+    public void stop() throws IOException {
+        stopRequested = true;
+        serverLock.release();
+        lockChannel.close();
+    }
+
+    private void run() {
+        long nextScan = System.nanoTime();
+        int idleCount = 0;
+        while (true) {
+            boolean executed = false;
+            for (Client client : clients) {
+                executed |= client.executeRequests(MAX_REQUESTS_PER_CLIENT);
+            }
+            if (System.nanoTime() - nextScan >= 0) {
+                if (!stopRequested)
+                    attachNewClients();
+                detachFinishedClients();
+                nextScan = System.nanoTime() + SCAN_INTERVAL_NANOS;
+            }
+            if (executed)
+                idleCount = 0;
+            else
+                SharedMemoryRing.idle(idleCount++);
+        }
+    }
+
+    private void attachNewClients() {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SharedMemorySegment.FILE_EXTENSION)) {
+            for (Path path : segments) {
+                if (!knownSegments.add(path))
+                    continue;
+                try {
+                    clients.add(new Client(SharedMemorySegment.open(path)));
+                    logger.info("Attached client " + path.getFileName());
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Ignoring segment " + path + "\n", e);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while looking for new clients on " + directory + "\n", e);
+        }
+    }
+
+    /*
+     * Clients that closed their segment or whose process ended have their remaining requests executed (responses are
+     * discarded) and their segment deleted.
+     */
+    private void detachFinishedClients() {
+        Iterator<Client> clientIterator = clients.iterator();
+        while (clientIterator.hasNext()) {
+            Client client = clientIterator.next();
+            if (client.failed || client.segment.isClosed() || !client.segment.isOwnerAlive()) {
+                if (!client.failed) {
+                    client.finished = true;
+                    while (client.executeRequests(Integer.MAX_VALUE)) {
+                        // execute every remaining request
+                    }
+                }
+                clientIterator.remove();
+                knownSegments.remove(client.segment.path());
+                try {
+                    client.segment.release();
+                    Files.deleteIfExists(client.segment.path());
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Error while releasing segment " + client.segment.path() + "\n", e);
+                }
+                logger.info("Detached client " + client.segment.path().getFileName());
+            }
+        }
+    }
+
+    private final class Client {
+
+        private final SharedMemorySegment segment;
+        // set once the client is gone, responses are discarded
+        private boolean finished = false;
+        // set when a request couldn't be executed, no more requests are executed
+        private boolean failed = false;
+
+        private Client(SharedMemorySegment segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * @return {@code true} if at least one request was executed.
+         */
+        private boolean executeRequests(int maxRequests) {
+            int executed = 0;
+            while (executed < maxRequests && !failed) {
+                try {
+                    // polling is also guarded, a client's corrupted ring must only detach that client
+                    byte[] frame = segment.requests().poll();
+                    if (frame == null)
+                        break;
+                    executed++;
+                    NioFrames.execute(server, ByteBuffer.wrap(frame), writer);
+                    int maxResponseSize = segment.responses().maxFrameSize();
+                    if (writer.size() - NioFrames.LENGTH_SIZE > maxResponseSize)
+                        NioFrames.writeError(ByteBuffer.wrap(frame), "Response exceeds the maximum of " + maxResponseSize + " bytes, try a larger " + EventLoggerProperties.ConfigKey.EVENT_LOGGER_SHM_RING_CAPACITY.getKey(), writer);
+                    if (writer.size() - NioFrames.LENGTH_SIZE > maxResponseSize)
+                        throw new IOException("Error response exceeds the maximum of " + maxResponseSize + " bytes");
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Error while executing a request from " + segment.path().getFileName() + ", detaching client\n", e);
+                    failed = true;
+                    finished = true;
+                    segment.markClosed();
+                    return true;
+                }
+                writeResponse();
+            }
+            return executed > 0;
+        }
+
+        /*
+         * Waits for space on the response ring while the client is still running.
+         */
+        private void writeResponse() {
+            long nextCheck = System.nanoTime() + SCAN_INTERVAL_NANOS;
+            int idleCount = 0;
+            while (!finished && !segment.responses().offer(writer.buffer(), NioFrames.LENGTH_SIZE, writer.size() - NioFrames.LENGTH_SIZE)) {
+                if (System.nanoTime() - nextCheck >= 0) {
+                    finished = segment.isClosed() || !segment.isOwnerAlive();
+                    nextCheck = System.nanoTime() + SCAN_INTERVAL_NANOS;
+                }
+                SharedMemoryRing.idle(idleCount++);
+            }
+        }
+
+    }
+
+}
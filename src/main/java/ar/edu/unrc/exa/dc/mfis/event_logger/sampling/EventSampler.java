@@ -0,0 +1,265 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.sampling;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which events are recorded, following rules matched against the event's name.
+ * <p>
+ * Rules are written as {@code pattern=policy} separated by {@code ;} and the first rule whose pattern matches the name
+ * is used, events matching no rule are always recorded. A pattern is an event name where {@code *} matches any
+ * sequence of characters (e.g.: {@code db.query.*}). Policies are:
+ * <ul>
+ *     <li>{@code probability:P} records each event with probability {@code P}, between 0 and 1.</li>
+ *     <li>{@code every:N} records one of every {@code N} events.</li>
+ *     <li>{@code rate:N} records up to {@code N} events per second, allowing bursts of up to {@code N} events.</li>
+ * </ul>
+ * For example {@code db.query.*=probability:0.01;cache.*=every:100;http.request.*=rate:50}. Deciding is lock free and
+ * doesn't allocate.
+ */
+public class EventSampler {
+
+    private static final EventSampler NO_SAMPLING = new EventSampler(Collections.emptyList());
+
+    private final Rule[] rules;
+
+    private EventSampler(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+    }
+
+    /**
+     * @return a sampler following {@link EventLoggerProperties#samplingRules()}.
+     */
+    public static EventSampler fromProperties() {
+        String rules = EventLoggerProperties.samplingRules();
+        return rules.isEmpty() ? NO_SAMPLING : parse(rules);
+    }
+
+    /**
+     * @param rules : the rules, as described on {@link EventSampler}.
+     * @throws IllegalArgumentException if a rule is not valid.
+     */
+    public static EventSampler parse(String rules) {
+        List<Rule> parsed = new ArrayList<>();
+        for (String rule : rules.split(";")) {
+            if (rule.trim().isEmpty())
+                continue;
+            int separator = rule.indexOf('=');
+            if (separator <= 0)
+                throw new IllegalArgumentException("Invalid sampling rule " + rule + ", expected pattern=policy");
+            parsed.add(Rule.parse(rule.substring(0, separator).trim(), rule.substring(separator + 1).trim()));
+        }
+        return new EventSampler(parsed);
+    }
+
+    /**
+     * @return the first rule matching {@code name}, {@code null} if the event is not sampled.
+     */
+    public Rule rule(String name) {
+        for (Rule rule : rules) {
+            if (matches(rule.pattern, name))
+                return rule;
+        }
+        return null;
+    }
+
+    /**
+     * @return the rule with the given pattern, {@code null} if there is none.
+     */
+    public Rule ruleWithPattern(String pattern) {
+        for (Rule rule : rules) {
+            if (rule.pattern.equals(pattern))
+                return rule;
+        }
+        return null;
+    }
+
+    /**
+     * @return every rule, in the order they are matched.
+     */
+    public List<Rule> rules() {
+        return Collections.unmodifiableList(Arrays.asList(rules));
+    }
+
+    /**
+     * @return {@code true} iff there are no rules, so every event is recorded.
+     */
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    /*
+     * Glob matching where '*' matches any sequence of characters, backtracking only to the last '*' seen.
+     */
+    static boolean matches(String pattern, String name) {
+        int p = 0;
+        int n = 0;
+        int star = -1;
+        int starMatch = 0;
+        while (n < name.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                starMatch = n;
+            } else if (p < pattern.length() && pattern.charAt(p) == name.charAt(n)) {
+                p++;
+                n++;
+            } else if (star >= 0) {
+                p = star + 1;
+                n = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*')
+            p++;
+        return p == pattern.length();
+    }
+
+    /**
+     * A pattern and the policy deciding which of the events matching it are recorded. A rule also counts the events it
+     * skipped, so whoever reports them (see {@link #takeSkipped()}) lets totals be estimated.
+     */
+    public static abstract class Rule {
+
+        private final String pattern;
+        private final AtomicLong skipped = new AtomicLong();
+
+        Rule(String pattern) {
+            this.pattern = pattern;
+        }
+
+        static Rule parse(String pattern, String policy) {
+            if (pattern.isEmpty())
+                throw new IllegalArgumentException("Sampling rule " + pattern + "=" + policy + " has no pattern");
+            int separator = policy.indexOf(':');
+            String kind = separator < 0 ? policy : policy.substring(0, separator).trim();
+            String value = separator < 0 ? "" : policy.substring(separator + 1).trim();
+            try {
+                switch (kind) {
+                    case "probability": {
+                        double probability = Double.parseDouble(value);
+                        if (!(probability >= 0 && probability <= 1))
+                            break;
+                        return new Probability(pattern, probability);
+                    }
+                    case "every": {
+                        long every = Long.parseLong(value);
+                        if (every <= 0)
+                            break;
+                        return new Every(pattern, every);
+                    }
+                    case "rate": {
+                        long rate = Long.parseLong(value);
+                        if (rate <= 0)
+                            break;
+                        return new Rate(pattern, rate);
+                    }
+                }
+            } catch (NumberFormatException ignored) {}
+            throw new IllegalArgumentException("Invalid sampling policy " + policy + " for pattern " + pattern + ", expected probability:P, every:N or rate:N");
+        }
+
+        public String pattern() {
+            return pattern;
+        }
+
+        /**
+         * Decides whether the next event matching this rule is recorded, counting it as skipped if it isn't.
+         * @return {@code true} iff the event is recorded.
+         */
+        public boolean sample() {
+            if (accept())
+                return true;
+            skip();
+            return false;
+        }
+
+        /**
+         * Counts an event matching this rule as skipped without sampling it (e.g.: because its parent was skipped).
+         */
+        public void skip() {
+            skipped.incrementAndGet();
+        }
+
+        /**
+         * @return the events skipped since the last call, which are then no longer counted.
+         */
+        public long takeSkipped() {
+            return skipped.getAndSet(0);
+        }
+
+        abstract boolean accept();
+
+    }
+
+    private static class Probability extends Rule {
+
+        private final double probability;
+
+        Probability(String pattern, double probability) {
+            super(pattern);
+            this.probability = probability;
+        }
+
+        @Override
+        boolean accept() {
+            return ThreadLocalRandom.current().nextDouble() < probability;
+        }
+
+    }
+
+    private static class Every extends Rule {
+
+        private final long every;
+        private final AtomicLong seen = new AtomicLong();
+
+        Every(String pattern, long every) {
+            super(pattern);
+            this.every = every;
+        }
+
+        @Override
+        boolean accept() {
+            return seen.getAndIncrement() % every == 0;
+        }
+
+    }
+
+    /*
+     * A token bucket holding up to a second worth of events, kept as the time at which the bucket is full again
+     * (generic cell rate algorithm) so taking a token is a single compare and set.
+     */
+    private static class Rate extends Rule {
+
+        private static final long SECOND = 1_000_000_000L;
+
+        private final long interval;
+        private final AtomicLong full = new AtomicLong(System.nanoTime());
+
+        Rate(String pattern, long rate) {
+            super(pattern);
+            this.interval = Math.max(1, SECOND / rate);
+        }
+
+        @Override
+        boolean accept() {
+            long now = System.nanoTime();
+            while (true) {
+                long current = full.get();
+                long next = Math.max(current - now, 0) + interval;
+                if (next > SECOND)
+                    return false;
+                if (full.compareAndSet(current, now + next))
+                    return true;
+            }
+        }
+
+    }
+
+}
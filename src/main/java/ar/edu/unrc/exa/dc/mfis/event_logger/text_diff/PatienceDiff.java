@@ -0,0 +1,142 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.text_diff;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.algorithm.DiffAlgorithmI;
+import com.github.difflib.algorithm.DiffAlgorithmListener;
+import com.github.difflib.algorithm.myers.MeyersDiff;
+import com.github.difflib.patch.DeltaType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Patience diff: lines appearing exactly once in both sequences are used as anchors (keeping the longest increasing
+ * sequence of them) and the regions between anchors are compared recursively. Regions without any anchor are compared
+ * using Myers' algorithm.
+ * <p>
+ * Lines are compared by their {@code equals} method, so this works best on hashed lines. The listener's
+ * {@code diffStep} is called on each region, allowing a caller to abort a long running diff by throwing from it.
+ */
+class PatienceDiff<T> implements DiffAlgorithmI<T> {
+
+    private final DiffAlgorithmI<T> fallback = new MeyersDiff<>();
+
+    @Override
+    public List<Change> computeDiff(List<T> source, List<T> target, DiffAlgorithmListener progress) {
+        List<Change> changes = new ArrayList<>();
+        if (progress != null)
+            progress.diffStart();
+        diff(source, 0, source.size(), target, 0, target.size(), changes, progress);
+        if (progress != null)
+            progress.diffEnd();
+        return changes;
+    }
+
+    private void diff(List<T> source, int sourceFrom, int sourceTo, List<T> target, int targetFrom, int targetTo, List<Change> changes, DiffAlgorithmListener progress) {
+        if (progress != null)
+            progress.diffStep(sourceFrom, source.size());
+        while (sourceFrom < sourceTo && targetFrom < targetTo && source.get(sourceFrom).equals(target.get(targetFrom))) {
+            sourceFrom++;
+            targetFrom++;
+        }
+        while (sourceFrom < sourceTo && targetFrom < targetTo && source.get(sourceTo - 1).equals(target.get(targetTo - 1))) {
+            sourceTo--;
+            targetTo--;
+        }
+        if (sourceFrom == sourceTo && targetFrom == targetTo)
+            return;
+        if (sourceFrom == sourceTo) {
+            changes.add(new Change(DeltaType.INSERT, sourceFrom, sourceTo, targetFrom, targetTo));
+            return;
+        }
+        if (targetFrom == targetTo) {
+            changes.add(new Change(DeltaType.DELETE, sourceFrom, sourceTo, targetFrom, targetTo));
+            return;
+        }
+        int[][] anchors = uniqueCommonLines(source, sourceFrom, sourceTo, target, targetFrom, targetTo);
+        if (anchors.length == 0) {
+            List<Change> regionChanges = fallback.computeDiff(source.subList(sourceFrom, sourceTo), target.subList(targetFrom, targetTo), progress);
+            for (Change change : regionChanges) {
+                changes.add(new Change(change.deltaType,
+                        change.startOriginal + sourceFrom, change.endOriginal + sourceFrom,
+                        change.startRevised + targetFrom, change.endRevised + targetFrom));
+            }
+            return;
+        }
+        int previousSource = sourceFrom;
+        int previousTarget = targetFrom;
+        for (int[] anchor : anchors) {
+            diff(source, previousSource, anchor[0], target, previousTarget, anchor[1], changes, progress);
+            previousSource = anchor[0] + 1;
+            previousTarget = anchor[1] + 1;
+        }
+        diff(source, previousSource, sourceTo, target, previousTarget, targetTo, changes, progress);
+    }
+
+    /*
+     * Returns the positions (source, target) of lines occurring once in each region, ordered by source position and
+     * keeping only the longest sequence also increasing on target position.
+     */
+    private int[][] uniqueCommonLines(List<T> source, int sourceFrom, int sourceTo, List<T> target, int targetFrom, int targetTo) {
+        Map<T, int[]> occurrences = new HashMap<>();
+        for (int i = sourceFrom; i < sourceTo; i++) {
+            int[] occurrence = occurrences.get(source.get(i));
+            if (occurrence == null)
+                occurrences.put(source.get(i), new int[]{1, i, 0, -1});
+            else
+                occurrence[0]++;
+        }
+        for (int i = targetFrom; i < targetTo; i++) {
+            int[] occurrence = occurrences.get(target.get(i));
+            if (occurrence != null) {
+                occurrence[2]++;
+                occurrence[3] = i;
+            }
+        }
+        List<int[]> candidates = new ArrayList<>();
+        for (int i = sourceFrom; i < sourceTo; i++) {
+            int[] occurrence = occurrences.get(source.get(i));
+            if (occurrence[0] == 1 && occurrence[2] == 1)
+                candidates.add(new int[]{occurrence[1], occurrence[3]});
+        }
+        return longestIncreasingSequence(candidates);
+    }
+
+    /*
+     * Patience sorting on target positions, candidates are already ordered by source position.
+     */
+    private int[][] longestIncreasingSequence(List<int[]> candidates) {
+        int size = candidates.size();
+        if (size == 0)
+            return new int[0][];
+        int[] pileTops = new int[size];
+        int[] predecessors = new int[size];
+        int piles = 0;
+        for (int i = 0; i < size; i++) {
+            int targetPosition = candidates.get(i)[1];
+            int low = 0;
+            int high = piles;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (candidates.get(pileTops[middle])[1] < targetPosition)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            predecessors[i] = low > 0 ? pileTops[low - 1] : -1;
+            pileTops[low] = i;
+            if (low == piles)
+                piles++;
+        }
+        int[][] sequence = new int[piles][];
+        int current = pileTops[piles - 1];
+        for (int i = piles - 1; i >= 0; i--) {
+            sequence[i] = candidates.get(current);
+            current = predecessors[current];
+        }
+        return sequence;
+    }
+
+}
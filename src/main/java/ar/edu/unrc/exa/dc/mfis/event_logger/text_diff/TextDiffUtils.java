@@ -1,30 +1,218 @@
 package ar.edu.unrc.exa.dc.mfis.event_logger.text_diff;
 
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties.DiffAlgorithm;
+import ar.edu.unrc.exa.dc.mfis.event_logger.timing.LatencyHistogram;
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.algorithm.DiffAlgorithmI;
+import com.github.difflib.algorithm.DiffAlgorithmListener;
+import com.github.difflib.algorithm.myers.MeyersDiff;
+import com.github.difflib.algorithm.myers.MeyersDiffWithLinearSpace;
+import com.github.difflib.patch.Patch;
 import com.github.difflib.text.DiffRow;
 import com.github.difflib.text.DiffRowGenerator;
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * Line based text difference, this class is thread safe.
+ * <p>
+ * Small inputs are compared line by line using Myers' algorithm. When the combined size of both texts reaches
+ * {@link EventLoggerProperties#diffLargeInputThreshold()} each distinct line is replaced by an integer id (so lines are
+ * compared by id instead of by content) and the algorithm configured by {@link EventLoggerProperties#diffAlgorithm()}
+ * is used. When the combined size reaches {@link EventLoggerProperties#diffMaxInputSize()}, or calculating the
+ * difference takes longer than {@link EventLoggerProperties#diffTimeBudget()}, only a summary with the amount of
+ * changed lines is returned.
+ */
 public class TextDiffUtils {
 
+    private static final ExecutorService diffExecutor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            runnable -> {
+                Thread thread = new Thread(runnable, "TextDiffUtils-diff");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
+    private static final DiffRowGenerator generator = DiffRowGenerator.create()
+            .showInlineDiffs(true)
+            .mergeOriginalRevised(false)
+            .inlineDiffByWord(false)
+            .oldTag(f -> "~")
+            .newTag(f -> "**")
+            .build();
+
+    private static final LatencyHistogram durations = new LatencyHistogram();
+
+    private static final DiffAlgorithm largeInputAlgorithm = EventLoggerProperties.diffAlgorithm();
+    private static final int largeInputThreshold = EventLoggerProperties.diffLargeInputThreshold();
+    private static final int maxInputSize = EventLoggerProperties.diffMaxInputSize();
+    private static final long timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(EventLoggerProperties.diffTimeBudget());
+
+    private static class TimeBudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private TimeBudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
     public static List<String> diff(String original, String revised) {
-        List<String> originalLines = Arrays.asList(original.split("\\r?\\n"));
-        List<String> revisedLines = Arrays.asList(revised.split("\\r?\\n"));
-        DiffRowGenerator generator = DiffRowGenerator.create()
-                .showInlineDiffs(true)
-                .mergeOriginalRevised(false)
-                .inlineDiffByWord(false)
-                .oldTag(f -> "~")
-                .newTag(f -> "**")
-                .build();
-        List<DiffRow> diffRows = generator.generateDiffRows(originalLines, revisedLines);
-        List<String> differences = new LinkedList<>();
-        for (DiffRow diffRow : diffRows) {
-            differences.add(diffRow.toString());
-        }
-        return differences;
+        long inputSize = (long) original.length() + revised.length();
+        if (inputSize >= maxInputSize)
+            return summary(original, revised, "input exceeds " + maxInputSize + " characters");
+        List<String> originalLines = splitLines(original);
+        List<String> revisedLines = splitLines(revised);
+        DiffAlgorithmListener deadline = deadline();
+        try {
+            Patch<String> patch;
+            if (inputSize >= largeInputThreshold) {
+                Map<String, Integer> lineIds = new HashMap<>();
+                List<Integer> originalIds = toLineIds(originalLines, lineIds);
+                List<Integer> revisedIds = toLineIds(revisedLines, lineIds);
+                List<Change> changes = TextDiffUtils.<Integer>algorithm(largeInputAlgorithm).computeDiff(originalIds, revisedIds, deadline);
+                patch = Patch.generate(originalLines, revisedLines, changes);
+            } else {
+                patch = Patch.generate(originalLines, revisedLines, new MeyersDiff<String>().computeDiff(originalLines, revisedLines, deadline));
+            }
+            List<DiffRow> diffRows = generator.generateDiffRows(originalLines, patch);
+            List<String> differences = new ArrayList<>(diffRows.size());
+            for (DiffRow diffRow : diffRows) {
+                differences.add(diffRow.toString());
+            }
+            return differences;
+        } catch (TimeBudgetExceededException timeBudgetExceeded) {
+            return summary(original, revised, "time budget of " + TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos) + "ms exceeded");
+        }
+    }
+
+    /**
+     * Calculates {@link #diff(String, String)} on a background thread.
+     */
+    public static CompletableFuture<List<String>> diffAsync(String original, String revised) {
+        return diffAsync(() -> original, () -> revised);
+    }
+
+    /**
+     * Same as {@link #diffAsync(String, String)}, with texts that are only built on the background thread (e.g.: when
+     * they have to be inflated).
+     */
+    public static CompletableFuture<List<String>> diffAsync(Supplier<String> original, Supplier<String> revised) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return diff(original.get(), revised.get());
+            } finally {
+                durations.record(System.nanoTime() - start);
+            }
+        }, diffExecutor);
+    }
+
+    /**
+     * @return the durations of every difference calculated by {@link #diffAsync(String, String)} in this process.
+     */
+    public static LatencyHistogram durations() {
+        return durations;
+    }
+
+    /**
+     * Splits a text into lines, behaves as {@code text.split("\\r?\\n")} without using regular expressions.
+     */
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        int nextLine;
+        while ((nextLine = text.indexOf('\n', lineStart)) >= 0) {
+            int lineEnd = nextLine > lineStart && text.charAt(nextLine - 1) == '\r' ? nextLine - 1 : nextLine;
+            lines.add(text.substring(lineStart, lineEnd));
+            lineStart = nextLine + 1;
+        }
+        if (lineStart == 0)
+            return Collections.singletonList(text);
+        lines.add(text.substring(lineStart));
+        int size = lines.size();
+        while (size > 0 && lines.get(size - 1).isEmpty())
+            lines.remove(--size);
+        return lines;
+    }
+
+    private static List<Integer> toLineIds(List<String> lines, Map<String, Integer> lineIds) {
+        List<Integer> ids = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            Integer id = lineIds.get(line);
+            if (id == null) {
+                id = lineIds.size();
+                lineIds.put(line, id);
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static <T> DiffAlgorithmI<T> algorithm(DiffAlgorithm diffAlgorithm) {
+        switch (diffAlgorithm) {
+            case PATIENCE: return new PatienceDiff<>();
+            case MYERS_LINEAR_SPACE: return new MeyersDiffWithLinearSpace<>();
+            case MYERS:
+            default: return new MeyersDiff<>();
+        }
+    }
+
+    /*
+     * A listener that aborts the diff once the time budget is exceeded, algorithms call diffStep on each iteration.
+     */
+    private static DiffAlgorithmListener deadline() {
+        if (timeBudgetNanos == 0)
+            return null;
+        final long deadline = System.nanoTime() + timeBudgetNanos;
+        return new DiffAlgorithmListener() {
+            @Override
+            public void diffStart() {}
+
+            @Override
+            public void diffStep(int value, int max) {
+                if (System.nanoTime() - deadline > 0)
+                    throw new TimeBudgetExceededException();
+            }
+
+            @Override
+            public void diffEnd() {}
+        };
+    }
+
+    /*
+     * Counts lines of each text without a matching line in the other one (taking repeated lines into account).
+     */
+    private static List<String> summary(String original, String revised, String reason) {
+        Map<String, int[]> lineCount = new HashMap<>();
+        for (String line : splitLines(original)) {
+            lineCount.computeIfAbsent(line, l -> new int[1])[0]++;
+        }
+        int added = 0;
+        for (String line : splitLines(revised)) {
+            int[] count = lineCount.get(line);
+            if (count == null || count[0] == 0)
+                added++;
+            else
+                count[0]--;
+        }
+        int removed = 0;
+        for (int[] count : lineCount.values()) {
+            removed += count[0];
+        }
+        return Collections.singletonList(
+                Math.max(added, removed) + " lines changed (" + removed + " removed, " + added + " added), full difference not calculated: " + reason
+        );
     }
 
 }
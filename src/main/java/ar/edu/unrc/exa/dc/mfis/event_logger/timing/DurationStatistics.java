@@ -0,0 +1,98 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.timing;
+
+/**
+ * Streaming statistics of a series of durations: count, minimum, maximum, mean, variance and percentiles, using a
+ * fixed amount of memory regardless of how many durations are recorded.
+ * <p>
+ * Mean and variance are updated with Welford's algorithm, so they don't lose precision as durations accumulate.
+ * Percentiles come from a {@link LatencyHistogram}. This class is thread safe.
+ */
+public class DurationStatistics {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long count = 0;
+    private long min = 0;
+    private long max = 0;
+    private double mean = 0;
+    private double squaredDeviations = 0;
+
+    /**
+     * @param nanoseconds : a duration, negative durations are recorded as zero.
+     */
+    public void record(long nanoseconds) {
+        long duration = Math.max(0, nanoseconds);
+        synchronized (this) {
+            count++;
+            if (count == 1 || duration < min)
+                min = duration;
+            if (count == 1 || duration > max)
+                max = duration;
+            double delta = duration - mean;
+            mean += delta / count;
+            squaredDeviations += delta * (duration - mean);
+        }
+        histogram.record(duration);
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long min() {
+        return min;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    public synchronized double mean() {
+        return mean;
+    }
+
+    /**
+     * The sample variance, 0 if less than two durations were recorded.
+     */
+    public synchronized double variance() {
+        return count < 2 ? 0 : squaredDeviations / (count - 1);
+    }
+
+    /**
+     * @param fraction : between 0 and 1 (e.g.: 0.99 for the 99th percentile).
+     * @see LatencyHistogram#percentile(double)
+     */
+    public long percentile(double fraction) {
+        long percentile = histogram.percentile(fraction);
+        synchronized (this) {
+            return Math.max(min, Math.min(max, percentile));
+        }
+    }
+
+    @Override
+    public String toString() {
+        long count;
+        long min;
+        long max;
+        double mean;
+        double variance;
+        synchronized (this) {
+            count = this.count;
+            min = this.min;
+            max = this.max;
+            mean = this.mean;
+            variance = variance();
+        }
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("\t\"count\":").append("\"").append(count).append("\"").append(",\n");
+        sb.append("\t\"min(ns)\":").append("\"").append(min).append("\"").append(",\n");
+        sb.append("\t\"max(ns)\":").append("\"").append(max).append("\"").append(",\n");
+        sb.append("\t\"mean(ns)\":").append("\"").append(mean).append("\"").append(",\n");
+        sb.append("\t\"variance(ns^2)\":").append("\"").append(variance).append("\"").append(",\n");
+        sb.append("\t\"p50(ns)\":").append("\"").append(percentile(0.5)).append("\"").append(",\n");
+        sb.append("\t\"p99(ns)\":").append("\"").append(percentile(0.99)).append("\"").append(",\n");
+        sb.append("\t\"p999(ns)\":").append("\"").append(percentile(0.999)).append("\"").append("\n");
+        sb.append("}");
+        return sb.toString();
+    }
+
+}
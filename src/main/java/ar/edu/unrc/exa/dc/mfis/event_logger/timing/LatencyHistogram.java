@@ -0,0 +1,102 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.timing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in logarithmic buckets, using a fixed amount of memory regardless of how many durations are
+ * recorded.
+ * <p>
+ * Durations under {@value #SUB_BUCKETS} nanoseconds have a bucket each, larger durations are split by their highest
+ * bit and then in {@value #SUB_BUCKETS} linear sub-buckets, so a percentile is reported with a relative error of at most
+ * 1/{@value #SUB_BUCKETS}. Recording a duration is a single atomic increment, percentiles read every bucket without
+ * blocking recording.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param nanoseconds : a duration, negative durations are counted as zero.
+     */
+    public void record(long nanoseconds) {
+        counts.incrementAndGet(bucket(Math.max(0, nanoseconds)));
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * The duration under which a given fraction of the recorded durations are.
+     * @param fraction : between 0 and 1 (e.g.: 0.99 for the 99th percentile).
+     * @return the largest duration of the bucket holding the percentile, 0 if no duration was recorded.
+     */
+    public long percentile(double fraction) {
+        if (fraction < 0 || fraction > 1)
+            throw new IllegalArgumentException("Invalid fraction " + fraction);
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return highestValue(i);
+        }
+        return highestValue(BUCKETS - 1);
+    }
+
+    /**
+     * The count of each bucket, so a histogram recorded elsewhere (e.g.: on another process) can be merged into another
+     * one with {@link #add(long[])}.
+     */
+    public long[] bucketCounts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            snapshot[i] = counts.get(i);
+        return snapshot;
+    }
+
+    /**
+     * Adds the counts of another histogram, as returned by {@link #bucketCounts()}.
+     * @throws IllegalArgumentException if {@code bucketCounts} does not have a count for each bucket.
+     */
+    public void add(long[] bucketCounts) {
+        if (bucketCounts.length != BUCKETS)
+            throw new IllegalArgumentException("Expected " + BUCKETS + " bucket counts, got " + bucketCounts.length);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (bucketCounts[i] != 0)
+                counts.addAndGet(i, bucketCounts[i]);
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
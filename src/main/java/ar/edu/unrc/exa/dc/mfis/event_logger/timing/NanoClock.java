@@ -0,0 +1,62 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.timing;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts between {@link System#nanoTime()} values, which are only meaningful inside the process that read them, and
+ * nanoseconds since the epoch, which can be stored and read by another process.
+ * <p>
+ * Both clocks are read once, when this class is initialized, and every conversion is relative to that pair of readings.
+ * Converting a {@link System#nanoTime()} value to the epoch and back (even on another process) keeps the difference
+ * between any two values exact. Durations are reported in seconds, see {@link #toSecondsExtended(long)}.
+ */
+public final class NanoClock {
+
+    private static final long ANCHOR_NANO_TIME;
+    private static final long ANCHOR_EPOCH_NANOS;
+
+    static {
+        Instant now = Instant.now();
+        ANCHOR_NANO_TIME = System.nanoTime();
+        ANCHOR_EPOCH_NANOS = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    private NanoClock() {}
+
+    /**
+     * @param nanoTime : a {@link System#nanoTime()} value.
+     * @return the corresponding nanoseconds since the epoch.
+     */
+    public static long toEpochNanos(long nanoTime) {
+        return ANCHOR_EPOCH_NANOS + (nanoTime - ANCHOR_NANO_TIME);
+    }
+
+    /**
+     * @param epochNanos : nanoseconds since the epoch.
+     * @return the corresponding {@link System#nanoTime()} value for this process.
+     */
+    public static long fromEpochNanos(long epochNanos) {
+        return ANCHOR_NANO_TIME + (epochNanos - ANCHOR_EPOCH_NANOS);
+    }
+
+    /**
+     * @param nanoTime : a {@link System#nanoTime()} value.
+     * @return the corresponding instant.
+     */
+    public static Instant toInstant(long nanoTime) {
+        long epochNanos = toEpochNanos(nanoTime);
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+
+    /**
+     * Converts nanoseconds to seconds keeping milliseconds as the decimal part.
+     */
+    public static double toSecondsExtended(long nanoseconds) {
+        long wholeSeconds = TimeUnit.NANOSECONDS.toSeconds(nanoseconds);
+        long wholeMilliseconds = TimeUnit.NANOSECONDS.toMillis(nanoseconds);
+        wholeMilliseconds -= wholeSeconds * 1000;
+        return wholeSeconds + (wholeMilliseconds / 1000d);
+    }
+
+}
@@ -0,0 +1,259 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Payload;
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static ar.edu.unrc.exa.dc.mfis.event_logger.rmi.RoundTripSamples.describe;
+import static org.junit.Assert.*;
+
+public class BinaryCodecTest {
+
+    // same values as the flags written by BinaryCodec
+    private static final int REQUEST_HAS_NAME = 1;
+    private static final int REQUEST_HAS_INITIAL_DATA = 1 << 1;
+    private static final int REQUEST_INITIAL_DATA_COMPRESSED = 1 << 12;
+    private static final int RESPONSE_HAS_MULTIPLE_TEXT_DATA = 1 << 1;
+
+    @Test
+    public void everyRequestTypeHasASample() {
+        Set<Request.RequestType> missing = EnumSet.allOf(Request.RequestType.class);
+        for (Request request : RoundTripSamples.requests().values()) {
+            missing.remove(request.requestType());
+        }
+        assertTrue("Request types without a sample " + missing, missing.isEmpty());
+    }
+
+    @Test
+    public void everyResponseTypeHasASample() {
+        Set<Response.ResponseType> missing = EnumSet.allOf(Response.ResponseType.class);
+        for (Response response : RoundTripSamples.responses().values()) {
+            missing.remove(response.responseType());
+        }
+        assertTrue("Response types without a sample " + missing, missing.isEmpty());
+    }
+
+    @Test
+    public void everyOptionalValueHasASample() {
+        boolean clientTimestamp = false, clockOffset = false, paged = false, pageToken = false, timeWindow = false;
+        boolean handle = false, parent = false, sampled = false, calculateDifference = false, noDifference = false;
+        boolean initialCompressed = false, finalCompressed = false;
+        for (Request request : RoundTripSamples.requests().values()) {
+            clientTimestamp |= request.hasClientTimestamp();
+            clockOffset |= request.hasClockOffset();
+            paged |= request.isPaged();
+            pageToken |= request.hasPageToken();
+            timeWindow |= request.hasTimeWindow();
+            handle |= request.hasHandle();
+            parent |= request.hasParent();
+            sampled |= request.isSampled();
+            calculateDifference |= request.calculateDifference();
+            noDifference |= !request.calculateDifference();
+            initialCompressed |= request.hasInitialData() && request.initialPayload().isCompressed();
+            finalCompressed |= request.hasFinalData() && request.finalPayload().isCompressed();
+        }
+        assertTrue(clientTimestamp && clockOffset && paged && pageToken && timeWindow && handle && parent && sampled
+                && calculateDifference && noDifference && initialCompressed && finalCompressed);
+        boolean continuationToken = false, responseHandle = false, booleanData = false, noRequest = false;
+        for (Response response : RoundTripSamples.responses().values()) {
+            continuationToken |= response.hasContinuationToken();
+            responseHandle |= response.hasHandle();
+            booleanData |= response.booleanData();
+            noRequest |= response.originatingRequest() == null;
+        }
+        assertTrue(continuationToken && responseHandle && booleanData && noRequest);
+    }
+
+    @Test
+    public void requestsRoundTrip() {
+        for (Map.Entry<String, Request> sample : RoundTripSamples.requests().entrySet()) {
+            Request decoded = BinaryCodec.decodeRequest(BinaryCodec.encode(sample.getValue()));
+            assertEquals(sample.getKey(), describe(sample.getValue()), describe(decoded));
+        }
+    }
+
+    @Test
+    public void responsesRoundTrip() {
+        for (Map.Entry<String, Response> sample : RoundTripSamples.responses().entrySet()) {
+            Response decoded = BinaryCodec.decodeResponse(BinaryCodec.encode(sample.getValue()));
+            assertEquals(sample.getKey(), describe(sample.getValue()), describe(decoded));
+        }
+    }
+
+    @Test
+    public void compressedPayloadsAreSentCompressed() {
+        Request request = Request.startInstantEvent("event", RoundTripSamples.LARGE, RoundTripSamples.LARGE + "changed", true);
+        byte[] encoded = BinaryCodec.encode(request);
+        assertTrue(encoded.length < RoundTripSamples.LARGE.length() / 10);
+        Request decoded = BinaryCodec.decodeRequest(encoded);
+        assertTrue(decoded.initialPayload().isCompressed());
+        assertTrue(decoded.finalPayload().isCompressed());
+        assertArrayEquals(request.initialPayload().compressed(), decoded.initialPayload().compressed());
+        assertEquals(RoundTripSamples.LARGE.length(), decoded.initialPayload().length());
+        assertEquals(RoundTripSamples.LARGE, decoded.initialData());
+        assertEquals(RoundTripSamples.LARGE + "changed", decoded.finalData());
+    }
+
+    @Test
+    public void smallPayloadsAreSentPlain() {
+        Request decoded = BinaryCodec.decodeRequest(BinaryCodec.encode(Request.startEvent("event", RoundTripSamples.SMALL)));
+        assertFalse(decoded.initialPayload().isCompressed());
+        assertEquals(RoundTripSamples.SMALL, decoded.initialData());
+    }
+
+    @Test
+    public void unknownRequestTypeIsRejected() {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        writer.writeVarInt(Request.RequestType.values().length);
+        writer.writeVarInt(0);
+        assertMalformed(writer, true, "unknown ordinal");
+    }
+
+    @Test
+    public void unknownResponseTypeIsRejected() {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        writer.writeVarInt(Response.ResponseType.values().length);
+        writer.writeVarInt(0);
+        assertMalformed(writer, false, "unknown ordinal");
+    }
+
+    @Test
+    public void negativeStringLengthIsRejected() {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        writer.writeVarInt(Request.RequestType.START_EVENT.ordinal());
+        writer.writeVarInt(REQUEST_HAS_NAME);
+        writer.writeVarInt(-1);
+        assertMalformed(writer, true, "Malformed length -1");
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void stringLongerThanTheInputIsRejected() {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        writer.writeVarInt(Request.RequestType.START_EVENT.ordinal());
+        writer.writeVarInt(REQUEST_HAS_NAME);
+        writer.writeVarInt(Integer.MAX_VALUE);
+        writer.writeByte('e');
+        BinaryCodec.decodeRequest(writer.toByteArray());
+    }
+
+    @Test
+    public void unterminatedVariableLengthIntegerIsRejected() {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        for (int i = 0; i < 5; i++) {
+            writer.writeByte(0xFF);
+        }
+        assertMalformed(writer, true, "Malformed variable length integer");
+    }
+
+    @Test
+    public void listLargerThanTheInputIsRejected() {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        writer.writeVarInt(Response.ResponseType.EVENT_NAMES.ordinal());
+        writer.writeVarInt(RESPONSE_HAS_MULTIPLE_TEXT_DATA);
+        writer.writeVarInt(Integer.MAX_VALUE);
+        assertMalformed(writer, false, "Malformed length " + Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void truncatedInputIsRejected() {
+        for (Map.Entry<String, Request> sample : RoundTripSamples.requests().entrySet()) {
+            byte[] encoded = BinaryCodec.encode(sample.getValue());
+            for (int length = 0; length < encoded.length; length = length < 64 ? length + 1 : length * 2) {
+                try {
+                    BinaryCodec.decodeRequest(Arrays.copyOf(encoded, length));
+                    fail(sample.getKey() + " decoded from " + length + " of " + encoded.length + " bytes");
+                } catch (BufferUnderflowException | IllegalStateException expected) {
+                    // a truncated request is never decoded
+                }
+            }
+        }
+        for (Map.Entry<String, Response> sample : RoundTripSamples.responses().entrySet()) {
+            byte[] encoded = BinaryCodec.encode(sample.getValue());
+            for (int length = 0; length < encoded.length; length = length < 64 ? length + 1 : length * 2) {
+                try {
+                    BinaryCodec.decodeResponse(Arrays.copyOf(encoded, length));
+                    fail(sample.getKey() + " decoded from " + length + " of " + encoded.length + " bytes");
+                } catch (BufferUnderflowException | IllegalStateException expected) {
+                    // a truncated response is never decoded
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compressedPayloadLargerThanTheMaximumIsRejected() {
+        assertMalformed(compressedPayload(16, Integer.MAX_VALUE, new byte[16]), true, "Malformed payload");
+    }
+
+    @Test
+    public void compressedPayloadLargerThanItsBytesCanInflateToIsRejected() {
+        assertMalformed(compressedPayload(16, 100 * 1024 * 1024, new byte[16]), true, "Malformed payload");
+    }
+
+    @Test
+    public void compressedPayloadShorterThanItsCharactersIsRejected() {
+        assertMalformed(compressedPayload(100, 99, new byte[16]), true, "Malformed payload");
+    }
+
+    @Test
+    public void negativeCompressedPayloadLengthIsRejected() {
+        assertMalformed(compressedPayload(-1, 16, new byte[16]), true, "Malformed payload length");
+    }
+
+    @Test
+    public void corruptedCompressedPayloadFailsWhenInflated() {
+        byte[] corrupted = new byte[64];
+        Arrays.fill(corrupted, (byte) 0xFF);
+        Request request = BinaryCodec.decodeRequest(compressedPayload(64, 64, corrupted).toByteArray());
+        try {
+            request.initialData();
+            fail("Corrupted payload inflated");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Compressed payload is"));
+        }
+    }
+
+    @Test
+    public void truncatedCompressedPayloadFailsWhenInflated() {
+        Payload payload = Payload.of(RoundTripSamples.LARGE);
+        assertTrue(payload.isCompressed());
+        byte[] truncated = Arrays.copyOf(payload.compressed(), payload.compressed().length / 2);
+        Request request = BinaryCodec.decodeRequest(compressedPayload(payload.length(), payload.encodedLength(), truncated).toByteArray());
+        try {
+            request.initialData();
+            fail("Truncated payload inflated");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Compressed payload is truncated"));
+        }
+    }
+
+    private static BinaryCodec.Writer compressedPayload(int length, int encodedLength, byte[] compressed) {
+        BinaryCodec.Writer writer = new BinaryCodec.Writer();
+        writer.writeVarInt(Request.RequestType.START_EVENT.ordinal());
+        writer.writeVarInt(REQUEST_HAS_NAME | REQUEST_HAS_INITIAL_DATA | REQUEST_INITIAL_DATA_COMPRESSED);
+        writer.writeString("event");
+        writer.writeVarInt(length);
+        writer.writeVarInt(encodedLength);
+        writer.writeVarInt(compressed.length);
+        writer.writeBytes(compressed, 0, compressed.length);
+        return writer;
+    }
+
+    private static void assertMalformed(BinaryCodec.Writer writer, boolean request, String message) {
+        try {
+            if (request)
+                BinaryCodec.decodeRequest(writer.toByteArray());
+            else
+                BinaryCodec.decodeResponse(writer.toByteArray());
+            fail("Malformed input decoded");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(message));
+        }
+    }
+
+}
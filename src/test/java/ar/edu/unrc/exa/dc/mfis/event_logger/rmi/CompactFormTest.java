@@ -0,0 +1,135 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.properties.EventLoggerProperties;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static ar.edu.unrc.exa.dc.mfis.event_logger.rmi.RoundTripSamples.describe;
+import static org.junit.Assert.*;
+
+public class CompactFormTest {
+
+    private static final String COMPACT_SERIALIZATION = EventLoggerProperties.ConfigKey.EVENT_LOGGER_RMI_COMPACT_SERIALIZATION.getKey();
+
+    @After
+    public void clearCompactSerialization() {
+        System.clearProperty(COMPACT_SERIALIZATION);
+    }
+
+    @Test
+    public void samplesRoundTripWithCompactSerialization() throws Exception {
+        System.setProperty(COMPACT_SERIALIZATION, "true");
+        for (Map.Entry<String, Object> sample : samples().entrySet()) {
+            byte[] serialized = serialize(sample.getValue());
+            assertTrue(sample.getKey(), contains(serialized, CompactForm.class.getName()));
+            assertEquals(sample.getKey(), describe(sample.getValue()), describe(deserialize(serialized)));
+        }
+    }
+
+    @Test
+    public void samplesRoundTripWithDefaultSerialization() throws Exception {
+        System.setProperty(COMPACT_SERIALIZATION, "false");
+        for (Map.Entry<String, Object> sample : samples().entrySet()) {
+            byte[] serialized = serialize(sample.getValue());
+            assertFalse(sample.getKey(), contains(serialized, CompactForm.class.getName()));
+            assertEquals(sample.getKey(), describe(sample.getValue()), describe(deserialize(serialized)));
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void sizeLargerThanTheMaximumIsRejected() throws Exception {
+        readCompactForm(0, Integer.MAX_VALUE, new byte[0]);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void negativeSizeIsRejected() throws Exception {
+        readCompactForm(0, -1, new byte[0]);
+    }
+
+    @Test(expected = EOFException.class)
+    public void sizeLargerThanTheStreamIsRejected() throws Exception {
+        readCompactForm(0, 100 * 1024 * 1024, new byte[16]);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void unknownKindIsRejected() throws Exception {
+        byte[] encoded = BinaryCodec.encode(Request.listEventNames());
+        readCompactForm(2, encoded.length, encoded);
+    }
+
+    @Test
+    public void malformedEncodingIsRejected() throws Exception {
+        byte[] encoded = {(byte) Request.RequestType.values().length, 0};
+        try {
+            readCompactForm(0, encoded.length, encoded);
+            fail("Malformed compact form read");
+        } catch (StreamCorruptedException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static Map<String, Object> samples() {
+        Map<String, Object> samples = new LinkedHashMap<>(RoundTripSamples.requests());
+        samples.putAll(RoundTripSamples.responses());
+        return samples;
+    }
+
+    /*
+     * Reads a compact form written as CompactForm#writeExternal does, but with any kind, size and bytes.
+     */
+    private static void readCompactForm(int kind, int size, byte[] encoded) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeByte(kind);
+            while ((size & ~0x7F) != 0) {
+                out.writeByte((size & 0x7F) | 0x80);
+                size >>>= 7;
+            }
+            out.writeByte(size);
+            out.write(encoded);
+        }
+        CompactForm form = new CompactForm();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            form.readExternal(in);
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static boolean contains(byte[] bytes, String text) {
+        byte[] part = text.getBytes(StandardCharsets.UTF_8);
+        outer:
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (bytes[i + j] != part[j])
+                    continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+}
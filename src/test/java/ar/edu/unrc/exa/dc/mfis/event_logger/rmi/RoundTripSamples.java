@@ -0,0 +1,127 @@
+package ar.edu.unrc.exa.dc.mfis.event_logger.rmi;
+
+import ar.edu.unrc.exa.dc.mfis.event_logger.Payload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Requests and responses of every type, with every optional value set in at least one of them, used to check that
+ * encoding and decoding them preserves their values.
+ */
+final class RoundTripSamples {
+
+    static final String SMALL = "x = 1, y = 2";
+    // large enough to be compressed with the default compression threshold
+    static final String LARGE = repeat("line of program state with some values 12345\n", 1500);
+    static final String UNICODE = "Jos\u00e9 dijo \"hola\"\r\n\t\u20ac \ud83d\ude00 \u65e5\u672c";
+
+    private RoundTripSamples() {}
+
+    static Map<String, Request> requests() {
+        Map<String, Request> requests = new LinkedHashMap<>();
+        requests.put("startMainEvent", Request.startMainEvent(SMALL));
+        requests.put("startEvent", Request.startEvent("event", null));
+        requests.put("startEvent(empty data)", Request.startEvent("event", ""));
+        requests.put("startEvent(unicode)", Request.startEvent("evento-\u00f1and\u00fa-\u65e5\u672c", UNICODE));
+        requests.put("startEvent(timestamp, clock offset)", Request.startEvent("event", SMALL)
+                .withClientTimestamp(Long.MAX_VALUE).withClockOffset(-123_456_789L));
+        requests.put("startEvent(parent, handle, sampled)", Request.startEvent("event.child", SMALL).withParent("event")
+                .withHandle(Integer.MAX_VALUE).withSampled(42));
+        requests.put("startEvent(sampled, nothing skipped)", Request.startEvent("event", null).withSampled(0));
+        requests.put("startEvent(compressed)", Request.startEvent("event", LARGE));
+        requests.put("startInstantEvent(compressed)", Request.startInstantEvent("event", LARGE, LARGE + "changed", false));
+        requests.put("startRecurringEvent", Request.startRecurringEvent("event", SMALL));
+        requests.put("checkEventName", Request.checkEventName("event"));
+        requests.put("listEventNames", Request.listEventNames());
+        requests.put("listEventNamesUnder", Request.listEventNamesUnder("event."));
+        requests.put("stopMainEvent", Request.stopMainEvent(SMALL, false));
+        requests.put("stopEvent", Request.stopEvent("event", SMALL, true));
+        requests.put("stopEvent(handle, compressed)", Request.stopEvent(1_000_000, LARGE, false));
+        requests.put("stopEventsUnder", Request.stopEventsUnder("event.", SMALL, true));
+        requests.put("queryEventInformation", Request.queryEventInformation("event"));
+        requests.put("queryEventInformation(handle)", Request.queryEventInformation(7));
+        requests.put("queryEventStatistics", Request.queryEventStatistics("event"));
+        requests.put("queryEventStatistics(handle)", Request.queryEventStatistics(7));
+        requests.put("querySpanTree", Request.querySpanTree("event"));
+        requests.put("queryAllEventsInformation", Request.queryAllEventsInformation());
+        requests.put("queryAllEventsInformation(page)", Request.queryAllEventsInformation(100));
+        requests.put("queryAllEventsInformation(page, token)", Request.queryAllEventsInformation(100, "event.99"));
+        requests.put("queryEventsInformationUnder", Request.queryEventsInformationUnder("event."));
+        requests.put("querySummaryUnder", Request.querySummaryUnder("event."));
+        requests.put("queryEventsInRange", Request.queryEventsInRange(-1.5, 30.25));
+        requests.put("importEvent", Request.importEvent("imported", SMALL, LARGE, true, 1_700_000_000_000_000_000L, 1_700_000_001_000_000_000L));
+        requests.put("syncClock", Request.syncClock());
+        requests.put("queryMetrics", Request.queryMetrics());
+        requests.put("reportSkipped", Request.reportSkipped("event.*", Long.MAX_VALUE));
+        requests.put("stopServer", Request.stopServer());
+        return requests;
+    }
+
+    static Map<String, Response> responses() {
+        List<String> names = new ArrayList<>();
+        List<String> infos = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            names.add("event." + i);
+            infos.add(i % 10 == 0 ? null : SMALL + i);
+        }
+        Map<String, Response> responses = new LinkedHashMap<>();
+        responses.put("eventStartedStopped", Response.eventStartedStopped(Request.startEvent("event", null)));
+        responses.put("eventStarted(handle)", Response.eventStarted(7, Request.startEvent("event", null)));
+        responses.put("eventQuery", Response.eventQuery(UNICODE, Request.queryEventInformation("event")));
+        responses.put("eventsQuery", Response.eventsQuery(infos, Request.queryAllEventsInformation()));
+        responses.put("eventsQuery(page)", Response.eventsQuery(infos, "event.99", Request.queryAllEventsInformation(100)));
+        responses.put("eventsQuery(empty)", Response.eventsQuery(Collections.emptyList(), Request.queryEventsInRange(0, 1)));
+        responses.put("eventNameCheck(exists)", Response.eventNameCheck(true, Request.checkEventName("event")));
+        responses.put("eventNameCheck(missing)", Response.eventNameCheck(false, Request.checkEventName("event")));
+        responses.put("eventNames", Response.eventNames(names, Request.listEventNames()));
+        responses.put("eventsStopped", Response.eventsStopped(names, Request.stopEventsUnder("event.", LARGE, false)));
+        responses.put("eventsSummary", Response.eventsSummary(SMALL, Request.querySummaryUnder("event.")));
+        responses.put("eventStatistics", Response.eventStatistics(SMALL, Request.queryEventStatistics("event")));
+        responses.put("spanTree", Response.spanTree(SMALL, Request.querySpanTree("event")));
+        responses.put("clockSync", Response.clockSync(Long.MIN_VALUE, Request.syncClock()));
+        responses.put("metrics", Response.metrics(SMALL, Request.queryMetrics()));
+        responses.put("stopServer", Response.stopServer(Request.stopServer()));
+        responses.put("error", Response.error("Event already exists", Request.startEvent("event", null)));
+        responses.put("error(no request)", new Response("Malformed request", null, false, Response.ResponseType.ERROR, null, null, Request.NO_HANDLE));
+        return responses;
+    }
+
+    /**
+     * @return every value of a request or response, so a value that isn't encoded or decoded makes two descriptions
+     * differ.
+     */
+    static String describe(Object value) {
+        if (value == null)
+            return "null";
+        if (value instanceof Request) {
+            Request request = (Request) value;
+            return Arrays.asList(request.requestType(), request.name(), request.initialData(), request.finalData(),
+                    isCompressed(request.initialPayload()), isCompressed(request.finalPayload()),
+                    request.calculateDifference(), request.clientTimestamp(), request.clockOffset(), request.pageSize(),
+                    request.pageToken(), request.windowStart(), request.windowEnd(), request.handle(), request.parent(),
+                    request.skipped()).toString();
+        }
+        Response response = (Response) value;
+        return Arrays.asList(response.responseType(), response.simpleTextData(), response.multipleTextData(),
+                response.booleanData(), response.continuationToken(), response.handle(),
+                describe(response.originatingRequest())).toString();
+    }
+
+    private static boolean isCompressed(Payload payload) {
+        return payload != null && payload.isCompressed();
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+
+}